@@ -0,0 +1,102 @@
+package com.udacity.benchmarks;
+
+import com.udacity.image.service.FakeImageService;
+import com.udacity.security.application.StatusListener;
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.SensorEvent;
+import com.udacity.security.service.StatusEventBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of arming the system: every change of arming status deactivates all sensors and notifies
+ * the status listeners. Each invocation first activates every other sensor in one batch, so that
+ * arming has sensors to reset, and then arms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ArmingFanOutBenchmark {
+
+    @Param({"4", "1000", "100000"})
+    public int sensorCount;
+
+    @Param({"1", "16"})
+    public int listenerCount;
+
+    private SecurityService securityService;
+    private List<SensorEvent> activateHalf;
+    private boolean armHome;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        CompactSecurityRepositoryImpl repository = new CompactSecurityRepositoryImpl();
+        //listeners run on the publishing thread, so their dispatch is part of the measurement
+        securityService = new SecurityService(repository, new FakeImageService(),
+                new StatusEventBus(Runnable::run, Runnable::run, StatusEventBus.DEFAULT_QUEUE_CAPACITY));
+        for (int i = 0; i < listenerCount; i++) {
+            securityService.addStatusListener(new ConsumingListener(blackhole));
+        }
+        activateHalf = new ArrayList<>(sensorCount / 2 + 1);
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            securityService.addSensor(sensor);
+            if (i % 2 == 0) {
+                activateHalf.add(new SensorEvent(repository.getSensor(sensor.getSensorId()), true));
+            }
+        }
+    }
+
+    @Benchmark
+    public AlarmStatus activateThenArm() {
+        securityService.changeSensorActivationStatuses(activateHalf);
+        armHome = !armHome;
+        securityService.setArmingStatus(armHome ? ArmingStatus.ARMED_HOME : ArmingStatus.ARMED_AWAY);
+        return securityService.getAlarmStatus();
+    }
+
+    private static final class ConsumingListener implements StatusListener {
+        private final Blackhole blackhole;
+
+        private ConsumingListener(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void notify(AlarmStatus status) {
+            blackhole.consume(status);
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            blackhole.consume(catDetected);
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            blackhole.consume(this);
+        }
+    }
+}
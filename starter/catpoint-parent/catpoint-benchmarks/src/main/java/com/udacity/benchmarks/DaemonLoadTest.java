@@ -0,0 +1,155 @@
+package com.udacity.benchmarks;
+
+import com.udacity.security.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load test for the headless daemon (CatpointApp --headless). Creates sensors, arms the system and
+ * then has many concurrent clients, each on a virtual thread, post sensor events, read the status
+ * and optionally post a camera image, as fast as the daemon answers. Reports throughput, latency
+ * percentiles and errors per kind of request.
+ *
+ * java -cp catpoint-benchmarks/target/benchmarks.jar com.udacity.benchmarks.DaemonLoadTest
+ *     [--url http://localhost:8080] [--clients 64] [--seconds 10] [--sensors 100]
+ *     [--image sample-cat.jpg --image-share 0.05]
+ */
+public class DaemonLoadTest {
+
+    private enum Kind { SENSOR_EVENT, STATUS, IMAGE }
+
+    private static final Pattern SENSOR_ID = Pattern.compile("\"sensorId\":\"([0-9a-f-]+)\"");
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final URI base;
+    private final Map<Kind, LatencyHistogram> latencies = new EnumMap<>(Kind.class);
+    private final Map<Kind, LongAdder> errors = new EnumMap<>(Kind.class);
+
+    private DaemonLoadTest(URI base) {
+        this.base = base;
+        for (Kind kind : Kind.values()) {
+            latencies.put(kind, new LatencyHistogram());
+            errors.put(kind, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = "http://localhost:8080";
+        int clients = 64;
+        int seconds = 10;
+        int sensors = 100;
+        Path image = null;
+        double imageShare = 0.05;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--url" -> url = args[i + 1];
+                case "--clients" -> clients = Integer.parseInt(args[i + 1]);
+                case "--seconds" -> seconds = Integer.parseInt(args[i + 1]);
+                case "--sensors" -> sensors = Integer.parseInt(args[i + 1]);
+                case "--image" -> image = Path.of(args[i + 1]);
+                case "--image-share" -> imageShare = Double.parseDouble(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+        new DaemonLoadTest(URI.create(url)).run(clients, seconds, sensors,
+                image == null ? null : Files.readAllBytes(image), image == null ? 0 : imageShare);
+    }
+
+    private void run(int clients, int seconds, int sensorCount, byte[] image, double imageShare) throws Exception {
+        List<String> sensorIds = new ArrayList<>();
+        for (int i = 0; i < sensorCount; i++) {
+            String body = send("POST", "/sensors", "{\"name\":\"Load " + i + "\",\"sensorType\":\"DOOR\"}").body();
+            Matcher matcher = SENSOR_ID.matcher(body);
+            if (!matcher.find()) {
+                throw new IllegalStateException("Unexpected answer to sensor creation: " + body);
+            }
+            sensorIds.add(matcher.group(1));
+        }
+        send("PUT", "/arming", "{\"armingStatus\":\"ARMED_HOME\"}");
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                executor.execute(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < end) {
+                        double roll = random.nextDouble();
+                        if (roll < imageShare) {
+                            timed(Kind.IMAGE, () -> client.send(HttpRequest.newBuilder(base.resolve("/images"))
+                                    .POST(HttpRequest.BodyPublishers.ofByteArray(image)).build(),
+                                    HttpResponse.BodyHandlers.discarding()));
+                        } else if (roll < imageShare + 0.1) {
+                            timed(Kind.STATUS, () -> client.send(HttpRequest.newBuilder(base.resolve("/status")).build(),
+                                    HttpResponse.BodyHandlers.discarding()));
+                        } else {
+                            String sensorId = sensorIds.get(random.nextInt(sensorIds.size()));
+                            String event = "{\"sensorId\":\"" + sensorId + "\",\"active\":" + random.nextBoolean() + "}";
+                            timed(Kind.SENSOR_EVENT, () -> client.send(HttpRequest.newBuilder(base.resolve("/sensor-events"))
+                                    .POST(HttpRequest.BodyPublishers.ofString(event)).build(),
+                                    HttpResponse.BodyHandlers.discarding()));
+                        }
+                    }
+                });
+            }
+        }
+
+        System.out.printf("%d clients for %d s against %s%n", clients, seconds, base);
+        for (Kind kind : Kind.values()) {
+            LatencyHistogram histogram = latencies.get(kind);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            System.out.printf("%-13s %8.0f req/s  %s  errors=%d%n", kind, histogram.getCount() / (double) seconds,
+                    histogram.snapshot(), errors.get(kind).sum());
+        }
+        System.out.println("daemon metrics: " + send("GET", "/metrics", null).body());
+    }
+
+    private interface Call {
+        HttpResponse<?> send() throws IOException, InterruptedException;
+    }
+
+    private void timed(Kind kind, Call call) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<?> response = call.send();
+            if (response.statusCode() != 200) {
+                errors.get(kind).increment();
+            }
+        } catch (IOException e) {
+            errors.get(kind).increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        latencies.get(kind).record(System.nanoTime() - start);
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest.BodyPublisher body = json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json);
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(base.resolve(path)).method(method, body).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(method + " " + path + " answered " + response.statusCode() + ": " + response.body());
+        }
+        return response;
+    }
+}
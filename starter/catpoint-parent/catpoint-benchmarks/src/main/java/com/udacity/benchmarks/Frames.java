@@ -0,0 +1,63 @@
+package com.udacity.benchmarks;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Camera frames for the image benchmarks.
+ */
+final class Frames {
+
+    /**
+     * Directory holding the sample images. Defaults to the working directory, which is where they
+     * are when the benchmarks are run from catpoint-parent.
+     */
+    static final String SAMPLES_DIR_PROPERTY = "catpoint.samples.dir";
+
+    private Frames() {
+    }
+
+    /**
+     * A noisy gradient with a few shapes, which compresses and scales about like a camera frame.
+     * Frames with different seeds differ everywhere.
+     */
+    static BufferedImage synthetic(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int offset = random.nextInt(64);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int base = offset + (x * 128 / width) + (y * 64 / height);
+                int noise = random.nextInt(16);
+                frame.setRGB(x, y, (base + noise) << 16 | (base / 2 + noise) << 8 | (96 + noise));
+            }
+        }
+        Graphics2D g = frame.createGraphics();
+        for (int i = 0; i < 8; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillOval(random.nextInt(width), random.nextInt(height), width / 6, height / 6);
+        }
+        g.dispose();
+        return frame;
+    }
+
+    static BufferedImage sample(String fileName) {
+        Path path = Path.of(System.getProperty(SAMPLES_DIR_PROPERTY, "."), fileName);
+        if (!Files.isReadable(path)) {
+            throw new IllegalStateException("Sample image " + path.toAbsolutePath() + " not found; run from "
+                    + "catpoint-parent or set -D" + SAMPLES_DIR_PROPERTY);
+        }
+        try {
+            return ImageIO.read(path.toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
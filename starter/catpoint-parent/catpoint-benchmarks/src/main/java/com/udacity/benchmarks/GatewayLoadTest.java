@@ -0,0 +1,229 @@
+package com.udacity.benchmarks;
+
+import com.udacity.image.service.FakeImageService;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.gateway.SensorFrames;
+import com.udacity.security.gateway.SensorGateway;
+import com.udacity.security.metrics.LatencyHistogram;
+import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.StatusEventBus;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load generator for the {@link SensorGateway}. Opens many hub connections, each sending events
+ * for a few sensors of its own with a bounded number of unacknowledged frames, and reports
+ * acknowledged events per second and the latency from sending a frame to its acknowledgement.
+ *
+ * By default the gateway runs in this JVM on an in-memory repository. With --url and --gateway
+ * it targets a running daemon instead (CatpointApp --headless --gateway N), creating its sensors
+ * over HTTP first.
+ *
+ * java -cp catpoint-benchmarks/target/benchmarks.jar com.udacity.benchmarks.GatewayLoadTest
+ *     [--connections 1000] [--sensors 4] [--seconds 10] [--window 8] [--rate 0]
+ *     [--url http://localhost:8080 --gateway localhost:9090]
+ */
+public class GatewayLoadTest {
+
+    private static final Pattern SENSOR_ID = Pattern.compile("\"sensorId\":\"([0-9a-f-]+)\"");
+
+    private final LatencyHistogram ackLatency = new LatencyHistogram();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failedConnections = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        int connections = 1000;
+        int sensorsPerConnection = 4;
+        int seconds = 10;
+        int window = 8;
+        double rate = 0;
+        String url = null;
+        String gateway = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--connections" -> connections = Integer.parseInt(args[i + 1]);
+                case "--sensors" -> sensorsPerConnection = Integer.parseInt(args[i + 1]);
+                case "--seconds" -> seconds = Integer.parseInt(args[i + 1]);
+                case "--window" -> window = Integer.parseInt(args[i + 1]);
+                case "--rate" -> rate = Double.parseDouble(args[i + 1]);
+                case "--url" -> url = args[i + 1];
+                case "--gateway" -> gateway = args[i + 1];
+                default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+        if ((url == null) != (gateway == null)) {
+            throw new IllegalArgumentException("--url and --gateway go together");
+        }
+        new GatewayLoadTest().run(connections, sensorsPerConnection, seconds, window, rate, url, gateway);
+    }
+
+    private void run(int connections, int sensorsPerConnection, int seconds, int window, double rate,
+                     String url, String gatewayAddress) throws Exception {
+        int sensorCount = connections * sensorsPerConnection;
+        SensorGateway embedded = null;
+        SecurityService embeddedService = null;
+        InetSocketAddress target;
+        List<UUID> sensorIds = new ArrayList<>(sensorCount);
+        if (url == null) {
+            CompactSecurityRepositoryImpl repository = new CompactSecurityRepositoryImpl();
+            embeddedService = new SecurityService(repository, new FakeImageService(),
+                    new StatusEventBus(Runnable::run, Runnable::run, StatusEventBus.DEFAULT_QUEUE_CAPACITY));
+            for (int i = 0; i < sensorCount; i++) {
+                Sensor sensor = new Sensor("Hub sensor " + i, SensorType.values()[i % SensorType.values().length]);
+                embeddedService.addSensor(sensor);
+                sensorIds.add(sensor.getSensorId());
+            }
+            embeddedService.setArmingStatus(ArmingStatus.ARMED_HOME);
+            embedded = new SensorGateway(embeddedService, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            embedded.start();
+            target = new InetSocketAddress(InetAddress.getLoopbackAddress(), embedded.getPort());
+        } else {
+            createSensors(URI.create(url), sensorCount, sensorIds);
+            String[] hostPort = gatewayAddress.split(":");
+            target = new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1]));
+        }
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < connections; c++) {
+                List<UUID> own = sensorIds.subList(c * sensorsPerConnection, (c + 1) * sensorsPerConnection);
+                executor.execute(() -> hub(target, own, window, rate, end));
+            }
+        }
+
+        System.out.printf("%d connections x %d sensors for %d s, window %d%n", connections, sensorsPerConnection, seconds, window);
+        System.out.printf("acknowledged %.0f events/s, rejected %d, failed connections %d%n",
+                accepted.sum() / (double) seconds, rejected.sum(), failedConnections.sum());
+        System.out.println("send to ack: " + ackLatency.snapshot());
+        if (embedded != null) {
+            System.out.println("gateway ingest: " + embedded.getIngestLatency());
+            System.out.println("repository writes: " + embeddedService.getMetrics().getRepositoryWriteLatency());
+            embedded.close();
+        }
+    }
+
+    private static void createSensors(URI daemon, int count, List<UUID> sensorIds) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        for (int i = 0; i < count; i++) {
+            String body = client.send(HttpRequest.newBuilder(daemon.resolve("/sensors"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"Hub sensor " + i + "\",\"sensorType\":\"DOOR\"}"))
+                    .build(), HttpResponse.BodyHandlers.ofString()).body();
+            Matcher matcher = SENSOR_ID.matcher(body);
+            if (!matcher.find()) {
+                throw new IllegalStateException("Unexpected answer to sensor creation: " + body);
+            }
+            sensorIds.add(UUID.fromString(matcher.group(1)));
+        }
+    }
+
+    /**
+     * One hub: a writer sending frames while fewer than window are unacknowledged, and a reader
+     * matching acknowledgements to the time their frame was sent.
+     */
+    private void hub(InetSocketAddress target, List<UUID> sensors, int window, double rate, long end) {
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(target);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            failedConnections.increment();
+            return;
+        }
+        Semaphore permits = new Semaphore(window);
+        //window slots, indexed by sequence number
+        long[] sentAt = new long[Integer.highestOneBit(window * 2 - 1)];
+        int mask = sentAt.length - 1;
+        long intervalNanos = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+
+        Thread reader = Thread.ofVirtual().start(() -> readAcks(channel, permits, sentAt, mask));
+        ByteBuffer frames = ByteBuffer.allocateDirect(window * SensorFrames.FRAME_BYTES);
+        boolean[] active = new boolean[sensors.size()];
+        long sequence = 0;
+        //spread paced hubs over the interval instead of having them all send at once
+        long next = System.nanoTime() + (intervalNanos > 0 ? ThreadLocalRandom.current().nextLong(intervalNanos) : 0);
+        try (channel) {
+            while (System.nanoTime() < end) {
+                permits.acquire();
+                //send as many frames as the window allows in one write
+                int batch = 1 + permits.drainPermits();
+                frames.clear();
+                for (int i = 0; i < batch; i++) {
+                    int s = (int) (sequence % sensors.size());
+                    active[s] = !active[s];
+                    UUID id = sensors.get(s);
+                    sentAt[(int) sequence & mask] = System.nanoTime();
+                    SensorFrames.putFrame(frames, id.getMostSignificantBits(), id.getLeastSignificantBits(), sequence++, active[s]);
+                }
+                frames.flip();
+                while (frames.hasRemaining()) {
+                    channel.write(frames);
+                }
+                if (intervalNanos > 0) {
+                    next += intervalNanos * batch;
+                    LockSupport.parkNanos(next - System.nanoTime());
+                }
+            }
+            //wait for the frames in flight before closing
+            permits.acquire(window);
+        } catch (IOException e) {
+            failedConnections.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void readAcks(SocketChannel channel, Semaphore permits, long[] sentAt, int mask) {
+        ByteBuffer acks = ByteBuffer.allocateDirect(64 * SensorFrames.ACK_BYTES);
+        try {
+            while (channel.read(acks) >= 0) {
+                long now = System.nanoTime();
+                acks.flip();
+                int count = 0;
+                while (acks.remaining() >= SensorFrames.ACK_BYTES) {
+                    long sequence = acks.getLong();
+                    if (acks.get() == SensorFrames.ACCEPTED) {
+                        accepted.increment();
+                    } else {
+                        rejected.increment();
+                    }
+                    ackLatency.record(now - sentAt[(int) sequence & mask]);
+                    count++;
+                }
+                acks.compact();
+                permits.release(count);
+            }
+        } catch (IOException e) {
+            //connection closed by the writer
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.udacity.benchmarks;
+
+import com.udacity.image.service.ImageEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a camera frame into the bytes sent to the cloud classifier: the pooled
+ * {@link ImageEncoder} against a plain {@link ImageIO#write} of the full frame, which is what the
+ * AWS image service did before. Run with {@code -prof gc} to compare allocation per frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ImageEncoderBenchmark {
+
+    @Param({"1920x1080", "3840x2160"})
+    public String resolution;
+
+    private BufferedImage frame;
+    private ImageEncoder encoder;
+
+    @Setup
+    public void setUp() {
+        String[] size = resolution.split("x");
+        frame = Frames.synthetic(Integer.parseInt(size[0]), Integer.parseInt(size[1]), 1);
+        encoder = new ImageEncoder();
+    }
+
+    @Benchmark
+    public byte[] pooledEncoder() {
+        return encoder.encode(frame);
+    }
+
+    @Benchmark
+    public byte[] imageIoWrite() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ImageIO.write(frame, "jpg", os);
+        return os.toByteArray();
+    }
+}
@@ -0,0 +1,57 @@
+package com.udacity.benchmarks;
+
+import com.udacity.image.service.FakeImageService;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.StatusEventBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link SecurityService#processImage(BufferedImage)} around a classifier that takes no
+ * time, which is what the security service adds to every frame. A repeated frame is answered by
+ * the motion gate; alternating frames are classified every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ImageProcessingBenchmark {
+
+    private SecurityService securityService;
+    private BufferedImage[] frames;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        securityService = new SecurityService(new CompactSecurityRepositoryImpl(), new FakeImageService(),
+                new StatusEventBus(Runnable::run, Runnable::run, StatusEventBus.DEFAULT_QUEUE_CAPACITY));
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        frames = new BufferedImage[] {Frames.synthetic(1920, 1080, 1), Frames.synthetic(1920, 1080, 2)};
+    }
+
+    @Benchmark
+    public void sameFrame() {
+        securityService.processImage(frames[0]);
+    }
+
+    @Benchmark
+    public void changingFrames() {
+        next = 1 - next;
+        securityService.processImage(frames[next]);
+    }
+}
@@ -0,0 +1,77 @@
+package com.udacity.benchmarks;
+
+import com.udacity.image.service.CachingImageService;
+import com.udacity.image.service.LocalImageService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of classifying the sample images without the cloud: the offline detector on its own, and a
+ * repeated frame answered by the caching image service, which is mostly the cost of hashing it.
+ * The detector's verdict on each sample is reported alongside its latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LocalClassificationBenchmark {
+
+    @Param({"sample-cat.jpg", "sample-not-cat.jpg", "sample-not-a-cat-fail.jpg"})
+    public String sample;
+
+    private BufferedImage frame;
+    //only sample-cat.jpg shows a cat
+    private boolean showsCat;
+    private LocalImageService localImageService;
+    private CachingImageService cachingImageService;
+
+    /**
+     * The detector's verdict on the sample, reported with the results; the value is the same in
+     * every iteration. The detector's weights were fitted by hand on these same three samples, so
+     * a correct verdict here says nothing about its accuracy on any other image.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Verdict {
+        public long catPercent;
+        //1 if the verdict at the default threshold of 50 matches the sample, otherwise 0
+        public long correct;
+    }
+
+    @Setup
+    public void setUp() {
+        frame = Frames.sample(sample);
+        showsCat = sample.equals("sample-cat.jpg");
+        localImageService = new LocalImageService();
+        cachingImageService = new CachingImageService(localImageService);
+        cachingImageService.imageContainsCat(frame, 50);
+    }
+
+    @Benchmark
+    public float localDetector(Verdict verdict) {
+        float probability = localImageService.catProbability(frame);
+        verdict.catPercent = Math.round(probability * 100);
+        verdict.correct = (probability * 100 >= 50) == showsCat ? 1 : 0;
+        return probability;
+    }
+
+    @Benchmark
+    public boolean cachedVerdict() {
+        return cachingImageService.imageContainsCat(frame, 50);
+    }
+}
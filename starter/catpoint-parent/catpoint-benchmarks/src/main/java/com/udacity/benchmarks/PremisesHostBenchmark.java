@@ -0,0 +1,94 @@
+package com.udacity.benchmarks;
+
+import com.udacity.image.service.FakeImageService;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.service.PremisesHost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sensor events per second through a {@link PremisesHost}, routed to randomly chosen premises by
+ * four producer threads. Every invocation submits a batch and waits for all of it, so the queues
+ * stay short. With one shard every event goes through a single thread; with a shard per core the
+ * premises are spread across all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PremisesHostBenchmark {
+
+    private static final int BATCH = 256;
+    private static final int SENSORS_PER_PREMISES = 4;
+
+    @Param({"1000", "10000"})
+    public int premisesCount;
+
+    //0 for a shard per core
+    @Param({"1", "0"})
+    public int shardCount;
+
+    private PremisesHost host;
+    private String[] premisesIds;
+    private UUID[][] sensorIds;
+
+    @Setup
+    public void setUp() {
+        int shards = shardCount == 0 ? Runtime.getRuntime().availableProcessors() : shardCount;
+        host = new PremisesHost(shards, PremisesHost.DEFAULT_QUEUE_CAPACITY, new FakeImageService(),
+                premisesId -> new CompactSecurityRepositoryImpl());
+        premisesIds = new String[premisesCount];
+        sensorIds = new UUID[premisesCount][SENSORS_PER_PREMISES];
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < premisesCount; i++) {
+            premisesIds[i] = "premises-" + i;
+            for (int j = 0; j < SENSORS_PER_PREMISES; j++) {
+                Sensor sensor = new Sensor("Sensor " + j, types[j % types.length]);
+                sensorIds[i][j] = sensor.getSensorId();
+                host.addSensor(premisesIds[i], sensor);
+            }
+            host.setArmingStatus(premisesIds[i], ArmingStatus.ARMED_HOME).join();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        host.close();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH)
+    public void routeSensorEvents() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CompletableFuture<?>[] events = new CompletableFuture<?>[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            int premises = random.nextInt(premisesCount);
+            events[i] = host.changeSensorActivationStatus(premisesIds[premises],
+                    sensorIds[premises][random.nextInt(SENSORS_PER_PREMISES)], random.nextBoolean());
+        }
+        CompletableFuture.allOf(events).join();
+    }
+}
@@ -0,0 +1,111 @@
+package com.udacity.benchmarks;
+
+import com.udacity.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.data.SecurityRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time for a repository to come up with a large sensor population already stored: the preferences
+ * repository decoding its binary chunks, and the event log repository mapping its snapshot.
+ * {@link #load} stops once the status and the active sensor count can be answered, which the event
+ * log repository does before loading any sensor; {@link #loadAllSensors} also lists every sensor.
+ *
+ * Every measured operation opens and closes a fresh repository in a single shot. The preferences
+ * themselves are cached by the JDK after the first load, so their numbers leave out parsing the
+ * preferences file. As in {@link RepositoryPersistenceBenchmark}, the forked JVM keeps its user
+ * preferences in a scratch directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.prefs.userRoot=target/benchmark-prefs")
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+public class RepositoryLoadBenchmark {
+
+    public enum Kind { PREFERENCES, EVENT_LOG }
+
+    @Param({"PREFERENCES", "EVENT_LOG"})
+    public Kind kind;
+
+    @Param({"100000"})
+    public int sensorCount;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("catpoint-bench");
+        SecurityRepository repository = open();
+        //start from exactly sensorCount sensors, whatever an earlier run left behind
+        List<Sensor> stored = new ArrayList<>(repository.getSensors());
+        for (Sensor sensor : stored) {
+            repository.removeSensor(sensor);
+        }
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 3 == 0);
+            repository.addSensor(sensor);
+        }
+        ((AutoCloseable) repository).close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Opens the preferences repository in write-behind mode, so that filling it does not write
+     * the whole population once per sensor.
+     */
+    private SecurityRepository open() {
+        return switch (kind) {
+            case PREFERENCES -> new PretendDatabaseSecurityRepositoryImpl(Duration.ofSeconds(60), Integer.MAX_VALUE);
+            case EVENT_LOG -> new EventLogSecurityRepositoryImpl(directory, 1_000, null, Integer.MAX_VALUE);
+        };
+    }
+
+    @Benchmark
+    public int load() throws Exception {
+        SecurityRepository repository = open();
+        int count = repository.getAlarmStatus().ordinal() + repository.getActiveSensorCount();
+        ((AutoCloseable) repository).close();
+        return count;
+    }
+
+    @Benchmark
+    public int loadAllSensors() throws Exception {
+        SecurityRepository repository = open();
+        int count = repository.getSensors().size();
+        ((AutoCloseable) repository).close();
+        return count;
+    }
+}
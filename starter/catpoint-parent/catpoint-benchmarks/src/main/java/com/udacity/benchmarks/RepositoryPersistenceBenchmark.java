@@ -0,0 +1,102 @@
+package com.udacity.benchmarks;
+
+import com.udacity.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.data.SecurityRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of persisting one sensor update, comparing the preferences repository in write-through and
+ * write-behind mode with the event log repository.
+ *
+ * The preferences repository always uses the application's own preferences node. The benchmark
+ * JVM is therefore forked with its user preferences root moved to a scratch directory, so a run
+ * does not touch the sensors of a real installation. The property is only honoured by the
+ * file-based preferences of Linux and macOS; on Windows, do not run this benchmark on a machine
+ * with a configured system.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.prefs.userRoot=target/benchmark-prefs")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RepositoryPersistenceBenchmark {
+
+    public enum Kind { WRITE_THROUGH, WRITE_BEHIND, EVENT_LOG }
+
+    @Param({"WRITE_THROUGH", "WRITE_BEHIND", "EVENT_LOG"})
+    public Kind kind;
+
+    @Param({"4", "1000"})
+    public int sensorCount;
+
+    private SecurityRepository repository;
+    private Path directory;
+    private Sensor[] sensors;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        switch (kind) {
+            case WRITE_THROUGH -> repository = new PretendDatabaseSecurityRepositoryImpl();
+            case WRITE_BEHIND -> repository = new PretendDatabaseSecurityRepositoryImpl(Duration.ofMillis(500), 256);
+            case EVENT_LOG -> {
+                directory = Files.createTempDirectory("catpoint-bench");
+                repository = new EventLogSecurityRepositoryImpl(directory);
+            }
+        }
+        //start from an empty repository, whatever an earlier run left behind
+        for (Sensor sensor : repository.getSensors().toArray(new Sensor[0])) {
+            repository.removeSensor(sensor);
+        }
+        sensors = new Sensor[sensorCount];
+        for (int i = 0; i < sensorCount; i++) {
+            sensors[i] = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            repository.addSensor(sensors[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (Sensor sensor : sensors) {
+            repository.removeSensor(sensor);
+        }
+        ((AutoCloseable) repository).close();
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public void toggleSensor() {
+        Sensor sensor = sensors[next];
+        next = (next + 1) % sensors.length;
+        sensor.setActive(!sensor.getActive());
+        repository.updateSensor(sensor);
+    }
+}
@@ -0,0 +1,92 @@
+package com.udacity.benchmarks;
+
+import com.udacity.image.service.FakeImageService;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.StatusEventBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link SecurityService#changeSensorActivationStatus(Sensor, Boolean)} as the number of
+ * sensors grows, on the in-memory compact repository so that persistence does not dominate.
+ * The concurrent variant shows how the lock-free alarm state machine holds up under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SensorActivationBenchmark {
+
+    @Param({"4", "1000", "100000"})
+    public int sensorCount;
+
+    @Param({"DISARMED", "ARMED_HOME"})
+    public ArmingStatus armingStatus;
+
+    private SecurityService securityService;
+    private Sensor[] sensors;
+
+    @Setup
+    public void setUp() {
+        CompactSecurityRepositoryImpl repository = new CompactSecurityRepositoryImpl();
+        securityService = new SecurityService(repository, new FakeImageService(),
+                new StatusEventBus(Runnable::run, Runnable::run, StatusEventBus.DEFAULT_QUEUE_CAPACITY));
+        sensors = new Sensor[sensorCount];
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, types[i % types.length]);
+            securityService.addSensor(sensor);
+            sensors[i] = repository.getSensor(sensor.getSensorId());
+        }
+        securityService.setArmingStatus(armingStatus);
+    }
+
+    /**
+     * Walks the sensors round-robin, activating them on the first pass and deactivating on the next.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        boolean activate = true;
+
+        Sensor advance(Sensor[] sensors) {
+            Sensor sensor = sensors[next];
+            if (++next == sensors.length) {
+                next = 0;
+                activate = !activate;
+            }
+            return sensor;
+        }
+    }
+
+    @Benchmark
+    public void toggleSensor(Cursor cursor) {
+        boolean activate = cursor.activate;
+        securityService.changeSensorActivationStatus(cursor.advance(sensors), activate);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void toggleSensorConcurrently(Cursor cursor) {
+        boolean activate = cursor.activate;
+        securityService.changeSensorActivationStatus(cursor.advance(sensors), activate);
+    }
+}
@@ -0,0 +1,92 @@
+package com.udacity.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorCodec;
+import com.udacity.security.data.SensorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a whole sensor population with {@link SensorCodec} against the Gson JSON
+ * the preferences repository used to store. Divide the sensor count by the reported time for
+ * sensors per second; with {@code -prof gc} the allocation per operation can be compared as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SensorCodecBenchmark {
+
+    private static final Gson gson = new Gson();
+    private static final Type SENSOR_SET_TYPE = new TypeToken<Set<Sensor>>() {
+    }.getType();
+
+    @Param({"1000", "100000"})
+    public int sensorCount;
+
+    private List<Sensor> sensors;
+    private byte[] binary;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        sensors = new ArrayList<>(sensorCount);
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 3 == 0);
+            sensors.add(sensor);
+        }
+        binary = encodeBinary();
+        json = encodeJson();
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(binary == null ? 64 : binary.length);
+        SensorCodec.writeState(new DataOutputStream(bytes), AlarmStatus.NO_ALARM, ArmingStatus.ARMED_HOME, sensors);
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public String encodeJson() {
+        return gson.toJson(sensors, SENSOR_SET_TYPE);
+    }
+
+    @Benchmark
+    public void decodeBinary(Blackhole blackhole) throws IOException {
+        SensorCodec.readState(new DataInputStream(new ByteArrayInputStream(binary)), blackhole::consume);
+    }
+
+    @Benchmark
+    public Set<Sensor> decodeJson() {
+        return gson.fromJson(json, SENSOR_SET_TYPE);
+    }
+}
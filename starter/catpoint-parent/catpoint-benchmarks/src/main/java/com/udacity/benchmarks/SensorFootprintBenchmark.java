@@ -0,0 +1,81 @@
+package com.udacity.benchmarks;
+
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load a large sensor population into the compact repository, against a plain set of
+ * {@link Sensor} objects like the one {@link PretendDatabaseSecurityRepositoryImpl} keeps. The
+ * compact store's estimated heap footprint is reported as an extra counter; with {@code -prof gc}
+ * the allocation of both can be compared.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SensorFootprintBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int sensorCount;
+
+    private Sensor[] sensors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sensors = new Sensor[sensorCount];
+        for (int i = 0; i < sensorCount; i++) {
+            sensors[i] = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+        }
+    }
+
+    /**
+     * Reported with the results; the value is the same in every iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long compactBytes;
+    }
+
+    @Benchmark
+    public CompactSecurityRepositoryImpl compactRepository(Footprint footprint) {
+        CompactSecurityRepositoryImpl repository = new CompactSecurityRepositoryImpl();
+        for (Sensor sensor : sensors) {
+            repository.addSensor(sensor);
+        }
+        footprint.compactBytes = repository.getStore().estimatedFootprintBytes();
+        return repository;
+    }
+
+    @Benchmark
+    public Set<Sensor> sensorSet() {
+        Set<Sensor> set = new HashSet<>();
+        for (Sensor sensor : sensors) {
+            Sensor copy = new Sensor(sensor.getName(), sensor.getSensorType());
+            copy.setSensorId(sensor.getSensorId());
+            set.add(copy);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,86 @@
+package com.udacity.benchmarks;
+
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of keeping sensors in display order: a single comparison, renaming a sensor in a sorted
+ * set, and rebuilding the sorted list of the compact repository after a rename.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SensorOrderingBenchmark {
+
+    @Param({"4", "1000", "100000"})
+    public int sensorCount;
+
+    private Sensor[] sensors;
+    private TreeSet<Sensor> sortedSensors;
+    private CompactSecurityRepositoryImpl repository;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        sensors = new Sensor[sensorCount];
+        sortedSensors = new TreeSet<>();
+        repository = new CompactSecurityRepositoryImpl();
+        for (int i = 0; i < sensorCount; i++) {
+            sensors[i] = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sortedSensors.add(sensors[i]);
+            repository.addSensor(sensors[i]);
+        }
+    }
+
+    private Sensor nextSensor() {
+        Sensor sensor = sensors[next];
+        next = (next + 1) % sensors.length;
+        return sensor;
+    }
+
+    //moves the sensor to the front of the order and back again on the next rename
+    private static void rename(Sensor sensor) {
+        String name = sensor.getName();
+        sensor.setName(name.startsWith("!") ? name.substring(1) : "!" + name);
+    }
+
+    @Benchmark
+    public int compare() {
+        return nextSensor().compareTo(sensors[0]);
+    }
+
+    @Benchmark
+    public boolean renameInSortedSet() {
+        Sensor sensor = nextSensor();
+        sortedSensors.remove(sensor);
+        rename(sensor);
+        return sortedSensors.add(sensor);
+    }
+
+    @Benchmark
+    public List<Sensor> renameThenSort() {
+        Sensor sensor = nextSensor();
+        rename(sensor);
+        repository.updateSensor(sensor);
+        return repository.getSortedSensors();
+    }
+}
@@ -0,0 +1,73 @@
+package com.udacity.benchmarks;
+
+import com.udacity.image.service.FakeImageService;
+import com.udacity.security.application.SensorPanel;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.StatusEventBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the sensor panel does when it hears about a sensor change: updating the row of the one
+ * sensor that changed, against reloading the whole table, which is what every change used to cost.
+ * The panel is built headless and called directly, as the event dispatch thread would, so the
+ * numbers leave out painting, which a table only does for its visible rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SensorPanelBenchmark {
+
+    @Param({"4", "50000"})
+    public int sensorCount;
+
+    private CompactSecurityRepositoryImpl repository;
+    private SensorPanel panel;
+    private Sensor[] sensors;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        repository = new CompactSecurityRepositoryImpl();
+        SecurityService securityService = new SecurityService(repository, new FakeImageService(),
+                new StatusEventBus(Runnable::run, Runnable::run, StatusEventBus.DEFAULT_QUEUE_CAPACITY));
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            repository.addSensor(new Sensor("Sensor " + i, types[i % types.length]));
+        }
+        sensors = repository.getSortedSensors().toArray(new Sensor[0]);
+        panel = new SensorPanel(securityService);
+    }
+
+    @Benchmark
+    public void updateChangedRow() {
+        Sensor sensor = sensors[next];
+        next = (next + 1) % sensors.length;
+        sensor.setActive(!sensor.getActive());
+        repository.updateSensor(sensor);
+        panel.sensorStatusChanged(List.of(sensor));
+    }
+
+    @Benchmark
+    public void reloadAllRows() {
+        panel.sensorStatusChanged();
+    }
+}
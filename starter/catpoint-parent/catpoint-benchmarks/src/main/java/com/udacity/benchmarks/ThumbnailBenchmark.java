@@ -0,0 +1,65 @@
+package com.udacity.benchmarks;
+
+import com.udacity.security.application.ThumbnailScaler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of scaling a camera frame to the image panel's thumbnail: the progressive
+ * {@link ThumbnailScaler} against {@code Image.SCALE_SMOOTH}, which the panel used before. The
+ * smooth instance is drawn into an image so that its scaling actually happens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ThumbnailBenchmark {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 225;
+
+    @Param({"1920x1080", "3840x2160"})
+    public String resolution;
+
+    private BufferedImage frame;
+    private ThumbnailScaler scaler;
+    private BufferedImage target;
+
+    @Setup
+    public void setUp() {
+        String[] size = resolution.split("x");
+        frame = Frames.synthetic(Integer.parseInt(size[0]), Integer.parseInt(size[1]), 1);
+        scaler = new ThumbnailScaler(WIDTH, HEIGHT);
+        target = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public BufferedImage progressiveScaler() {
+        return scaler.scale(frame);
+    }
+
+    @Benchmark
+    public BufferedImage scaleSmooth() {
+        Image scaled = frame.getScaledInstance(WIDTH, HEIGHT, Image.SCALE_SMOOTH);
+        Graphics2D g = target.createGraphics();
+        g.drawImage(scaled, 0, 0, null);
+        g.dispose();
+        return target;
+    }
+}
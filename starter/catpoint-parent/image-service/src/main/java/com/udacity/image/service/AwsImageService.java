@@ -12,11 +12,10 @@ import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Properties;
 import java.util.stream.Collectors;
 
@@ -32,6 +31,9 @@ import java.util.stream.Collectors;
  * aws.id=[your access key id]
  * aws.secret=[your Secret access key]
  * aws.region=[an aws region of choice. For example: us-east-2]
+ * Optionally, frames can be scaled down and compressed harder before they are sent:
+ * aws.image.maxDimension=[longest side in pixels, 1024 by default]
+ * aws.image.jpegQuality=[JPEG quality between 0 and 1, 0.75 by default]
  */
 public class AwsImageService implements ImageService  {
 
@@ -40,15 +42,22 @@ public class AwsImageService implements ImageService  {
     // Make rekognitionClient instance-specific (non-static)
     private static RekognitionClient rekognitionClient;
 
+    private final ImageEncoder encoder;
+
     public AwsImageService() {
         Properties props = new Properties();
         try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
             props.load(is);
         } catch (IOException ioe ) {
             log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
+            encoder = new ImageEncoder();
             return;
         }
 
+        encoder = new ImageEncoder(
+                Integer.parseInt(props.getProperty("aws.image.maxDimension", String.valueOf(ImageEncoder.DEFAULT_MAX_DIMENSION))),
+                Float.parseFloat(props.getProperty("aws.image.jpegQuality", String.valueOf(ImageEncoder.DEFAULT_JPEG_QUALITY))));
+
         String awsId = props.getProperty("aws.id");
         String awsSecret = props.getProperty("aws.secret");
         String awsRegion = props.getProperty("aws.region");
@@ -67,20 +76,28 @@ public class AwsImageService implements ImageService  {
      * @return true if the image contains a cat
      */
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
-        Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
-        } catch (IOException ioe) {
+        byte[] encoded;
+        try {
+            encoded = encoder.encode(image);
+        } catch (UncheckedIOException ioe) {
             log.error("Error building image byte array", ioe);
             return false;
         }
+        //the encoder never touches a returned array again, so the SDK can wrap it without copying
+        Image awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(encoded)).build();
         DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
         DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
         logLabelsForFun(response);
         return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
     }
 
+    /**
+     * @return the encoder preparing frames for Rekognition, for its size and latency statistics
+     */
+    public ImageEncoder getEncoder() {
+        return encoder;
+    }
+
     private void logLabelsForFun(DetectLabelsResponse response) {
         log.info(response.labels().stream()
                 .map(label -> String.format("%s(%.1f%%)", label.name(), label.confidence()))
@@ -0,0 +1,233 @@
+package com.udacity.image.service;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Image service decorator that remembers recent answers. Camera frames between two scans are
+ * often identical or nearly so, and with {@link AwsImageService} every classification is a paid
+ * remote call.
+ *
+ * Frames are keyed by a 64-bit difference hash (dHash): the frame is reduced to a 9x8 grayscale
+ * grid and each bit records whether a cell is brighter than its right-hand neighbour. Small changes
+ * such as sensor noise or compression artifacts flip few bits, so a frame whose hash is within
+ * {@code maxHammingDistance} bits of a cached one, classified with the same confidence threshold,
+ * reuses the cached answer. Entries expire after the time to live, and the least recently used
+ * entry is evicted once the cache is full.
+ */
+public class CachingImageService implements ImageService {
+
+    public static final int DEFAULT_MAX_HAMMING_DISTANCE = 4;
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofSeconds(30);
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static final int HASH_WIDTH = 9;
+    private static final int HASH_HEIGHT = 8;
+    //pixels sampled along each side of a grid cell; enough to average out noise without reading every pixel
+    private static final int SAMPLES_PER_CELL_SIDE = 8;
+
+    private final ImageService delegate;
+    private final int maxHammingDistance;
+    private final long timeToLiveNanos;
+    private final int maxEntries;
+    private final LongSupplier nanoTime;
+    private final LinkedHashMap<Long, Entry> entries;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    public CachingImageService(ImageService delegate) {
+        this(delegate, DEFAULT_MAX_HAMMING_DISTANCE, DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param delegate Service that classifies frames the cache has no answer for
+     * @param maxHammingDistance Number of hash bits two frames may differ in and still share an answer
+     * @param timeToLive How long an answer stays valid
+     * @param maxEntries Maximum number of cached answers
+     */
+    public CachingImageService(ImageService delegate, int maxHammingDistance, Duration timeToLive, int maxEntries) {
+        this(delegate, maxHammingDistance, timeToLive, maxEntries, System::nanoTime);
+    }
+
+    CachingImageService(ImageService delegate, int maxHammingDistance, Duration timeToLive, int maxEntries, LongSupplier nanoTime) {
+        if (maxHammingDistance < 0 || maxHammingDistance > 64) {
+            throw new IllegalArgumentException("maxHammingDistance must be between 0 and 64");
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.delegate = delegate;
+        this.maxHammingDistance = maxHammingDistance;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.maxEntries = maxEntries;
+        this.nanoTime = nanoTime;
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > CachingImageService.this.maxEntries) {
+                    evictedCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (image == null || image.getWidth() < HASH_WIDTH || image.getHeight() < HASH_HEIGHT) {
+            //too small to hash meaningfully
+            missCount.incrementAndGet();
+            return delegate.imageContainsCat(image, confidenceThreshhold);
+        }
+        long hash = differenceHash(image);
+        Boolean cached = lookup(hash, confidenceThreshhold);
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            return cached;
+        }
+        missCount.incrementAndGet();
+        //classify outside the lock; two threads missing on the same frame both ask the delegate
+        boolean result = delegate.imageContainsCat(image, confidenceThreshhold);
+        synchronized (entries) {
+            entries.put(hash, new Entry(confidenceThreshhold, result, nanoTime.getAsLong() + timeToLiveNanos));
+        }
+        return result;
+    }
+
+    private Boolean lookup(long hash, float confidenceThreshhold) {
+        long now = nanoTime.getAsLong();
+        synchronized (entries) {
+            Long nearestKey = null;
+            int nearestDistance = Integer.MAX_VALUE;
+            Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, Entry> candidate = it.next();
+                Entry entry = candidate.getValue();
+                if (now - entry.expiresAtNanos >= 0) {
+                    it.remove();
+                    expiredCount.incrementAndGet();
+                    continue;
+                }
+                if (Float.compare(entry.confidenceThreshhold, confidenceThreshhold) != 0) {
+                    continue;
+                }
+                int distance = Long.bitCount(candidate.getKey() ^ hash);
+                if (distance <= maxHammingDistance && distance < nearestDistance) {
+                    nearestKey = candidate.getKey();
+                    nearestDistance = distance;
+                }
+            }
+            //get() rather than the iterated value, so the hit counts as a use for LRU ordering
+            return nearestKey == null ? null : entries.get(nearestKey).containsCat;
+        }
+    }
+
+    /**
+     * Computes the 64-bit difference hash of the image. Each cell of a 9x8 grid is the average
+     * luminance of an evenly spaced sample of its pixels.
+     */
+    static long differenceHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] luminance = new int[HASH_WIDTH * HASH_HEIGHT];
+        for (int cy = 0; cy < HASH_HEIGHT; cy++) {
+            int y0 = cy * height / HASH_HEIGHT;
+            int y1 = (cy + 1) * height / HASH_HEIGHT;
+            for (int cx = 0; cx < HASH_WIDTH; cx++) {
+                int x0 = cx * width / HASH_WIDTH;
+                int x1 = (cx + 1) * width / HASH_WIDTH;
+                luminance[cy * HASH_WIDTH + cx] = averageLuminance(image, x0, y0, x1, y1);
+            }
+        }
+        long hash = 0;
+        for (int cy = 0; cy < HASH_HEIGHT; cy++) {
+            for (int cx = 0; cx < HASH_WIDTH - 1; cx++) {
+                hash <<= 1;
+                if (luminance[cy * HASH_WIDTH + cx] > luminance[cy * HASH_WIDTH + cx + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static int averageLuminance(BufferedImage image, int x0, int y0, int x1, int y1) {
+        int stepX = Math.max(1, (x1 - x0) / SAMPLES_PER_CELL_SIDE);
+        int stepY = Math.max(1, (y1 - y0) / SAMPLES_PER_CELL_SIDE);
+        long sum = 0;
+        int samples = 0;
+        for (int y = y0; y < y1; y += stepY) {
+            for (int x = x0; x < x1; x += stepX) {
+                int rgb = image.getRGB(x, y);
+                //integer Rec. 601 luma weights, scaled by 1000
+                sum += 299 * ((rgb >> 16) & 0xff) + 587 * ((rgb >> 8) & 0xff) + 114 * (rgb & 0xff);
+                samples++;
+            }
+        }
+        return (int) (sum / samples);
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return share of classifications answered from the cache, between 0 and 1
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return number of entries dropped because their time to live had passed
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * @return number of entries dropped to stay within the maximum number of entries
+     */
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private static final class Entry {
+        private final float confidenceThreshhold;
+        private final boolean containsCat;
+        private final long expiresAtNanos;
+
+        private Entry(float confidenceThreshhold, boolean containsCat, long expiresAtNanos) {
+            this.confidenceThreshhold = confidenceThreshhold;
+            this.containsCat = containsCat;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.udacity.image.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Encodes camera frames as JPEG for remote classification while allocating as little as possible
+ * per frame. Frames larger than the maximum dimension are scaled down first, since the remote
+ * service gains nothing from full-resolution pixels but pays for every byte sent.
+ *
+ * Each encoding borrows a worker from a small pool. A worker keeps its {@link ImageWriter}, its
+ * output buffer, its image metadata and its scaling canvas between frames. What is still allocated
+ * per frame is the exact-length copy of the encoded bytes that is returned, plus the scratch
+ * buffers of the JDK's JPEG writer, which grow with the pixel count of the frame.
+ *
+ * Encoded size, encode latency and, where the JVM can measure it, bytes allocated per encoding are
+ * recorded.
+ */
+public class ImageEncoder {
+
+    public static final int DEFAULT_MAX_DIMENSION = 1024;
+    public static final float DEFAULT_JPEG_QUALITY = 0.75f;
+
+    //buffers that grew past this after an unusually large frame are not kept in the pool
+    private static final int MAX_POOLED_BUFFER_BYTES = 4 * 1024 * 1024;
+
+    private final int maxDimension;
+    private final float jpegQuality;
+    private final int maxPooledWorkers;
+    private final ConcurrentLinkedQueue<Worker> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledWorkers = new AtomicInteger();
+    private final com.sun.management.ThreadMXBean allocationMeter;
+
+    private final AtomicLong encodeCount = new AtomicLong();
+    private final AtomicLong totalEncodedBytes = new AtomicLong();
+    private final AtomicLong totalEncodeNanos = new AtomicLong();
+    private final AtomicLong maxEncodeNanos = new AtomicLong();
+    private final AtomicLong totalAllocatedBytes = new AtomicLong();
+
+    public ImageEncoder() {
+        this(DEFAULT_MAX_DIMENSION, DEFAULT_JPEG_QUALITY);
+    }
+
+    /**
+     * @param maxDimension Frames wider or taller than this are scaled down to fit, keeping their aspect ratio
+     * @param jpegQuality JPEG compression quality between 0 and 1
+     */
+    public ImageEncoder(int maxDimension, float jpegQuality) {
+        if (maxDimension < 1) {
+            throw new IllegalArgumentException("maxDimension must be at least 1");
+        }
+        if (jpegQuality < 0 || jpegQuality > 1) {
+            throw new IllegalArgumentException("jpegQuality must be between 0 and 1");
+        }
+        this.maxDimension = maxDimension;
+        this.jpegQuality = jpegQuality;
+        this.maxPooledWorkers = Runtime.getRuntime().availableProcessors();
+        this.allocationMeter = allocationMeter();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationMeter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean meter = (com.sun.management.ThreadMXBean) threads;
+            if (meter.isThreadAllocatedMemorySupported() && meter.isThreadAllocatedMemoryEnabled()) {
+                return meter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the JPEG encoding of the frame, scaled down if it exceeds the maximum dimension. The
+     * array is exactly as long as the encoding and is not used by the encoder afterwards.
+     */
+    public byte[] encode(BufferedImage image) {
+        long allocatedBefore = allocationMeter == null ? 0 : allocationMeter.getCurrentThreadAllocatedBytes();
+        long started = System.nanoTime();
+
+        Worker worker = pool.poll();
+        if (worker == null) {
+            worker = new Worker();
+        } else {
+            pooledWorkers.decrementAndGet();
+        }
+        byte[] encoded;
+        try {
+            encoded = worker.encode(image);
+        } catch (IOException ioe) {
+            worker.dispose();
+            throw new UncheckedIOException("Unable to encode image", ioe);
+        }
+        release(worker);
+
+        long elapsed = System.nanoTime() - started;
+        encodeCount.incrementAndGet();
+        totalEncodedBytes.addAndGet(encoded.length);
+        totalEncodeNanos.addAndGet(elapsed);
+        maxEncodeNanos.accumulateAndGet(elapsed, Math::max);
+        if (allocationMeter != null) {
+            totalAllocatedBytes.addAndGet(allocationMeter.getCurrentThreadAllocatedBytes() - allocatedBefore);
+        }
+        return encoded;
+    }
+
+    private void release(Worker worker) {
+        if (worker.buffer.capacity() > MAX_POOLED_BUFFER_BYTES) {
+            worker.dispose();
+        } else if (pooledWorkers.incrementAndGet() > maxPooledWorkers) {
+            pooledWorkers.decrementAndGet();
+            worker.dispose();
+        } else {
+            pool.offer(worker);
+        }
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public float getJpegQuality() {
+        return jpegQuality;
+    }
+
+    public long getEncodeCount() {
+        return encodeCount.get();
+    }
+
+    /**
+     * @return average size of an encoded frame, which is what each request sends
+     */
+    public long getAverageEncodedBytes() {
+        long count = encodeCount.get();
+        return count == 0 ? 0 : totalEncodedBytes.get() / count;
+    }
+
+    public long getAverageEncodeNanos() {
+        long count = encodeCount.get();
+        return count == 0 ? 0 : totalEncodeNanos.get() / count;
+    }
+
+    public long getMaxEncodeNanos() {
+        return maxEncodeNanos.get();
+    }
+
+    /**
+     * @return average heap allocated by the encoding thread per frame, or -1 if the JVM cannot
+     * measure per-thread allocation
+     */
+    public long getAverageAllocatedBytes() {
+        if (allocationMeter == null) {
+            return -1;
+        }
+        long count = encodeCount.get();
+        return count == 0 ? 0 : totalAllocatedBytes.get() / count;
+    }
+
+    /**
+     * Output stream that exposes its internal array, so the encoding can be copied out once.
+     */
+    private static final class ReusableOutputStream extends ByteArrayOutputStream {
+        private ReusableOutputStream() {
+            super(64 * 1024);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+
+        private byte[] copyOfContents() {
+            return Arrays.copyOf(buf, count);
+        }
+    }
+
+    /**
+     * Encoding state for one frame at a time. Not thread-safe; a worker is only used by the thread
+     * that took it from the pool.
+     */
+    private final class Worker {
+        private final ImageWriter writer;
+        private final ImageWriteParam param;
+        private final ReusableOutputStream buffer = new ReusableOutputStream();
+        private BufferedImage canvas;
+        //building default JPEG metadata is a large part of a write's garbage, so keep it per image type
+        private int metadataImageType = -1;
+        private IIOMetadata metadata;
+
+        private Worker() {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+            if (!writers.hasNext()) {
+                throw new IllegalStateException("No JPEG image writer available");
+            }
+            writer = writers.next();
+            param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+        }
+
+        private byte[] encode(BufferedImage image) throws IOException {
+            buffer.reset();
+            //in-memory stream; ImageIO.createImageOutputStream may back it with a temporary file
+            try (ImageOutputStream output = new MemoryCacheImageOutputStream(buffer)) {
+                writer.setOutput(output);
+                BufferedImage prepared = prepare(image);
+                writer.write(null, new IIOImage(prepared, null, metadataFor(prepared)), param);
+            } finally {
+                writer.setOutput(null);
+            }
+            return buffer.copyOfContents();
+        }
+
+        private IIOMetadata metadataFor(BufferedImage image) {
+            if (metadata == null || metadataImageType != image.getType() || image.getType() == BufferedImage.TYPE_CUSTOM) {
+                metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+                metadataImageType = image.getType();
+            }
+            return metadata;
+        }
+
+        /**
+         * Scales the frame down to the maximum dimension and converts it to 3-byte BGR. That layout
+         * is the one the JDK's JPEG writer encodes with the least garbage; other layouts are copied
+         * and converted inside the writer on every call. Frames already in that layout and within
+         * the maximum dimension are encoded as they are.
+         */
+        private BufferedImage prepare(BufferedImage image) {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+            if (scale == 1.0 && image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+                return image;
+            }
+            int targetWidth = Math.max(1, (int) Math.round(width * scale));
+            int targetHeight = Math.max(1, (int) Math.round(height * scale));
+            if (canvas == null || canvas.getWidth() != targetWidth || canvas.getHeight() != targetHeight) {
+                canvas = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_3BYTE_BGR);
+            }
+            Graphics2D g = canvas.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+            } finally {
+                g.dispose();
+            }
+            return canvas;
+        }
+
+        private void dispose() {
+            writer.dispose();
+            canvas = null;
+        }
+    }
+}
@@ -1,7 +1,42 @@
 package com.udacity.image.service;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public interface ImageService {
     boolean imageContainsCat(BufferedImage image, float confidenceThreshold);
+
+    /**
+     * Classifies a burst of frames. The default classifies the frames in parallel on the common
+     * fork-join pool; services that can send several frames in one request may override it.
+     * @return one result per frame, in the order of the frames
+     */
+    default List<Boolean> imagesContainCat(List<BufferedImage> images, float confidenceThreshold) {
+        return imagesContainCat(images, confidenceThreshold, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #imagesContainCat(List, float)}, on the given pool. Classifications that
+     * block on a remote service tie up a pool thread each, so callers of such services may want a
+     * pool of their own rather than the common one.
+     * @return one result per frame, in the order of the frames
+     */
+    default List<Boolean> imagesContainCat(List<BufferedImage> images, float confidenceThreshold, ForkJoinPool pool) {
+        List<Boolean> results = new ArrayList<>(images.size());
+        if (images.size() == 1) {
+            results.add(imageContainsCat(images.get(0), confidenceThreshold));
+            return results;
+        }
+        List<ForkJoinTask<Boolean>> tasks = new ArrayList<>(images.size());
+        for (BufferedImage image : images) {
+            tasks.add(pool.submit(() -> imageContainsCat(image, confidenceThreshold)));
+        }
+        for (ForkJoinTask<Boolean> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
 }
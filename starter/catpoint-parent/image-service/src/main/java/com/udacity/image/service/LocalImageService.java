@@ -0,0 +1,224 @@
+package com.udacity.image.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Image service that decides in-process, without network access. The frame is reduced to a small
+ * grid, the shares of pixels in a few colour classes are measured on it, and a logistic model turns
+ * them into a cat probability. The model's weights are read from
+ * {@code local-cat-model.properties} next to this class.
+ *
+ * A frame counts as a cat when its probability, as a percentage, reaches the confidence threshold.
+ * When a fallback service is configured, frames whose probability lies within the uncertainty
+ * margin of the threshold are passed on to it, so a remote call is only made for frames the local
+ * model cannot call.
+ */
+public class LocalImageService implements ImageService {
+
+    public static final String MODEL_RESOURCE = "local-cat-model.properties";
+    public static final float DEFAULT_UNCERTAINTY_MARGIN = 25.0f;
+
+    //side of the square grid the frame is reduced to before features are measured
+    private static final int GRID = 128;
+
+    private static final int GINGER = 0;
+    private static final int BEIGE = 1;
+    private static final int GREEN = 2;
+    private static final int SKY = 3;
+    private static final String[] FEATURE_NAMES = {"ginger", "beige", "green", "sky"};
+
+    private final ImageService fallback;
+    private final float uncertaintyMargin;
+    private final double bias;
+    private final double[] weights = new double[FEATURE_NAMES.length];
+    private final ConcurrentLinkedQueue<BufferedImage> canvases = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong localDecisionCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+    private final AtomicLong totalLocalNanos = new AtomicLong();
+    private final AtomicLong maxLocalNanos = new AtomicLong();
+
+    /**
+     * Creates a service that decides every frame locally.
+     */
+    public LocalImageService() {
+        this(null, 0);
+    }
+
+    /**
+     * @param fallback Service asked about frames the local model is unsure of, or null to decide every frame locally
+     * @param uncertaintyMargin Percentage points around the confidence threshold within which the fallback is asked
+     */
+    public LocalImageService(ImageService fallback, float uncertaintyMargin) {
+        this(fallback, uncertaintyMargin, loadModel());
+    }
+
+    LocalImageService(ImageService fallback, float uncertaintyMargin, Properties model) {
+        if (uncertaintyMargin < 0) {
+            throw new IllegalArgumentException("uncertaintyMargin must not be negative");
+        }
+        this.fallback = fallback;
+        this.uncertaintyMargin = uncertaintyMargin;
+        this.bias = Double.parseDouble(model.getProperty("bias", "0"));
+        for (int i = 0; i < FEATURE_NAMES.length; i++) {
+            weights[i] = Double.parseDouble(model.getProperty("weight." + FEATURE_NAMES[i], "0"));
+        }
+    }
+
+    private static Properties loadModel() {
+        Properties model = new Properties();
+        try (InputStream is = LocalImageService.class.getResourceAsStream(MODEL_RESOURCE)) {
+            if (is == null) {
+                throw new IllegalStateException("Model resource " + MODEL_RESOURCE + " not found");
+            }
+            model.load(is);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to read model resource " + MODEL_RESOURCE, ioe);
+        }
+        return model;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        long started = System.nanoTime();
+        float confidence = catProbability(image) * 100;
+        long elapsed = System.nanoTime() - started;
+        totalLocalNanos.addAndGet(elapsed);
+        maxLocalNanos.accumulateAndGet(elapsed, Math::max);
+
+        if (fallback != null && Math.abs(confidence - confidenceThreshhold) < uncertaintyMargin) {
+            fallbackCount.incrementAndGet();
+            return fallback.imageContainsCat(image, confidenceThreshhold);
+        }
+        localDecisionCount.incrementAndGet();
+        return confidence >= confidenceThreshhold;
+    }
+
+    /**
+     * @return the local model's probability, between 0 and 1, that the frame shows a cat
+     */
+    public float catProbability(BufferedImage image) {
+        double[] features = features(image);
+        double z = bias;
+        for (int i = 0; i < features.length; i++) {
+            z += weights[i] * features[i];
+        }
+        return (float) (1 / (1 + Math.exp(-z)));
+    }
+
+    /**
+     * Reduces the frame to the grid on a pooled canvas and measures the features on its pixels.
+     */
+    double[] features(BufferedImage image) {
+        BufferedImage canvas = canvases.poll();
+        if (canvas == null) {
+            canvas = new BufferedImage(GRID, GRID, BufferedImage.TYPE_INT_RGB);
+        }
+        try {
+            Graphics2D g = canvas.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(image, 0, 0, GRID, GRID, null);
+            } finally {
+                g.dispose();
+            }
+            return measure(((DataBufferInt) canvas.getRaster().getDataBuffer()).getData());
+        } finally {
+            canvases.offer(canvas);
+        }
+    }
+
+    /**
+     * Classifies each pixel by hue, saturation and value. Plain loops over the pixel array; the
+     * incubator Vector API would need a runtime flag on every deployment, and on a 128x128 grid
+     * this loop takes well under a millisecond as it is.
+     */
+    private static double[] measure(int[] pixels) {
+        int ginger = 0;
+        int beige = 0;
+        int green = 0;
+        int sky = 0;
+        for (int rgb : pixels) {
+            int r = (rgb >> 16) & 0xff;
+            int g = (rgb >> 8) & 0xff;
+            int b = rgb & 0xff;
+            int max = Math.max(r, Math.max(g, b));
+            int min = Math.min(r, Math.min(g, b));
+            int chroma = max - min;
+            //too dark for hue and saturation to mean anything
+            if (max < 38) {
+                continue;
+            }
+            float saturation = chroma / (float) max;
+            float hue = hue(r, g, b, max, chroma);
+            if (hue >= 15 && hue <= 50 && max > 64) {
+                if (saturation >= 0.3f && saturation <= 0.75f) {
+                    ginger++;
+                } else if (saturation >= 0.08f && saturation < 0.3f) {
+                    beige++;
+                }
+            } else if (hue >= 70 && hue <= 170 && saturation > 0.2f) {
+                green++;
+            } else if (hue >= 190 && hue <= 250 && saturation > 0.15f && max > 128) {
+                sky++;
+            }
+        }
+        double n = pixels.length;
+        double[] features = new double[FEATURE_NAMES.length];
+        features[GINGER] = ginger / n;
+        features[BEIGE] = beige / n;
+        features[GREEN] = green / n;
+        features[SKY] = sky / n;
+        return features;
+    }
+
+    private static float hue(int r, int g, int b, int max, int chroma) {
+        if (chroma == 0) {
+            return 0;
+        }
+        float hue;
+        if (max == r) {
+            hue = 60f * ((g - b) / (float) chroma);
+        } else if (max == g) {
+            hue = 60f * ((b - r) / (float) chroma + 2);
+        } else {
+            hue = 60f * ((r - g) / (float) chroma + 4);
+        }
+        return hue < 0 ? hue + 360 : hue;
+    }
+
+    /**
+     * @return number of frames decided by the local model
+     */
+    public long getLocalDecisionCount() {
+        return localDecisionCount.get();
+    }
+
+    /**
+     * @return number of frames passed to the fallback service
+     */
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    /**
+     * @return average time the local model took per frame, including frames later passed on
+     */
+    public long getAverageLocalNanos() {
+        long count = localDecisionCount.get() + fallbackCount.get();
+        return count == 0 ? 0 : totalLocalNanos.get() / count;
+    }
+
+    public long getMaxLocalNanos() {
+        return maxLocalNanos.get();
+    }
+}
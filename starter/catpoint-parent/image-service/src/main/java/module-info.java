@@ -7,6 +7,8 @@ module com.udacity.image {
     requires org.slf4j;
 
     requires java.desktop;
+    //per-thread allocation counters for the image encoder statistics
+    requires jdk.management;
 
 
     exports com.udacity.image.service;
@@ -0,0 +1,148 @@
+package com.udacity.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingImageServiceTest {
+
+    private final CountingImageService counting = new CountingImageService();
+    private long now;
+    private final CachingImageService cache = new CachingImageService(counting, 4, Duration.ofSeconds(10), 2, () -> now);
+
+    /**
+     * Stands in for a remote service: answers with a fixed result and counts the calls.
+     */
+    private static final class CountingImageService implements ImageService {
+        private int calls;
+        private boolean result = true;
+
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            calls++;
+            return result;
+        }
+    }
+
+    //left-to-right gradient with a dark block whose position varies between scenes
+    private static BufferedImage frame(int blockX) {
+        BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            int shade = 255 * x / image.getWidth();
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, new Color(shade, shade, shade).getRGB());
+            }
+        }
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(blockX, 60, 80, 120);
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage withNoise(BufferedImage source, long seed) {
+        BufferedImage copy = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int x = 0; x < source.getWidth(); x++) {
+            for (int y = 0; y < source.getHeight(); y++) {
+                int gray = (source.getRGB(x, y) & 0xff) + random.nextInt(5) - 2;
+                gray = Math.max(0, Math.min(255, gray));
+                copy.setRGB(x, y, new Color(gray, gray, gray).getRGB());
+            }
+        }
+        return copy;
+    }
+
+    @Test
+    public void identicalFrame_IsAnsweredFromCache() {
+        BufferedImage image = frame(40);
+
+        assertTrue(cache.imageContainsCat(image, 50.0f));
+        assertTrue(cache.imageContainsCat(image, 50.0f));
+
+        assertEquals(1, counting.calls);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void noisyCopyOfFrame_IsAnsweredFromCache() {
+        BufferedImage image = frame(40);
+        cache.imageContainsCat(image, 50.0f);
+
+        cache.imageContainsCat(withNoise(image, 7), 50.0f);
+
+        assertEquals(1, counting.calls);
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void differentScene_IsClassifiedAgain() {
+        cache.imageContainsCat(frame(40), 50.0f);
+
+        cache.imageContainsCat(frame(200), 50.0f);
+
+        assertEquals(2, counting.calls);
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void differentConfidenceThreshold_IsClassifiedAgain() {
+        BufferedImage image = frame(40);
+        cache.imageContainsCat(image, 50.0f);
+
+        cache.imageContainsCat(image, 90.0f);
+
+        assertEquals(2, counting.calls);
+    }
+
+    @Test
+    public void expiredAnswer_IsClassifiedAgain() {
+        BufferedImage image = frame(40);
+        cache.imageContainsCat(image, 50.0f);
+        counting.result = false;
+
+        now += Duration.ofSeconds(11).toNanos();
+
+        assertFalse(cache.imageContainsCat(image, 50.0f));
+        assertEquals(2, counting.calls);
+        assertEquals(1, cache.getExpiredCount());
+    }
+
+    @Test
+    public void fullCache_EvictsLeastRecentlyUsedAnswer() {
+        BufferedImage first = frame(0);
+        BufferedImage second = frame(120);
+        BufferedImage third = frame(240);
+        cache.imageContainsCat(first, 50.0f);
+        cache.imageContainsCat(second, 50.0f);
+        cache.imageContainsCat(first, 50.0f);
+
+        cache.imageContainsCat(third, 50.0f);
+        cache.imageContainsCat(first, 50.0f);
+        cache.imageContainsCat(second, 50.0f);
+
+        //second was the least recently used when third arrived
+        assertEquals(4, counting.calls);
+        assertEquals(2, cache.size());
+        assertTrue(cache.getEvictedCount() >= 1);
+    }
+
+    @Test
+    public void cachedAnswerOfFakeService_StaysStableForSameFrame() {
+        CachingImageService cachedFake = new CachingImageService(new FakeImageService());
+        BufferedImage image = frame(40);
+        boolean first = cachedFake.imageContainsCat(image, 50.0f);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(first, cachedFake.imageContainsCat(image, 50.0f));
+        }
+        assertEquals(20, cachedFake.getHitCount());
+    }
+}
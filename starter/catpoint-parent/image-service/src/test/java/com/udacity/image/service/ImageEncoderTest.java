@@ -0,0 +1,54 @@
+package com.udacity.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageEncoderTest {
+
+    private final ImageEncoder encoder = new ImageEncoder(400, 0.75f);
+
+    private static BufferedImage decode(byte[] jpeg) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(jpeg));
+    }
+
+    @Test
+    public void largeFrame_IsScaledDownKeepingAspectRatio() throws IOException {
+        BufferedImage decoded = decode(encoder.encode(new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB)));
+
+        assertEquals(400, decoded.getWidth());
+        assertEquals(300, decoded.getHeight());
+    }
+
+    @Test
+    public void smallFrame_KeepsItsSize() throws IOException {
+        BufferedImage decoded = decode(encoder.encode(new BufferedImage(320, 240, BufferedImage.TYPE_3BYTE_BGR)));
+
+        assertEquals(320, decoded.getWidth());
+        assertEquals(240, decoded.getHeight());
+    }
+
+    @Test
+    public void frameWithAlpha_IsEncoded() throws IOException {
+        BufferedImage decoded = decode(encoder.encode(new BufferedImage(320, 240, BufferedImage.TYPE_INT_ARGB)));
+
+        assertNotNull(decoded);
+    }
+
+    @Test
+    public void repeatedEncoding_ReturnsIndependentArraysAndRecordsStatistics() {
+        BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+        byte[] first = encoder.encode(image);
+        byte[] second = encoder.encode(image);
+
+        assertNotSame(first, second);
+        assertArrayEquals(first, second);
+        assertEquals(2, encoder.getEncodeCount());
+        assertEquals(first.length, encoder.getAverageEncodedBytes());
+    }
+}
@@ -0,0 +1,65 @@
+package com.udacity.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the mechanics of the local model: feature measurement, thresholds and the fallback. The
+ * bundled weights were fitted by hand on the three sample images and have not been checked on any
+ * other images, so these tests say nothing about how accurately the model recognises cats.
+ */
+public class LocalImageServiceTest {
+
+    private static BufferedImage filled(Color color) {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    public void gingerFrame_IsACat() {
+        LocalImageService service = new LocalImageService();
+
+        assertTrue(service.imageContainsCat(filled(new Color(200, 130, 70)), 50.0f));
+        assertEquals(1, service.getLocalDecisionCount());
+    }
+
+    @Test
+    public void grassFrame_IsNotACat() {
+        LocalImageService service = new LocalImageService();
+
+        assertFalse(service.imageContainsCat(filled(new Color(80, 170, 60)), 50.0f));
+    }
+
+    @Test
+    public void uncertainFrame_IsPassedToFallback() {
+        AtomicInteger fallbackCalls = new AtomicInteger();
+        ImageService fallback = (image, confidenceThreshhold) -> fallbackCalls.incrementAndGet() > 0;
+        //a model without weights is exactly 50% sure of every frame
+        LocalImageService service = new LocalImageService(fallback, 10.0f, new Properties());
+
+        assertTrue(service.imageContainsCat(filled(Color.GRAY), 50.0f));
+        assertEquals(1, fallbackCalls.get());
+        assertEquals(1, service.getFallbackCount());
+    }
+
+    @Test
+    public void confidentFrame_IsNotPassedToFallback() {
+        AtomicInteger fallbackCalls = new AtomicInteger();
+        ImageService fallback = (image, confidenceThreshhold) -> fallbackCalls.incrementAndGet() > 0;
+        LocalImageService service = new LocalImageService(fallback, 10.0f);
+
+        assertFalse(service.imageContainsCat(filled(new Color(80, 170, 60)), 50.0f));
+        assertEquals(0, fallbackCalls.get());
+    }
+}
@@ -1,11 +1,145 @@
 package com.udacity.security.application;
 
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.security.data.SecurityRepository;
+import com.udacity.security.gateway.SensorGateway;
+import com.udacity.security.service.DirectoryWatchFrameSource;
+import com.udacity.security.service.FolderReplayFrameSource;
+import com.udacity.security.service.FrameIngestor;
+import com.udacity.security.service.FrameSource;
+import com.udacity.security.service.SecurityService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.logging.Logger;
+
 /**
  * This is the main class that launches the application.
+ *
+ * Optional arguments stream camera frames instead of waiting for a picture to be picked:
+ * --watch DIR classifies each image written into DIR, --replay DIR replays the images in DIR in a
+ * loop, and --fps N limits classification to N frames per second (5 by default).
+ *
+ * --headless runs the security service without the GUI, behind the local HTTP endpoint of
+ * {@link CatpointDaemon} on --port N (8080 by default). Camera streams work the same way.
+ *
+ * --gateway N accepts sensor hub connections on port N, in either mode; see {@link SensorGateway}.
+ *
+ * --data DIR keeps the state in an event log in DIR instead of the user preferences. Its snapshot
+ * is memory-mapped and its sensors are loaded on first use, so the status is available at once
+ * whatever the number of sensors. Either way, the time until the first status is logged.
  */
 public class CatpointApp {
+
+    private static final Logger log = Logger.getLogger(CatpointApp.class.getName());
+
     public static void main(String[] args) {
-        CatpointGui gui = new CatpointGui();
+        Path watch = null;
+        Path replay = null;
+        double fps = 5;
+        boolean headless = false;
+        int port = CatpointDaemon.DEFAULT_PORT;
+        int gatewayPort = -1;
+        Path data = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--watch" -> watch = Paths.get(value(args, ++i));
+                case "--replay" -> replay = Paths.get(value(args, ++i));
+                case "--fps" -> fps = Double.parseDouble(value(args, ++i));
+                case "--headless" -> headless = true;
+                case "--port" -> port = Integer.parseInt(value(args, ++i));
+                case "--gateway" -> gatewayPort = Integer.parseInt(value(args, ++i));
+                case "--data" -> data = Paths.get(value(args, ++i));
+                default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+        FrameSource source = null;
+        if (watch != null) {
+            source = new DirectoryWatchFrameSource(watch);
+        } else if (replay != null) {
+            source = new FolderReplayFrameSource(replay, fps, true);
+        }
+
+        long opening = System.nanoTime();
+        SecurityRepository repository = openRepository(data);
+        long openNanos = System.nanoTime() - opening;
+
+        if (headless) {
+            startDaemon(repository, openNanos, port, source, fps, gatewayPort);
+            return;
+        }
+        CatpointGui gui = new CatpointGui(repository);
         gui.setVisible(true);
+        logFirstStatus(gui.getSecurityService(), openNanos);
+        if (source != null) {
+            gui.startCameraStream(source, fps);
+        }
+        if (gatewayPort >= 0) {
+            gui.startSensorGateway(gatewayPort);
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(args[i - 1] + " needs a value");
+        }
+        return args[i];
+    }
+
+    /**
+     * @param data Directory of the event log, or null for the user preferences
+     */
+    private static SecurityRepository openRepository(Path data) {
+        if (data == null) {
+            return new PretendDatabaseSecurityRepositoryImpl(Duration.ofMillis(500), 64);
+        }
+        //the same half-second window for losing changes as the preferences' write-behind
+        return new EventLogSecurityRepositoryImpl(data, 64, Duration.ofMillis(500), 10_000);
+    }
+
+    /**
+     * Logs how long after the JVM started the current status could first be shown, and how much of
+     * that was spent opening the repository.
+     */
+    private static void logFirstStatus(SecurityService securityService, long repositoryOpenNanos) {
+        AlarmStatus status = securityService.getAlarmStatus();
+        log.info(String.format("First status %s after %d ms, repository opened in %.1f ms",
+                status, ManagementFactory.getRuntimeMXBean().getUptime(), repositoryOpenNanos / 1e6));
+    }
+
+    private static void startDaemon(SecurityRepository repository, long repositoryOpenNanos, int port,
+                                    FrameSource source, double fps, int gatewayPort) {
+        //images are still decoded, but nothing may try to open a display
+        System.setProperty("java.awt.headless", "true");
+        CatpointDaemon daemon;
+        try {
+            daemon = new CatpointDaemon(repository, port);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to listen on port " + port, e);
+        }
+        daemon.getSecurityService().getMetrics().register();
+        if (source != null) {
+            //same queue as the GUI stream: two frames keep the classifier busy
+            FrameIngestor ingestor = new FrameIngestor(daemon.getSecurityService(), source, fps, 2);
+            Runtime.getRuntime().addShutdownHook(new Thread(ingestor::close, "frame-ingestor-shutdown"));
+            ingestor.start();
+        }
+        if (gatewayPort >= 0) {
+            SensorGateway gateway = new SensorGateway(daemon.getSecurityService(), new InetSocketAddress(gatewayPort));
+            Runtime.getRuntime().addShutdownHook(new Thread(gateway::close, "sensor-gateway-shutdown"));
+            gateway.start();
+            log.info("Sensor gateway listening on port " + gateway.getPort());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close, "catpoint-daemon-shutdown"));
+        daemon.start();
+        log.info("Catpoint listening on http://localhost:" + daemon.getPort());
+        logFirstStatus(daemon.getSecurityService(), repositoryOpenNanos);
     }
 }
@@ -0,0 +1,386 @@
+package com.udacity.security.application;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.udacity.image.service.FakeImageService;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.security.data.SecurityRepository;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.metrics.LatencySnapshot;
+import com.udacity.security.metrics.SecurityMetrics;
+import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.SensorEvent;
+import com.udacity.security.service.StatusEventBus;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the security service without a user interface, for server boxes with no display. Sensors,
+ * camera images and arming changes are posted to a small HTTP endpoint on the loopback interface,
+ * and the status can be read back from it. Requests are handled on virtual threads, so a request
+ * waiting for an image classification costs a few hundred bytes rather than a platform thread.
+ *
+ * Endpoints, all JSON apart from the image upload:
+ * GET /status, GET /metrics, GET /sensors, POST /sensors {"name", "sensorType"},
+ * POST /sensor-events {"sensorId", "active"} or an array of them, PUT /arming {"armingStatus"},
+ * POST /images with the bytes of a JPEG or PNG image.
+ *
+ * Nothing here touches AWT or Swing beyond decoding images, so the daemon starts faster and
+ * needs much less memory than the GUI.
+ */
+public class CatpointDaemon implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(CatpointDaemon.class.getName());
+
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    //larger than any camera frame worth classifying
+    private static final int MAX_IMAGE_BYTES = 16 * 1024 * 1024;
+
+    private final SecurityService securityService;
+    private final AutoCloseable repository;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Creates a daemon with the same repository and image service as the GUI, listening on the
+     * given port of the loopback interface.
+     */
+    public CatpointDaemon(int port) throws IOException {
+        this(new PretendDatabaseSecurityRepositoryImpl(Duration.ofMillis(500), 64), port);
+    }
+
+    /**
+     * Creates a daemon on the given repository with the GUI's image service, listening on the given
+     * port of the loopback interface.
+     * @param repository Closed with the daemon, if it can be closed
+     */
+    public CatpointDaemon(SecurityRepository repository, int port) throws IOException {
+        //no listener is a Swing component here, so nothing needs the event dispatch thread
+        this(new SecurityService(repository, new FakeImageService(),
+                        new StatusEventBus(Executors.newVirtualThreadPerTaskExecutor(), Runnable::run,
+                                StatusEventBus.DEFAULT_QUEUE_CAPACITY)),
+                repository instanceof AutoCloseable closeable ? closeable : null,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * @param repository Closed with the daemon, or null if the caller closes it
+     * @param address Address to listen on; port 0 picks a free port
+     */
+    public CatpointDaemon(SecurityService securityService, AutoCloseable repository, InetSocketAddress address) throws IOException {
+        this.securityService = securityService;
+        this.repository = repository;
+        //the server writes headers and body separately, so with Nagle's algorithm every answer would
+        //wait for the client's delayed ACK, about 40 ms. Read once, when the first server is created.
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/status", exchange -> handle(exchange, this::status));
+        server.createContext("/metrics", exchange -> handle(exchange, this::metrics));
+        server.createContext("/sensors", exchange -> handle(exchange, this::sensors));
+        server.createContext("/sensor-events", exchange -> handle(exchange, this::sensorEvents));
+        server.createContext("/arming", exchange -> handle(exchange, this::arming));
+        server.createContext("/images", exchange -> handle(exchange, this::images));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public SecurityService getSecurityService() {
+        return securityService;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+        if (repository != null) {
+            try {
+                repository.close();
+            } catch (Exception e) {
+                log.log(Level.WARNING, "Unable to close repository", e);
+            }
+        }
+    }
+
+    /**
+     * Produces the JSON answer to a request, or throws {@link HttpError} to answer with an error.
+     */
+    private interface Endpoint {
+        JsonElement handle(HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * An error answer with its HTTP status.
+     */
+    private static final class HttpError extends RuntimeException {
+        private final int status;
+
+        private HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        int status;
+        JsonElement body;
+        try {
+            //contexts match by prefix, but every endpoint here is a single path
+            if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                throw new HttpError(404, "No endpoint " + exchange.getRequestURI().getPath());
+            }
+            body = endpoint.handle(exchange);
+            status = 200;
+        } catch (HttpError e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (JsonParseException | IllegalArgumentException e) {
+            //malformed JSON; anything else wrong with a request is reported as an HttpError where it is read
+            status = 400;
+            body = error("Bad request: " + e.getMessage());
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Request to " + exchange.getRequestURI() + " failed", e);
+            status = 500;
+            body = error("Internal error");
+        }
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static JsonObject error(String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        return error;
+    }
+
+    private static void requireMethod(HttpExchange exchange, String... methods) {
+        for (String method : methods) {
+            if (method.equals(exchange.getRequestMethod())) {
+                return;
+            }
+        }
+        throw new HttpError(405, exchange.getRequestMethod() + " not allowed on " + exchange.getRequestURI().getPath());
+    }
+
+    private static JsonElement readJson(HttpExchange exchange) throws IOException {
+        try (InputStream is = exchange.getRequestBody()) {
+            return JsonParser.parseString(new String(is.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static JsonObject object(JsonElement value, String what) {
+        if (!value.isJsonObject()) {
+            throw new HttpError(400, what + " must be a JSON object");
+        }
+        return value.getAsJsonObject();
+    }
+
+    private static JsonElement field(JsonObject request, String name) {
+        JsonElement value = request.get(name);
+        if (value == null || value.isJsonNull()) {
+            throw new HttpError(400, "Missing " + name);
+        }
+        return value;
+    }
+
+    private static String string(JsonObject request, String name) {
+        JsonElement value = field(request, name);
+        if (!value.isJsonPrimitive()) {
+            throw new HttpError(400, name + " must be a string");
+        }
+        return value.getAsString();
+    }
+
+    private static boolean bool(JsonObject request, String name) {
+        JsonElement value = field(request, name);
+        if (!value.isJsonPrimitive() || !value.getAsJsonPrimitive().isBoolean()) {
+            throw new HttpError(400, name + " must be true or false");
+        }
+        return value.getAsBoolean();
+    }
+
+    private static <E extends Enum<E>> E constant(JsonObject request, String name, Class<E> type) {
+        String value = string(request, name);
+        try {
+            return Enum.valueOf(type, value);
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(400, "Unknown " + name + " " + value);
+        }
+    }
+
+    private static UUID uuid(JsonObject request, String name) {
+        String value = string(request, name);
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(400, name + " is not a UUID: " + value);
+        }
+    }
+
+    private JsonElement status(HttpExchange exchange) {
+        requireMethod(exchange, "GET");
+        return statusOf();
+    }
+
+    private JsonElement metrics(HttpExchange exchange) {
+        requireMethod(exchange, "GET");
+        SecurityMetrics metrics = securityService.getMetrics();
+        JsonObject json = new JsonObject();
+        json.addProperty("alarmTransitions", metrics.getAlarmTransitionCount());
+        json.addProperty("alarmsRaised", metrics.getAlarmsRaisedCount());
+        json.addProperty("armingTransitions", metrics.getArmingTransitionCount());
+        json.addProperty("sensorActivations", metrics.getSensorActivationCount());
+        json.addProperty("sensorDeactivations", metrics.getSensorDeactivationCount());
+        json.addProperty("listenerDispatches", metrics.getListenerDispatchCount());
+        json.add("processImageLatency", toJson(metrics.getProcessImageLatency()));
+        json.add("imageServiceLatency", toJson(metrics.getImageServiceLatency()));
+        json.add("repositoryWriteLatency", toJson(metrics.getRepositoryWriteLatency()));
+        return json;
+    }
+
+    private static JsonObject toJson(LatencySnapshot snapshot) {
+        JsonObject json = new JsonObject();
+        json.addProperty("count", snapshot.getCount());
+        json.addProperty("meanMicros", snapshot.getMeanMicros());
+        json.addProperty("p50Micros", snapshot.getP50Micros());
+        json.addProperty("p90Micros", snapshot.getP90Micros());
+        json.addProperty("p99Micros", snapshot.getP99Micros());
+        json.addProperty("maxMicros", snapshot.getMaxMicros());
+        return json;
+    }
+
+    private static JsonObject toJson(Sensor sensor) {
+        JsonObject json = new JsonObject();
+        json.addProperty("sensorId", sensor.getSensorId().toString());
+        json.addProperty("name", sensor.getName());
+        json.addProperty("sensorType", sensor.getSensorType().name());
+        json.addProperty("active", sensor.getActive());
+        return json;
+    }
+
+    private JsonElement sensors(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "GET", "POST");
+        if ("GET".equals(exchange.getRequestMethod())) {
+            JsonArray sensors = new JsonArray();
+            securityService.getSortedSensors().forEach(sensor -> sensors.add(toJson(sensor)));
+            return sensors;
+        }
+        JsonObject request = object(readJson(exchange), "Request");
+        Sensor sensor = new Sensor(string(request, "name"), constant(request, "sensorType", SensorType.class));
+        securityService.addSensor(sensor);
+        return toJson(sensor);
+    }
+
+    private JsonElement sensorEvents(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "POST");
+        JsonElement request = readJson(exchange);
+        if (request.isJsonArray()) {
+            List<SensorEvent> events = new ArrayList<>();
+            for (JsonElement event : request.getAsJsonArray()) {
+                events.add(sensorEvent(object(event, "Sensor event")));
+            }
+            securityService.changeSensorActivationStatuses(events);
+        } else {
+            SensorEvent event = sensorEvent(object(request, "Request"));
+            if (!securityService.changeSensorActivationStatus(event.getSensor(), event.isActive())) {
+                throw new HttpError(404, "No sensor " + event.getSensor().getSensorId());
+            }
+        }
+        return statusOf();
+    }
+
+    private SensorEvent sensorEvent(JsonObject event) {
+        UUID sensorId = uuid(event, "sensorId");
+        Sensor sensor = securityService.getSensor(sensorId);
+        if (sensor == null) {
+            throw new HttpError(404, "No sensor " + sensorId);
+        }
+        return new SensorEvent(sensor, bool(event, "active"));
+    }
+
+    private JsonElement arming(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "PUT", "POST");
+        JsonObject request = object(readJson(exchange), "Request");
+        securityService.setArmingStatus(constant(request, "armingStatus", ArmingStatus.class));
+        return statusOf();
+    }
+
+    private JsonElement images(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "POST");
+        byte[] bytes;
+        try (InputStream is = exchange.getRequestBody()) {
+            bytes = is.readNBytes(MAX_IMAGE_BYTES + 1);
+        }
+        if (bytes.length > MAX_IMAGE_BYTES) {
+            throw new HttpError(413, "Images are limited to " + MAX_IMAGE_BYTES + " bytes");
+        }
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) {
+            throw new HttpError(415, "Not a readable image");
+        }
+        boolean cat;
+        try {
+            //blocks only this request's virtual thread
+            cat = securityService.processImageAsync(image).join();
+        } catch (CancellationException | CompletionException e) {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause instanceof RejectedExecutionException || cause instanceof CancellationException) {
+                throw new HttpError(503, "Too many images waiting to be classified");
+            }
+            throw e;
+        }
+        JsonObject result = statusOf();
+        result.addProperty("catDetected", cat);
+        return result;
+    }
+
+    private JsonObject statusOf() {
+        JsonObject status = new JsonObject();
+        status.addProperty("alarmStatus", securityService.getAlarmStatus().name());
+        status.addProperty("armingStatus", securityService.getArmingStatus().name());
+        status.addProperty("sensors", securityService.getSensorCount());
+        status.addProperty("activeSensors", securityService.getActiveSensorCount());
+        return status;
+    }
+}
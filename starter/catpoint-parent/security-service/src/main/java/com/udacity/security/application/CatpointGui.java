@@ -3,10 +3,16 @@ package com.udacity.security.application;
 import com.udacity.security.data.PretendDatabaseSecurityRepositoryImpl;
 import com.udacity.security.data.SecurityRepository;
 import com.udacity.image.service.FakeImageService;
+import com.udacity.image.service.ImageService;
+import com.udacity.security.gateway.SensorGateway;
+import com.udacity.security.service.FrameIngestor;
+import com.udacity.security.service.FrameSource;
 import com.udacity.security.service.SecurityService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.net.InetSocketAddress;
+import java.time.Duration;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
@@ -15,20 +21,47 @@ import javax.swing.*;
  * all our dependencies and providing them to other classes as necessary.
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private FakeImageService imageService = new FakeImageService();
-    private SecurityService securityService = new SecurityService(securityRepository, imageService);
-    private DisplayPanel displayPanel = new DisplayPanel(securityService);
-    private ControlPanel controlPanel = new ControlPanel(securityService);
-    private SensorPanel sensorPanel = new SensorPanel(securityService);
-    private ImagePanel imagePanel = new ImagePanel(securityService);
+    private SecurityRepository securityRepository;
+    private ImageService imageService = new FakeImageService();
+    private SecurityService securityService;
+    private DisplayPanel displayPanel;
+    private ControlPanel controlPanel;
+    private SensorPanel sensorPanel;
+    private ImagePanel imagePanel;
 
     public CatpointGui() {
+        this(new PretendDatabaseSecurityRepositoryImpl(Duration.ofMillis(500), 64));
+    }
+
+    /**
+     * @param securityRepository Closed when the application shuts down, if it can be closed
+     */
+    public CatpointGui(SecurityRepository securityRepository) {
+        this.securityRepository = securityRepository;
+        securityService = new SecurityService(securityRepository, imageService);
+        displayPanel = new DisplayPanel(securityService);
+        controlPanel = new ControlPanel(securityService);
+        sensorPanel = new SensorPanel(securityService);
+        imagePanel = new ImagePanel(securityService);
+
         setLocation(100, 100);
         setSize(600, 850);
         setTitle("Very Secure App");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
+        //write-behind repositories keep recent changes in memory, so write them out on the way down
+        if (securityRepository instanceof AutoCloseable closeable) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    throw new IllegalStateException("Unable to close repository", e);
+                }
+            }, "security-repository-shutdown"));
+        }
+        //counters and latencies for JConsole or any other JMX client
+        securityService.getMetrics().register();
+
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new MigLayout());
         mainPanel.add(displayPanel, "wrap");
@@ -39,4 +72,30 @@ public class CatpointGui extends JFrame {
         getContentPane().add(mainPanel);
 
     }
-}
\ No newline at end of file
+
+    public SecurityService getSecurityService() {
+        return securityService;
+    }
+
+    /**
+     * Classifies frames from the given source continuously and shows them in the camera panel.
+     * @param targetFps Maximum number of frames classified per second
+     */
+    public void startCameraStream(FrameSource source, double targetFps) {
+        //two frames are enough to keep the classifier busy; anything older is stale
+        FrameIngestor ingestor = new FrameIngestor(securityService, source, targetFps, 2);
+        ingestor.setFrameListener(imagePanel::showFrame);
+        imagePanel.showStreamStatistics(ingestor);
+        Runtime.getRuntime().addShutdownHook(new Thread(ingestor::close, "frame-ingestor-shutdown"));
+        ingestor.start();
+    }
+
+    /**
+     * Accepts sensor hub connections on the given port of every interface.
+     */
+    public void startSensorGateway(int port) {
+        SensorGateway gateway = new SensorGateway(securityService, new InetSocketAddress(port));
+        Runtime.getRuntime().addShutdownHook(new Thread(gateway::close, "sensor-gateway-shutdown"));
+        gateway.start();
+    }
+}
@@ -1,6 +1,7 @@
 package com.udacity.security.application;
 
 import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.service.FrameIngestor;
 import com.udacity.security.service.SecurityService;
 import com.udacity.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
@@ -11,6 +12,11 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
  * by uploading their own picture, and 'scan' the picture, sending it for image analysis
@@ -20,11 +26,21 @@ public class ImagePanel extends JPanel implements StatusListener {
 
     private JLabel cameraHeader;
     private JLabel cameraLabel;
-    private BufferedImage currentCameraImage;
+    //the picked picture, kept for scanning; streamed frames are classified already and not kept
+    private volatile BufferedImage currentCameraImage;
+    //the only image painted; scaled off the event dispatch thread
+    private volatile BufferedImage thumbnail;
 
     private int IMAGE_WIDTH = 300;
     private int IMAGE_HEIGHT = 225;
 
+    private final ThumbnailScaler thumbnailScaler = new ThumbnailScaler(IMAGE_WIDTH, IMAGE_HEIGHT);
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "camera-image-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
     public ImagePanel(SecurityService securityService) {
         super();
         setLayout(new MigLayout());
@@ -38,6 +54,7 @@ public class ImagePanel extends JPanel implements StatusListener {
         cameraLabel.setBackground(Color.WHITE);
         cameraLabel.setPreferredSize(new Dimension(IMAGE_WIDTH, IMAGE_HEIGHT));
         cameraLabel.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
+        cameraLabel.setIcon(new ThumbnailIcon());
 
         //button allowing users to select a file to be the current camera image
         JButton addPictureButton = new JButton("Refresh Camera");
@@ -49,20 +66,36 @@ public class ImagePanel extends JPanel implements StatusListener {
             if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
                 return;
             }
-            try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
-            } catch (IOException |NullPointerException ioe) {
-                JOptionPane.showMessageDialog(null, "Invalid image selected.");
-            }
-            repaint();
+            File selected = chooser.getSelectedFile();
+            //decoding and scaling a large picture takes long enough to freeze the window
+            loadExecutor.execute(() -> {
+                try {
+                    BufferedImage image = ImageIO.read(selected);
+                    if (image == null) {
+                        throw new IOException("Unsupported image format");
+                    }
+                    currentCameraImage = image;
+                    display(image);
+                } catch (IOException ioe) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Invalid image selected."));
+                }
+            });
         });
 
         //button that sends the image to the image service
         JButton scanPictureButton = new JButton("Scan Picture");
+        //classification may take a while, so it runs off the event dispatch thread
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            BufferedImage image = currentCameraImage;
+            if (image == null) {
+                JOptionPane.showMessageDialog(null, "Select a picture before scanning.");
+                return;
+            }
+            securityService.processImageAsync(image).whenComplete((cat, failure) -> {
+                if (failure != null) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, scanFailureMessage(failure)));
+                }
+            });
         });
 
         add(cameraHeader, "span 3, wrap");
@@ -71,6 +104,70 @@ public class ImagePanel extends JPanel implements StatusListener {
         add(scanPictureButton);
     }
 
+    /**
+     * Explains why a scan did not complete. A scan that is rejected or dropped for a newer picture
+     * leaves the alarm status unchanged, so the user has to be told to try again.
+     */
+    private static String scanFailureMessage(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof CancellationException) {
+            return "The scan was dropped in favour of a newer picture.";
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return "Too many pictures are waiting to be scanned. Try again shortly.";
+        }
+        return "Unable to scan the picture: " + cause.getMessage();
+    }
+
+    /**
+     * Shows a frame delivered by a camera stream. The frame is scaled on the calling thread, which
+     * should not be the event dispatch thread.
+     */
+    public void showFrame(BufferedImage frame) {
+        display(frame);
+    }
+
+    private void display(BufferedImage image) {
+        thumbnail = thumbnailScaler.scale(image);
+        cameraLabel.repaint();
+    }
+
+    /**
+     * Paints the current thumbnail, holding its lock so the scaler does not draw into it meanwhile.
+     */
+    private final class ThumbnailIcon implements Icon {
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            BufferedImage image = thumbnail;
+            if (image != null) {
+                synchronized (image) {
+                    g.drawImage(image, x, y, null);
+                }
+            }
+        }
+
+        @Override
+        public int getIconWidth() {
+            return IMAGE_WIDTH;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return IMAGE_HEIGHT;
+        }
+    }
+
+    /**
+     * Displays the frame rates of a camera stream, refreshed every second.
+     */
+    public void showStreamStatistics(FrameIngestor ingestor) {
+        JLabel statistics = new JLabel();
+        add(statistics, "span 3, wrap");
+        new Timer(1000, e -> statistics.setText(String.format("Frames/s in: %d, classified: %d, dropped: %d, failed: %d",
+                ingestor.getInFps(), ingestor.getClassifiedFps(), ingestor.getDroppedFps(), ingestor.getFailedFps()))).start();
+        revalidate();
+    }
+
     @Override
     public void notify(AlarmStatus status) {
         //no behavior necessary
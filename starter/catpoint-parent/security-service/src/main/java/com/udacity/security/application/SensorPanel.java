@@ -1,5 +1,6 @@
 package com.udacity.security.application;
 
+import com.udacity.security.data.AlarmStatus;
 import com.udacity.security.data.Sensor;
 import com.udacity.security.data.SensorType;
 import com.udacity.security.service.SecurityService;
@@ -7,12 +8,23 @@ import com.udacity.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableColumnModel;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Collection;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
  * manually set to "active" and "inactive" to test the system.
+ *
+ * The sensors are listed in a table backed by a {@link SensorTableModel}. The panel listens for
+ * sensor changes, wherever they come from, and only the rows of the changed sensors are redrawn.
  */
-public class SensorPanel extends JPanel {
+public class SensorPanel extends JPanel implements StatusListener {
+
+    private static final int VISIBLE_ROWS = 8;
 
     private SecurityService securityService;
 
@@ -23,7 +35,8 @@ public class SensorPanel extends JPanel {
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
     private JButton addNewSensorButton = new JButton("Add New Sensor");
 
-    private JPanel sensorListPanel;
+    private SensorTableModel sensorTableModel;
+    private JTable sensorTable;
     private JPanel newSensorPanel;
 
     public SensorPanel(SecurityService securityService) {
@@ -37,14 +50,13 @@ public class SensorPanel extends JPanel {
                         SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
 
         newSensorPanel = buildAddSensorPanel();
-        sensorListPanel = new JPanel();
-        sensorListPanel.setLayout(new MigLayout());
-
-        updateSensorList(sensorListPanel);
+        sensorTableModel = new SensorTableModel(securityService);
+        sensorTable = buildSensorTable();
+        securityService.addStatusListener(this);
 
         add(panelLabel, "wrap");
         add(newSensorPanel, "span");
-        add(sensorListPanel, "span");
+        add(new JScrollPane(sensorTable), "span");
     }
 
     /**
@@ -62,59 +74,107 @@ public class SensorPanel extends JPanel {
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
-     * @param p The Panel to populate with the current list of sensors
+     * Builds the table listing the sensors. The toggle and remove columns are drawn as buttons and
+     * act on the row that was clicked.
      */
-    private void updateSensorList(JPanel p) {
-        p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
+    private JTable buildSensorTable() {
+        JTable table = new JTable(sensorTableModel);
+        table.setFillsViewportHeight(true);
+        table.setRowSelectionAllowed(false);
+        table.getTableHeader().setReorderingAllowed(false);
+
+        TableCellRenderer buttons = new ButtonRenderer();
+        TableColumnModel columns = table.getColumnModel();
+        columns.getColumn(SensorTableModel.NAME_COLUMN).setPreferredWidth(200);
+        columns.getColumn(SensorTableModel.TYPE_COLUMN).setPreferredWidth(80);
+        columns.getColumn(SensorTableModel.STATUS_COLUMN).setPreferredWidth(80);
+        columns.getColumn(SensorTableModel.TOGGLE_COLUMN).setPreferredWidth(100);
+        columns.getColumn(SensorTableModel.TOGGLE_COLUMN).setCellRenderer(buttons);
+        columns.getColumn(SensorTableModel.REMOVE_COLUMN).setPreferredWidth(130);
+        columns.getColumn(SensorTableModel.REMOVE_COLUMN).setCellRenderer(buttons);
+        table.setRowHeight(new JButton("Activate").getPreferredSize().height);
+        table.setPreferredScrollableViewportSize(new Dimension(590, VISIBLE_ROWS * table.getRowHeight()));
+
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                int column = table.columnAtPoint(e.getPoint());
+                if (row < 0 || column < 0) {
+                    return;
+                }
+                Sensor sensor = sensorTableModel.getSensor(table.convertRowIndexToModel(row));
+                switch (table.convertColumnIndexToModel(column)) {
+                    case SensorTableModel.TOGGLE_COLUMN -> setSensorActivity(sensor, !sensor.getActive());
+                    case SensorTableModel.REMOVE_COLUMN -> removeSensor(sensor);
+                    default -> { }
+                }
+            }
         });
-
-        repaint();
-        revalidate();
+        return table;
     }
 
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Asks the securityService to change a sensor activation status. The row is updated when the
+     * change is announced.
      * @param sensor The sensor to update
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
         securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
     }
 
     /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor to the securityService. The row is inserted when the change is announced.
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
-        if(securityService.getSensors().size() < 4) {
+        if(securityService.getSensorCount() < 4) {
             securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
         } else {
             JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
         }
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
+     * Remove a sensor from the securityService. The row is deleted when the change is announced.
      * @param sensor The sensor to remove
      */
     private void removeSensor(Sensor sensor) {
         securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        // no behavior necessary
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        // no behavior necessary
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        sensorTableModel.reload();
+    }
+
+    @Override
+    public void sensorStatusChanged(Collection<Sensor> sensors) {
+        sensorTableModel.sensorsChanged(sensors);
+    }
+
+    /**
+     * Draws a cell as a button labelled with the cell's value. One button is reused for every cell.
+     */
+    private static final class ButtonRenderer implements TableCellRenderer {
+        private final JButton button = new JButton();
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            button.setText(String.valueOf(value));
+            return button;
+        }
     }
 }
@@ -0,0 +1,108 @@
+package com.udacity.security.application;
+
+import com.udacity.security.data.Sensor;
+import com.udacity.security.service.SecurityService;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rows of the sensor table, in {@link Sensor#compareTo} order. The model keeps its own sorted copy
+ * of the sensor list, so a changed sensor is found by binary search and only its row is updated,
+ * inserted or deleted. A {@link javax.swing.JTable} only asks for the cells of the rows it shows,
+ * so the cost of an update does not grow with the number of sensors. A change to more than
+ * {@value #RELOAD_THRESHOLD} sensors at once, such as arming a large system, reloads every row
+ * instead of firing that many row events.
+ *
+ * Only used on the Swing event dispatch thread.
+ */
+class SensorTableModel extends AbstractTableModel {
+
+    static final int NAME_COLUMN = 0;
+    static final int TYPE_COLUMN = 1;
+    static final int STATUS_COLUMN = 2;
+    static final int TOGGLE_COLUMN = 3;
+    static final int REMOVE_COLUMN = 4;
+
+    private static final String[] COLUMN_NAMES = {"Name", "Type", "Status", "", ""};
+    private static final int RELOAD_THRESHOLD = 1000;
+
+    private final SecurityService securityService;
+    private final List<Sensor> rows = new ArrayList<>();
+
+    SensorTableModel(SecurityService securityService) {
+        this.securityService = securityService;
+        reload();
+    }
+
+    /**
+     * Replaces every row with the sensors the service has now.
+     */
+    void reload() {
+        rows.clear();
+        rows.addAll(securityService.getSortedSensors());
+        fireTableDataChanged();
+    }
+
+    /**
+     * Brings the rows of the given sensors up to date with the service: sensors the service no
+     * longer has are deleted, new ones are inserted in order and the others are redrawn.
+     */
+    void sensorsChanged(Collection<Sensor> sensors) {
+        if (sensors.size() > RELOAD_THRESHOLD) {
+            reload();
+            return;
+        }
+        for (Sensor changed : sensors) {
+            Sensor current = securityService.getSensor(changed.getSensorId());
+            int row = Collections.binarySearch(rows, changed);
+            if (current == null) {
+                if (row >= 0) {
+                    rows.remove(row);
+                    fireTableRowsDeleted(row, row);
+                }
+            } else if (row >= 0) {
+                rows.set(row, current);
+                fireTableRowsUpdated(row, row);
+            } else {
+                int insertAt = -row - 1;
+                rows.add(insertAt, current);
+                fireTableRowsInserted(insertAt, insertAt);
+            }
+        }
+    }
+
+    Sensor getSensor(int row) {
+        return rows.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Sensor sensor = rows.get(row);
+        return switch (column) {
+            case NAME_COLUMN -> sensor.getName();
+            case TYPE_COLUMN -> sensor.getSensorType().toString();
+            case STATUS_COLUMN -> sensor.getActive() ? "Active" : "Inactive";
+            case TOGGLE_COLUMN -> sensor.getActive() ? "Deactivate" : "Activate";
+            default -> "Remove Sensor";
+        };
+    }
+}
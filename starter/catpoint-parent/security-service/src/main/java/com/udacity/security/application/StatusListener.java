@@ -1,6 +1,9 @@
 package com.udacity.security.application;
 
 import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.Sensor;
+
+import java.util.Collection;
 
 /**
  * Identifies a component that should be notified whenever the system status changes
@@ -9,4 +12,14 @@ public interface StatusListener {
     void notify(AlarmStatus status);
     void catDetected(boolean catDetected);
     void sensorStatusChanged();
+
+    /**
+     * Called with the sensors that were added, removed or activated or deactivated since the last
+     * call, so a listener can update just those. A sensor that is no longer in the system was
+     * removed. The default ignores which sensors changed.
+     * @param sensors Changed sensors, each at most once
+     */
+    default void sensorStatusChanged(Collection<Sensor> sensors) {
+        sensorStatusChanged();
+    }
 }
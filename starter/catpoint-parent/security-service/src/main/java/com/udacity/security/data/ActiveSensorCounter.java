@@ -0,0 +1,119 @@
+package com.udacity.security.data;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps count of the active sensors, overall and per {@link SensorType}, so that repositories can
+ * answer "are all sensors inactive?" without scanning every sensor.
+ *
+ * Sensors are mutable and are usually changed before the repository hears about it, so the counter
+ * remembers which sensors it last saw as active rather than trusting the sensor objects.
+ *
+ * Not thread-safe; repositories call it while holding their own lock. When the system property
+ * {@value #VERIFY_PROPERTY} is set to true, repositories verify the counts against a full scan after
+ * every mutation. This is meant for tests.
+ */
+public class ActiveSensorCounter {
+
+    public static final String VERIFY_PROPERTY = "catpoint.verifyActiveSensorCounts";
+
+    private final Map<UUID, SensorType> activeSensors = new HashMap<>();
+    private final int[] activeByType = new int[SensorType.values().length];
+    private final boolean verifyEnabled;
+
+    public ActiveSensorCounter() {
+        this(Boolean.getBoolean(VERIFY_PROPERTY));
+    }
+
+    public ActiveSensorCounter(boolean verifyEnabled) {
+        this.verifyEnabled = verifyEnabled;
+    }
+
+    /**
+     * Records the current activation status and type of the provided sensor.
+     */
+    public void update(Sensor sensor) {
+        if (Boolean.TRUE.equals(sensor.getActive())) {
+            SensorType previous = activeSensors.put(sensor.getSensorId(), sensor.getSensorType());
+            if (previous != null) {
+                activeByType[previous.ordinal()]--;
+            }
+            activeByType[sensor.getSensorType().ordinal()]++;
+        } else {
+            remove(sensor);
+        }
+    }
+
+    /**
+     * Forgets the provided sensor.
+     */
+    public void remove(Sensor sensor) {
+        SensorType previous = activeSensors.remove(sensor.getSensorId());
+        if (previous != null) {
+            activeByType[previous.ordinal()]--;
+        }
+    }
+
+    /**
+     * Rebuilds the counts from scratch.
+     */
+    public void reset(Collection<Sensor> sensors) {
+        activeSensors.clear();
+        Arrays.fill(activeByType, 0);
+        sensors.forEach(this::update);
+    }
+
+    /**
+     * @return true if the sensor with the given id was active when last seen
+     */
+    public boolean isActive(UUID sensorId) {
+        return activeSensors.containsKey(sensorId);
+    }
+
+    /**
+     * @return read-only view of the ids of the active sensors
+     */
+    public Set<UUID> getActiveSensorIds() {
+        return Collections.unmodifiableSet(activeSensors.keySet());
+    }
+
+    public int getActiveCount() {
+        return activeSensors.size();
+    }
+
+    public int getActiveCount(SensorType sensorType) {
+        return activeByType[sensorType.ordinal()];
+    }
+
+    /**
+     * @return true if repositories should call {@link #verify(Collection)} after every mutation
+     */
+    public boolean isVerifyEnabled() {
+        return verifyEnabled;
+    }
+
+    /**
+     * Compares the maintained counts against a full scan of the provided sensors.
+     * @throws IllegalStateException if the counts have drifted
+     */
+    public void verify(Collection<Sensor> sensors) {
+        int[] scanned = new int[activeByType.length];
+        int total = 0;
+        for (Sensor sensor : sensors) {
+            if (Boolean.TRUE.equals(sensor.getActive())) {
+                scanned[sensor.getSensorType().ordinal()]++;
+                total++;
+            }
+        }
+        if (total != getActiveCount() || !Arrays.equals(scanned, activeByType)) {
+            throw new IllegalStateException(String.format("Active sensor counts drifted: counted %d %s, scanned %d %s",
+                    getActiveCount(), Arrays.toString(activeByType), total, Arrays.toString(scanned)));
+        }
+    }
+}
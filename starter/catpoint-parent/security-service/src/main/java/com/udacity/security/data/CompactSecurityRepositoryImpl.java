@@ -0,0 +1,230 @@
+package com.udacity.security.data;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * In-memory repository for very large sensor counts, backed by a {@link CompactSensorStore}.
+ * Sensors handed out by this repository are flyweight views that read through to the store, so
+ * iterating the sensors does not keep a million {@link Sensor} objects alive. Sensors passed in
+ * are copied into the store; changes made to them afterwards only reach the store through
+ * {@link #updateSensor(Sensor)}.
+ *
+ * Nothing is persisted.
+ */
+public class CompactSecurityRepositoryImpl implements SecurityRepository {
+
+    private final CompactSensorStore store;
+    private final Set<Sensor> sensorView = new StoreSetView();
+    private volatile AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private volatile ArmingStatus armingStatus = ArmingStatus.DISARMED;
+    private List<Sensor> sorted;
+    //sort key version of the store when sorted was built
+    private long sortedVersion;
+
+    public CompactSecurityRepositoryImpl() {
+        this(new CompactSensorStore());
+    }
+
+    public CompactSecurityRepositoryImpl(CompactSensorStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        store.put(sensor);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        UUID id = sensor.getSensorId();
+        store.remove(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        UUID id = sensor.getSensorId();
+        synchronized (store) {
+            int slot = store.indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (slot >= 0 && !sortKeyChanged(slot, sensor)) {
+                store.setActive(slot, Boolean.TRUE.equals(sensor.getActive()));
+                return;
+            }
+            store.put(sensor);
+        }
+    }
+
+    /**
+     * The previous state is read from the store, so views and copies of the same sensor handed to
+     * different threads still agree on which of them activated it.
+     */
+    @Override
+    public SensorActivation updateSensorActivation(Sensor sensor, boolean active) {
+        UUID id = sensor.getSensorId();
+        synchronized (store) {
+            int slot = store.indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (slot < 0) {
+                return SensorActivation.UNKNOWN_SENSOR;
+            }
+            boolean wasActive = store.isActive(slot);
+            sensor.setActive(active);
+            updateSensor(sensor);
+            return wasActive ? SensorActivation.WAS_ACTIVE : SensorActivation.WAS_INACTIVE;
+        }
+    }
+
+    @Override
+    public SensorActivation[] updateSensorActivations(List<Sensor> changed, boolean[] active) {
+        if (changed.size() != active.length) {
+            throw new IllegalArgumentException("Expected one activation state per sensor");
+        }
+        SensorActivation[] previous = new SensorActivation[changed.size()];
+        synchronized (store) {
+            for (int i = 0; i < previous.length; i++) {
+                previous[i] = updateSensorActivation(changed.get(i), active[i]);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> changed) {
+        synchronized (store) {
+            changed.forEach(this::updateSensor);
+        }
+    }
+
+    private boolean sortKeyChanged(int slot, Sensor sensor) {
+        return store.getSensorType(slot) != sensor.getSensorType() || !Objects.equals(store.getName(slot), sensor.getName());
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensorView;
+    }
+
+    @Override
+    public List<Sensor> getActiveSensors() {
+        synchronized (store) {
+            List<Sensor> active = new ArrayList<>(store.getActiveCount());
+            for (int slot = 0; slot < store.size() && active.size() < store.getActiveCount(); slot++) {
+                if (store.isActive(slot)) {
+                    active.add(store.view(slot));
+                }
+            }
+            return active;
+        }
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        synchronized (store) {
+            int slot = store.indexOf(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+            return slot < 0 ? null : store.view(slot);
+        }
+    }
+
+    @Override
+    public List<Sensor> getSortedSensors() {
+        synchronized (store) {
+            //views rename sensors in the store directly, so the store rather than this repository tracks changes
+            if (sorted == null || sortedVersion != store.getSortKeyVersion()) {
+                List<Sensor> rebuilt = new ArrayList<>(store.size());
+                for (int slot = 0; slot < store.size(); slot++) {
+                    rebuilt.add(store.view(slot));
+                }
+                Collections.sort(rebuilt);
+                sorted = Collections.unmodifiableList(rebuilt);
+                sortedVersion = store.getSortKeyVersion();
+            }
+            return sorted;
+        }
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return store.getActiveCount();
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        return store.getActiveCount(sensorType);
+    }
+
+    /**
+     * @return the store backing this repository
+     */
+    public CompactSensorStore getStore() {
+        return store;
+    }
+
+    /**
+     * Read-only set view that creates a flyweight per visited slot. Iteration walks the slots
+     * directly and does not guard against concurrent removal.
+     */
+    private final class StoreSetView extends AbstractSet<Sensor> {
+        @Override
+        public Iterator<Sensor> iterator() {
+            return new Iterator<>() {
+                private int slot;
+
+                @Override
+                public boolean hasNext() {
+                    return slot < store.size();
+                }
+
+                @Override
+                public Sensor next() {
+                    synchronized (store) {
+                        if (slot >= store.size()) {
+                            throw new NoSuchElementException();
+                        }
+                        return store.view(slot++);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Sensor sensor)) {
+                return false;
+            }
+            UUID id = sensor.getSensorId();
+            return store.indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits()) >= 0;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package com.udacity.security.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Struct-of-arrays sensor storage for very large sensor counts. Instead of one {@link Sensor}
+ * object per sensor, each sensor occupies a slot in a handful of primitive arrays: the sensorId as
+ * two longs, the active flag as one bit, the type as a byte ordinal and the name as a reference to
+ * an interned string. Slots are found through an open-addressing table keyed by the sensorId bits.
+ *
+ * Removing a sensor moves the last slot into the hole, so slot numbers are only stable until the
+ * next removal. Callers outside this class address sensors by id; {@link #view(int)} hands out
+ * {@link Sensor} flyweights that do exactly that.
+ *
+ * All methods are synchronized, since views read the store from whichever thread holds them.
+ */
+public class CompactSensorStore {
+
+    private static final int EMPTY = -1;
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    private long[] activeBits;
+    private byte[] types;
+    private String[] names;
+    private int size;
+
+    //slot numbers, indexed by hash of the sensorId; kept at most half full
+    private int[] table;
+
+    private final Map<String, String> internedNames = new HashMap<>();
+    private int activeCount;
+    private final int[] activeByType = new int[SENSOR_TYPES.length];
+    //bumped whenever the display order may have changed: a sensor added, removed, renamed or retyped
+    private long sortKeyVersion;
+
+    public CompactSensorStore() {
+        this(16);
+    }
+
+    public CompactSensorStore(int expectedSensors) {
+        int capacity = Math.max(16, expectedSensors);
+        mostSigBits = new long[capacity];
+        leastSigBits = new long[capacity];
+        activeBits = new long[(capacity + 63) >>> 6];
+        types = new byte[capacity];
+        names = new String[capacity];
+        table = new int[tableSizeFor(capacity)];
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * Stores the sensor's current values, adding it if its id is not present yet.
+     * @return the slot holding the sensor
+     */
+    public synchronized int put(Sensor sensor) {
+        UUID id = sensor.getSensorId();
+        return put(id.getMostSignificantBits(), id.getLeastSignificantBits(), sensor.getName(),
+                sensor.getSensorType(), Boolean.TRUE.equals(sensor.getActive()));
+    }
+
+    /**
+     * Stores the given values, adding a sensor if the id is not present yet.
+     * @return the slot holding the sensor
+     */
+    public synchronized int put(long msb, long lsb, String name, SensorType sensorType, boolean active) {
+        int slot = indexOf(msb, lsb);
+        if (slot == EMPTY || types[slot] != sensorType.ordinal() || !Objects.equals(names[slot], name)) {
+            sortKeyVersion++;
+        }
+        if (slot == EMPTY) {
+            ensureCapacity(size + 1);
+            slot = size++;
+            mostSigBits[slot] = msb;
+            leastSigBits[slot] = lsb;
+            types[slot] = (byte) sensorType.ordinal();
+            insert(slot);
+        } else if (isActive(slot)) {
+            activeByType[types[slot]]--;
+            activeCount--;
+            types[slot] = (byte) sensorType.ordinal();
+            activeByType[types[slot]]++;
+            activeCount++;
+        } else {
+            types[slot] = (byte) sensorType.ordinal();
+        }
+        names[slot] = intern(name);
+        setActive(slot, active);
+        return slot;
+    }
+
+    /**
+     * @return the slot holding the sensor with the given id, or -1 if there is none
+     */
+    public synchronized int indexOf(long msb, long lsb) {
+        int mask = table.length - 1;
+        for (int i = hash(msb, lsb) & mask; ; i = (i + 1) & mask) {
+            int slot = table[i];
+            if (slot == EMPTY) {
+                return EMPTY;
+            }
+            if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * @return true if a sensor was removed
+     */
+    public synchronized boolean remove(long msb, long lsb) {
+        int position = tablePosition(msb, lsb);
+        if (position == EMPTY) {
+            return false;
+        }
+        int slot = table[position];
+        sortKeyVersion++;
+        setActive(slot, false);
+        deleteAt(position);
+
+        int last = --size;
+        if (slot != last) {
+            table[tablePosition(mostSigBits[last], leastSigBits[last])] = slot;
+            mostSigBits[slot] = mostSigBits[last];
+            leastSigBits[slot] = leastSigBits[last];
+            types[slot] = types[last];
+            names[slot] = names[last];
+            boolean lastActive = isActive(last);
+            clearBit(last);
+            if (lastActive) {
+                setBit(slot);
+            }
+        }
+        names[last] = null;
+        return true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isActive(int slot) {
+        return (activeBits[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    public synchronized void setActive(int slot, boolean active) {
+        if (active == isActive(slot)) {
+            return;
+        }
+        if (active) {
+            setBit(slot);
+            activeByType[types[slot]]++;
+            activeCount++;
+        } else {
+            clearBit(slot);
+            activeByType[types[slot]]--;
+            activeCount--;
+        }
+    }
+
+    public synchronized String getName(int slot) {
+        return names[slot];
+    }
+
+    public synchronized SensorType getSensorType(int slot) {
+        return SENSOR_TYPES[types[slot]];
+    }
+
+    public synchronized long getMostSignificantBits(int slot) {
+        return mostSigBits[slot];
+    }
+
+    public synchronized long getLeastSignificantBits(int slot) {
+        return leastSigBits[slot];
+    }
+
+    public synchronized int getActiveCount() {
+        return activeCount;
+    }
+
+    public synchronized int getActiveCount(SensorType sensorType) {
+        return activeByType[sensorType.ordinal()];
+    }
+
+    /**
+     * @return a number that changes whenever a sensor is added, removed, renamed or changes type,
+     * including through a view, so that callers can tell when an ordering of the sensors went stale
+     */
+    public synchronized long getSortKeyVersion() {
+        return sortKeyVersion;
+    }
+
+    /**
+     * @return a flyweight {@link Sensor} backed by this store for the sensor in the given slot
+     */
+    public synchronized Sensor view(int slot) {
+        return new SensorView(this, mostSigBits[slot], leastSigBits[slot]);
+    }
+
+    /**
+     * Approximates the heap used by this store, counting each distinct name once. Assumes
+     * compressed oops and compact (Latin-1) strings.
+     */
+    public synchronized long estimatedFootprintBytes() {
+        long bytes = arrayBytes(mostSigBits.length, 8)
+                + arrayBytes(leastSigBits.length, 8)
+                + arrayBytes(activeBits.length, 8)
+                + arrayBytes(types.length, 1)
+                + arrayBytes(names.length, 4)
+                + arrayBytes(table.length, 4);
+        for (String name : internedNames.keySet()) {
+            bytes += 24 + arrayBytes(name.length(), 1);
+        }
+        return bytes;
+    }
+
+    private static long arrayBytes(int length, int elementBytes) {
+        return (16 + (long) length * elementBytes + 7) & ~7L;
+    }
+
+    private String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        String interned = internedNames.putIfAbsent(name, name);
+        return interned == null ? name : interned;
+    }
+
+    private void setBit(int slot) {
+        activeBits[slot >>> 6] |= 1L << slot;
+    }
+
+    private void clearBit(int slot) {
+        activeBits[slot >>> 6] &= ~(1L << slot);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= mostSigBits.length) {
+            return;
+        }
+        int capacity = Math.max(needed, mostSigBits.length * 2);
+        mostSigBits = Arrays.copyOf(mostSigBits, capacity);
+        leastSigBits = Arrays.copyOf(leastSigBits, capacity);
+        activeBits = Arrays.copyOf(activeBits, (capacity + 63) >>> 6);
+        types = Arrays.copyOf(types, capacity);
+        names = Arrays.copyOf(names, capacity);
+        if (capacity * 2 > table.length) {
+            table = new int[tableSizeFor(capacity)];
+            Arrays.fill(table, EMPTY);
+            for (int slot = 0; slot < size; slot++) {
+                insert(slot);
+            }
+        }
+    }
+
+    private void insert(int slot) {
+        int mask = table.length - 1;
+        int i = hash(mostSigBits[slot], leastSigBits[slot]) & mask;
+        while (table[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot;
+    }
+
+    private int tablePosition(long msb, long lsb) {
+        int mask = table.length - 1;
+        for (int i = hash(msb, lsb) & mask; ; i = (i + 1) & mask) {
+            int slot = table[i];
+            if (slot == EMPTY) {
+                return EMPTY;
+            }
+            if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Linear-probing deletion without tombstones: later entries of the same probe run are shifted
+     * back into the hole so lookups never stop early.
+     */
+    private void deleteAt(int position) {
+        int mask = table.length - 1;
+        int hole = position;
+        for (int i = (hole + 1) & mask; table[i] != EMPTY; i = (i + 1) & mask) {
+            int slot = table[i];
+            int home = hash(mostSigBits[slot], leastSigBits[slot]) & mask;
+            //the entry may move into the hole unless its home lies cyclically in (hole, i]
+            boolean stays = hole <= i ? (home > hole && home <= i) : (home > hole || home <= i);
+            if (!stays) {
+                table[hole] = slot;
+                hole = i;
+            }
+        }
+        table[hole] = EMPTY;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Flyweight sensor that reads and writes through to the store by sensorId. If the sensor has
+     * been removed from the store the view keeps answering with the values it last saw.
+     */
+    private static final class SensorView extends Sensor {
+        private final CompactSensorStore store;
+        private final long msb;
+        private final long lsb;
+
+        private SensorView(CompactSensorStore store, long msb, long lsb) {
+            this.store = store;
+            this.msb = msb;
+            this.lsb = lsb;
+            super.setSensorId(new UUID(msb, lsb));
+        }
+
+        @Override
+        public String getName() {
+            synchronized (store) {
+                int slot = store.indexOf(msb, lsb);
+                if (slot != EMPTY) {
+                    super.setName(store.getName(slot));
+                }
+                return super.getName();
+            }
+        }
+
+        @Override
+        public void setName(String name) {
+            synchronized (store) {
+                int slot = store.indexOf(msb, lsb);
+                if (slot != EMPTY) {
+                    store.put(msb, lsb, name, store.getSensorType(slot), store.isActive(slot));
+                }
+                super.setName(name);
+            }
+        }
+
+        @Override
+        public Boolean getActive() {
+            synchronized (store) {
+                int slot = store.indexOf(msb, lsb);
+                if (slot != EMPTY) {
+                    super.setActive(store.isActive(slot));
+                }
+                return super.getActive();
+            }
+        }
+
+        @Override
+        public void setActive(Boolean active) {
+            synchronized (store) {
+                int slot = store.indexOf(msb, lsb);
+                if (slot != EMPTY) {
+                    store.setActive(slot, Boolean.TRUE.equals(active));
+                }
+                super.setActive(active);
+            }
+        }
+
+        @Override
+        public SensorType getSensorType() {
+            synchronized (store) {
+                int slot = store.indexOf(msb, lsb);
+                if (slot != EMPTY) {
+                    super.setSensorType(store.getSensorType(slot));
+                }
+                return super.getSensorType();
+            }
+        }
+
+        @Override
+        public void setSensorType(SensorType sensorType) {
+            synchronized (store) {
+                int slot = store.indexOf(msb, lsb);
+                if (slot != EMPTY) {
+                    store.put(msb, lsb, store.getName(slot), sensorType, store.isActive(slot));
+                }
+                super.setSensorType(sensorType);
+            }
+        }
+
+        @Override
+        public void setSensorId(UUID sensorId) {
+            throw new UnsupportedOperationException("The id of a stored sensor cannot change");
+        }
+    }
+}
@@ -0,0 +1,688 @@
+package com.udacity.security.data;
+
+import com.udacity.security.metrics.RepositoryFlushEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Repository that records every sensor, alarm and arming change as a compact binary record in an
+ * append-only, memory-mapped log. The full state is periodically written to a snapshot, after which
+ * appends continue in a fresh log segment. Old segments are kept on disk as history. Sensors are
+ * encoded with {@link SensorCodec} in both. Every record is prefixed with its length and a CRC32C of
+ * its contents, so a record only partly on disk after a crash ends the replay instead of being applied.
+ *
+ * On startup the newest snapshot that can be read is loaded and every segment written after it is
+ * replayed; if no snapshot can be read, every segment is. The
+ * snapshot is a {@link MappedSnapshot}: after a clean shutdown nothing is left to replay, so the
+ * repository is ready as soon as the snapshot's header is read. Sensors are then copied out of the
+ * snapshot on first use; single sensors looked up by id one at a time, and all of them as soon as
+ * the sensors are listed or anything is changed. A mapped file cannot be replaced or deleted on every
+ * platform, so every snapshot goes to a new file numbered after the segment that follows it, and
+ * older snapshots are deleted once nothing maps them any more, if not right away then after a later
+ * snapshot or on the next startup.
+ *
+ * Durability is controlled by group commit: the mapped log is forced to disk after every
+ * {@code syncEveryRecords} records and, if a sync interval is given, at least that often. A value of
+ * 1 forces after every record; larger values trade the last few changes on a crash for throughput.
+ */
+public class EventLogSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(EventLogSecurityRepositoryImpl.class.getName());
+
+    private static final int LOG_MAGIC = 0x43504C47; // "CPLG"
+    private static final int FORMAT_VERSION = 1;
+    private static final int LOG_HEADER_BYTES = 8;
+    private static final int INITIAL_SEGMENT_BYTES = 1 << 20;
+
+    private static final byte SENSOR_UPSERT = 1;
+    private static final byte SENSOR_REMOVE = 2;
+    private static final byte ALARM_STATUS = 3;
+    private static final byte ARMING_STATUS = 4;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int syncEveryRecords;
+    private final int snapshotEveryRecords;
+    private final ScheduledExecutorService syncer;
+
+    private final SensorIndex sensors = new SensorIndex();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+    private final ActiveSensorCounter activeSensors = new ActiveSensorCounter();
+    //snapshot whose sensors have not all been copied into the index yet, or null
+    private MappedSnapshot unloaded;
+
+    private long segment;
+    private FileChannel channel;
+    private MappedByteBuffer log;
+    private final CRC32C checksum = new CRC32C();
+    private int unsyncedRecords;
+    private int recordsSinceSnapshot;
+    private boolean batching;
+    private boolean closed;
+
+    /**
+     * Creates a repository in the given directory that forces every record to disk and snapshots
+     * every 10,000 records.
+     * @param directory Directory holding the snapshot and log segments. Created if missing.
+     */
+    public EventLogSecurityRepositoryImpl(Path directory) {
+        this(directory, 1, null, 10_000);
+    }
+
+    /**
+     * @param directory Directory holding the snapshot and log segments. Created if missing.
+     * @param syncEveryRecords Number of records that may be appended before the log is forced to disk
+     * @param syncInterval Maximum time between forces, or null to only sync by record count
+     * @param snapshotEveryRecords Number of records after which a snapshot is taken and a new segment started
+     */
+    public EventLogSecurityRepositoryImpl(Path directory, int syncEveryRecords, Duration syncInterval, int snapshotEveryRecords) {
+        if (syncEveryRecords < 1 || snapshotEveryRecords < 1) {
+            throw new IllegalArgumentException("syncEveryRecords and snapshotEveryRecords must be at least 1");
+        }
+        this.directory = directory;
+        this.syncEveryRecords = syncEveryRecords;
+        this.snapshotEveryRecords = snapshotEveryRecords;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open event log in " + directory, e);
+        }
+        if (syncInterval == null) {
+            syncer = null;
+        } else {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "security-event-log-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            long millis = syncInterval.toMillis();
+            syncer.scheduleWithFixedDelay(this::sync, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        loadSensors();
+        sensors.put(sensor);
+        activeSensors.update(sensor);
+        verifyActiveSensors();
+        appendSensor(SENSOR_UPSERT, sensor);
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        loadSensors();
+        sensors.remove(sensor.getSensorId());
+        activeSensors.remove(sensor);
+        verifyActiveSensors();
+        appendSensor(SENSOR_REMOVE, sensor);
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        loadSensors();
+        sensors.put(sensor);
+        activeSensors.update(sensor);
+        verifyActiveSensors();
+        appendSensor(SENSOR_UPSERT, sensor);
+    }
+
+    @Override
+    public synchronized SensorActivation updateSensorActivation(Sensor sensor, boolean active) {
+        loadSensors();
+        SensorActivation previous = flipSensor(sensor, active);
+        verifyActiveSensors();
+        return previous;
+    }
+
+    /**
+     * Appends one record per known sensor but forces the log to disk at most once for the whole
+     * batch.
+     */
+    @Override
+    public synchronized SensorActivation[] updateSensorActivations(List<Sensor> changed, boolean[] active) {
+        if (changed.size() != active.length) {
+            throw new IllegalArgumentException("Expected one activation state per sensor");
+        }
+        loadSensors();
+        SensorActivation[] previous = new SensorActivation[changed.size()];
+        batching = true;
+        try {
+            for (int i = 0; i < previous.length; i++) {
+                previous[i] = flipSensor(changed.get(i), active[i]);
+            }
+        } finally {
+            batching = false;
+        }
+        verifyActiveSensors();
+        if (unsyncedRecords >= syncEveryRecords) {
+            sync();
+        }
+        return previous;
+    }
+
+    /**
+     * Sets, stores and appends the activation of a sensor this repository holds.
+     */
+    private SensorActivation flipSensor(Sensor sensor, boolean active) {
+        if (sensors.get(sensor.getSensorId()) == null) {
+            return SensorActivation.UNKNOWN_SENSOR;
+        }
+        boolean wasActive = activeSensors.isActive(sensor.getSensorId());
+        sensor.setActive(active);
+        sensors.put(sensor);
+        activeSensors.update(sensor);
+        appendSensor(SENSOR_UPSERT, sensor);
+        return wasActive ? SensorActivation.WAS_ACTIVE : SensorActivation.WAS_INACTIVE;
+    }
+
+    /**
+     * Appends one record per sensor but forces the log to disk at most once for the whole batch.
+     */
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> changed) {
+        loadSensors();
+        batching = true;
+        try {
+            for (Sensor sensor : changed) {
+                sensors.put(sensor);
+                activeSensors.update(sensor);
+                appendSensor(SENSOR_UPSERT, sensor);
+            }
+        } finally {
+            batching = false;
+        }
+        verifyActiveSensors();
+        if (unsyncedRecords >= syncEveryRecords) {
+            sync();
+        }
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        appendStatus(ALARM_STATUS, alarmStatus.ordinal());
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        appendStatus(ARMING_STATUS, armingStatus.ordinal());
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        loadSensors();
+        return sensors.asSet();
+    }
+
+    @Override
+    public synchronized List<Sensor> getActiveSensors() {
+        loadSensors();
+        List<Sensor> active = new ArrayList<>(activeSensors.getActiveCount());
+        for (UUID sensorId : activeSensors.getActiveSensorIds()) {
+            active.add(sensors.get(sensorId));
+        }
+        return active;
+    }
+
+    /**
+     * Before the sensors are loaded, a sensor is decoded from the snapshot on its own and kept, so
+     * that every lookup of the same id returns the same object.
+     */
+    @Override
+    public synchronized Sensor getSensor(UUID sensorId) {
+        Sensor sensor = sensors.get(sensorId);
+        if (sensor == null && unloaded != null) {
+            sensor = unloaded.find(sensorId);
+            if (sensor != null) {
+                sensors.put(sensor);
+            }
+        }
+        return sensor;
+    }
+
+    @Override
+    public synchronized List<Sensor> getSortedSensors() {
+        loadSensors();
+        return sensors.sorted();
+    }
+
+    @Override
+    public synchronized int getSensorCount() {
+        return unloaded != null ? unloaded.size() : sensors.size();
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount() {
+        return unloaded != null ? unloaded.getActiveCount() : activeSensors.getActiveCount();
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount(SensorType sensorType) {
+        return unloaded != null ? unloaded.getActiveCount(sensorType) : activeSensors.getActiveCount(sensorType);
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Forces all appended records to disk.
+     */
+    public synchronized void sync() {
+        if (closed || unsyncedRecords == 0) {
+            return;
+        }
+        RepositoryFlushEvent event = new RepositoryFlushEvent();
+        event.begin();
+        log.force();
+        event.end();
+        if (event.shouldCommit()) {
+            event.repository = getClass().getSimpleName();
+            event.valuesWritten = unsyncedRecords;
+            event.commit();
+        }
+        unsyncedRecords = 0;
+    }
+
+    /**
+     * Writes the current state to a new snapshot and starts a new log segment.
+     */
+    public synchronized void snapshot() {
+        try {
+            rollSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write snapshot", e);
+        }
+    }
+
+    /**
+     * Syncs the log, writes a final snapshot and releases the log file.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        try {
+            if (recordsSinceSnapshot > 0) {
+                rollSegment();
+            }
+            log.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close event log", e);
+        } finally {
+            closed = true;
+        }
+    }
+
+    /**
+     * Copies the sensors that have not been looked up yet out of the snapshot.
+     */
+    private void loadSensors() {
+        if (unloaded == null) {
+            return;
+        }
+        unloaded.forEach(sensor -> {
+            if (sensors.get(sensor.getSensorId()) == null) {
+                sensors.put(sensor);
+            }
+        });
+        unloaded = null;
+        activeSensors.reset(sensors.asSet());
+    }
+
+    private void verifyActiveSensors() {
+        if (activeSensors.isVerifyEnabled()) {
+            activeSensors.verify(sensors.asSet());
+        }
+    }
+
+    private void appendSensor(byte type, Sensor sensor) {
+        int length = 1 + (type == SENSOR_UPSERT ? SensorCodec.encodedSize(sensor) : 16);
+        ByteBuffer record = reserve(length);
+        record.put(type);
+        if (type == SENSOR_UPSERT) {
+            SensorCodec.writeSensor(record, sensor);
+        } else {
+            record.putLong(sensor.getSensorId().getMostSignificantBits());
+            record.putLong(sensor.getSensorId().getLeastSignificantBits());
+        }
+        commit(length);
+    }
+
+    private void appendStatus(byte type, int ordinal) {
+        ByteBuffer record = reserve(2);
+        record.put(type);
+        record.put((byte) ordinal);
+        commit(2);
+    }
+
+    /**
+     * Makes room for a record of the given length, growing the mapping if necessary, and
+     * positions the log just past the record's length prefix and checksum.
+     */
+    private ByteBuffer reserve(int length) {
+        if (closed) {
+            throw new IllegalStateException("Event log is closed");
+        }
+        try {
+            //length prefix, checksum, the record itself and the end-of-log marker that follows it
+            int needed = 8 + length + 4;
+            if (log.remaining() < needed) {
+                remap(Math.max(log.capacity() * 2L, (long) log.position() + needed));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to grow event log", e);
+        }
+        log.position(log.position() + 8);
+        return log;
+    }
+
+    /**
+     * Terminates the record that was just written and publishes it by writing its checksum and
+     * length prefix.
+     */
+    private void commit(int length) {
+        int end = log.position();
+        log.putInt(end, 0);
+        log.putInt(end - length - 4, checksum(end - length, length));
+        log.putInt(end - length - 8, length);
+        unsyncedRecords++;
+        if (unsyncedRecords >= syncEveryRecords && !batching) {
+            sync();
+        }
+        if (++recordsSinceSnapshot >= snapshotEveryRecords) {
+            try {
+                rollSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to write snapshot", e);
+            }
+        }
+    }
+
+    private void remap(long size) throws IOException {
+        int position = log.position();
+        log.force();
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        log.position(position);
+    }
+
+    /**
+     * Starts a new segment and writes a snapshot of the current state that points at it. The new
+     * segment exists before the snapshot is moved into place, so a crash in between only means the
+     * old snapshot and the segments after it are replayed. The snapshot is on disk before it is
+     * moved, and the move before older snapshots are deleted.
+     */
+    private void rollSegment() throws IOException {
+        loadSensors();
+        log.force();
+        channel.close();
+        openSegment(segment + 1, true);
+
+        Path snapshotPath = snapshotPath(segment);
+        Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        MappedSnapshot.write(tmp, segment, alarmStatus, armingStatus, sensors.asSet());
+        Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+        recordsSinceSnapshot = 0;
+        unsyncedRecords = 0;
+        deleteSnapshotsBefore(segment);
+    }
+
+    /**
+     * Forces the directory entry of a moved file to disk. Not every platform can open a directory;
+     * there the move is as durable as the platform makes it.
+     */
+    private void forceDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            //directories cannot be opened on this platform
+        }
+    }
+
+    /**
+     * Deletes the snapshots older than the given one. A snapshot that is still mapped, which some
+     * platforms refuse to delete, is left for the next attempt.
+     */
+    private void deleteSnapshotsBefore(long number) throws IOException {
+        List<Path> old = new ArrayList<>();
+        for (long older : numberedFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (older < number) {
+                old.add(snapshotPath(older));
+            }
+        }
+        for (Path path : old) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                //still mapped; the snapshot it was superseded by is complete, so it is only clutter
+            }
+        }
+    }
+
+    private void openSegment(long number, boolean create) throws IOException {
+        segment = number;
+        Path path = segmentPath(number);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), INITIAL_SEGMENT_BYTES);
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (create) {
+            log.putInt(0, LOG_MAGIC);
+            log.putInt(4, FORMAT_VERSION);
+            log.putInt(LOG_HEADER_BYTES, 0);
+        }
+        log.position(LOG_HEADER_BYTES);
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotPath(long firstSegment) {
+        return directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, firstSegment, SNAPSHOT_SUFFIX));
+    }
+
+    /**
+     * @return numbers of the files named prefix, number, suffix in the directory, in ascending order
+     */
+    private List<Long> numberedFiles(String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(prefix) && n.endsWith(suffix))
+                    .map(n -> Long.parseLong(n.substring(prefix.length(), n.length() - suffix.length())))
+                    .filter(n -> n >= 0)
+                    .sorted()
+                    .forEach(numbers::add);
+        }
+        return numbers;
+    }
+
+    /**
+     * Loads the latest snapshot that opens and replays every segment written after it. Segments are
+     * never deleted, so if no snapshot opens every segment is replayed from the first. Appends
+     * continue where the replay of the newest segment stopped.
+     */
+    private void recover() throws IOException {
+        long firstSegment = loadLatestSnapshot();
+        List<Long> segments = numberedFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+
+        long last = firstSegment;
+        int end = LOG_HEADER_BYTES;
+        for (long number : segments) {
+            if (number < firstSegment) {
+                continue;
+            }
+            openSegment(number, false);
+            if (log.getInt(0) != LOG_MAGIC) {
+                //segment was created but never initialised
+                log.putInt(0, LOG_MAGIC);
+                log.putInt(4, FORMAT_VERSION);
+                log.putInt(LOG_HEADER_BYTES, 0);
+            }
+            end = LOG_HEADER_BYTES;
+            if (log.getInt(LOG_HEADER_BYTES) != 0) {
+                //records may change any sensor, so they are replayed onto the loaded sensors
+                loadSensors();
+                end = replay();
+            }
+            channel.close();
+            last = number;
+        }
+
+        openSegment(last, !Files.exists(segmentPath(last)));
+        truncateAt(end);
+        if (unloaded == null) {
+            activeSensors.reset(sensors.asSet());
+        }
+    }
+
+    /**
+     * Loads the newest snapshot that opens, newest first, and deletes the ones older than it. A
+     * snapshot that does not open, which a crash on a platform that does not honour a forced write
+     * may leave behind, is kept until the next snapshot replaces it.
+     * @return number of the first segment to replay, 0 if no snapshot opened
+     */
+    private long loadLatestSnapshot() throws IOException {
+        List<Long> snapshots = numberedFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            try {
+                long firstSegment = loadSnapshot(snapshotPath(snapshots.get(i)));
+                //left behind by a run that could not delete them while they were mapped
+                deleteSnapshotsBefore(snapshots.get(i));
+                return firstSegment;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Skipping unreadable snapshot " + snapshotPath(snapshots.get(i)), e);
+                resetState();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Forgets whatever a snapshot that failed to load left behind.
+     */
+    private void resetState() {
+        sensors.clear();
+        unloaded = null;
+        alarmStatus = AlarmStatus.NO_ALARM;
+        armingStatus = ArmingStatus.DISARMED;
+    }
+
+    /**
+     * Opens the snapshot, leaving its sensors to be loaded when needed.
+     * @return number of the first segment written after the snapshot
+     */
+    private long loadSnapshot(Path snapshotPath) throws IOException {
+        unloaded = MappedSnapshot.open(snapshotPath);
+        alarmStatus = unloaded.getAlarmStatus();
+        armingStatus = unloaded.getArmingStatus();
+        return unloaded.getFirstSegment();
+    }
+
+    /**
+     * Applies the records of the currently mapped segment, stopping at the end marker or at the
+     * first record that is incomplete, fails its checksum or is not recognised.
+     * @return offset at which the replay stopped
+     */
+    private int replay() {
+        log.position(LOG_HEADER_BYTES);
+        while (log.remaining() >= 8) {
+            int start = log.position();
+            int length = log.getInt();
+            int expected = log.getInt();
+            if (length <= 0 || length > log.remaining() || checksum(start + 8, length) != expected
+                    || !apply(log.get())) {
+                log.position(start);
+                return start;
+            }
+            log.position(start + 8 + length);
+        }
+        return log.position();
+    }
+
+    /**
+     * @return CRC32C of the given range of the log, leaving the log's position unchanged
+     */
+    private int checksum(int offset, int length) {
+        checksum.reset();
+        checksum.update(log.slice(offset, length));
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Applies a single record read from the log.
+     * @return false if the record is not recognised, which ends the replay
+     */
+    private boolean apply(byte type) {
+        try {
+            switch (type) {
+                case SENSOR_UPSERT -> sensors.put(SensorCodec.readSensor(log));
+                case SENSOR_REMOVE -> {
+                    sensors.remove(new UUID(log.getLong(), log.getLong()));
+                }
+                case ALARM_STATUS -> alarmStatus = AlarmStatus.values()[log.get()];
+                case ARMING_STATUS -> armingStatus = ArmingStatus.values()[log.get()];
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            //a torn record at the tail of the log
+            return false;
+        }
+    }
+
+    /**
+     * Continues the log at the offset where the replay stopped, ending it there so that appends
+     * overwrite any record the replay could not apply rather than follow it, where the next replay
+     * would never reach them.
+     */
+    private void truncateAt(int end) {
+        log.position(end);
+        if (log.remaining() >= 4) {
+            log.putInt(end, 0);
+        }
+    }
+}
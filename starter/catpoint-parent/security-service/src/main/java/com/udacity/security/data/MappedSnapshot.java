@@ -0,0 +1,225 @@
+package com.udacity.security.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Snapshot of the whole repository state, read through a read-only memory mapping. Opening one
+ * only reads its fixed-size header, so it takes the same time for four sensors as for a million:
+ * the statuses, the number of sensors and the active counts are in the header, and sensors are
+ * decoded when they are asked for. A single sensor is found by binary search in an index sorted by
+ * id, without decoding any other.
+ *
+ * Layout, big-endian:
+ * <ul>
+ *     <li>header: magic number, version, first log segment after the snapshot, alarm and arming
+ *     status ordinals, number of sensor types, a reserved byte, number of sensors and the number
+ *     of active sensors of every type</li>
+ *     <li>index: for every sensor, ordered by id, the id as two longs and the file offset of the
+ *     sensor's record</li>
+ *     <li>records: every sensor in {@link SensorCodec} encoding, in index order</li>
+ * </ul>
+ *
+ * Not thread-safe; the repository calls it while holding its own lock.
+ */
+final class MappedSnapshot {
+
+    static final int MAGIC = 0x43505353; // "CPSS"
+    static final int VERSION = 2;
+
+    private static final int COUNTS_OFFSET = 24;
+    private static final int INDEX_ENTRY_BYTES = 16 + 4;
+    private static final Comparator<Sensor> BY_ID = Comparator
+            .<Sensor>comparingLong(sensor -> sensor.getSensorId().getMostSignificantBits())
+            .thenComparingLong(sensor -> sensor.getSensorId().getLeastSignificantBits());
+
+    private final MappedByteBuffer buffer;
+    private final long firstSegment;
+    private final AlarmStatus alarmStatus;
+    private final ArmingStatus armingStatus;
+    private final int size;
+    private final int[] activeByType = new int[SensorType.values().length];
+    private final int activeCount;
+    private final int indexOffset;
+
+    private MappedSnapshot(Path path, MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        try {
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Unrecognised snapshot " + path);
+            }
+            firstSegment = buffer.getLong(8);
+            alarmStatus = SensorCodec.alarmStatus(buffer.get(16));
+            armingStatus = SensorCodec.armingStatus(buffer.get(17));
+            int types = buffer.get(18);
+            if (types < 0 || types > activeByType.length) {
+                throw new IOException("Snapshot " + path + " has unknown sensor types");
+            }
+            size = buffer.getInt(20);
+            int active = 0;
+            for (int i = 0; i < types; i++) {
+                activeByType[i] = buffer.getInt(COUNTS_OFFSET + 4 * i);
+                active += activeByType[i];
+            }
+            activeCount = active;
+            indexOffset = COUNTS_OFFSET + 4 * types;
+            if (size < 0 || (long) indexOffset + (long) size * INDEX_ENTRY_BYTES > buffer.capacity()) {
+                throw new IOException("Truncated snapshot " + path);
+            }
+            //records are written in index order, so the last one ends exactly at the end of the file
+            if (size > 0) {
+                read(size - 1);
+                if (buffer.position() != buffer.capacity()) {
+                    throw new IOException("Truncated snapshot " + path);
+                }
+            }
+        } catch (IndexOutOfBoundsException | IllegalStateException e) {
+            throw new IOException("Truncated snapshot " + path, e);
+        }
+    }
+
+    /**
+     * Maps the snapshot, reads its header and checks that its last sensor record is complete.
+     * @throws IOException if the file is not a snapshot of this version or is truncated
+     */
+    static MappedSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            //the mapping stays valid after the channel is closed
+            return new MappedSnapshot(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes a snapshot of the given state and forces it to disk, so that it is complete before the
+     * caller moves it into place.
+     * @param firstSegment Number of the first log segment that is not part of the snapshot
+     */
+    static void write(Path path, long firstSegment, AlarmStatus alarmStatus, ArmingStatus armingStatus,
+                      Collection<Sensor> sensors) throws IOException {
+        Sensor[] sorted = sensors.toArray(new Sensor[0]);
+        Arrays.sort(sorted, BY_ID);
+        int types = SensorType.values().length;
+        int[] activeByType = new int[types];
+        int[] sizes = new int[sorted.length];
+        long offset = COUNTS_OFFSET + 4L * types + (long) sorted.length * INDEX_ENTRY_BYTES;
+        long end = offset;
+        for (int i = 0; i < sorted.length; i++) {
+            if (Boolean.TRUE.equals(sorted[i].getActive())) {
+                activeByType[sorted[i].getSensorType().ordinal()]++;
+            }
+            sizes[i] = SensorCodec.encodedSize(sorted[i]);
+            end += sizes[i];
+        }
+        if (end > Integer.MAX_VALUE) {
+            throw new IOException("Too many sensors for a snapshot: " + sorted.length);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(firstSegment);
+            out.writeByte(alarmStatus.ordinal());
+            out.writeByte(armingStatus.ordinal());
+            out.writeByte(types);
+            out.writeByte(0);
+            out.writeInt(sorted.length);
+            for (int count : activeByType) {
+                out.writeInt(count);
+            }
+            for (int i = 0; i < sorted.length; i++) {
+                out.writeLong(sorted[i].getSensorId().getMostSignificantBits());
+                out.writeLong(sorted[i].getSensorId().getLeastSignificantBits());
+                out.writeInt((int) offset);
+                offset += sizes[i];
+            }
+            for (Sensor sensor : sorted) {
+                SensorCodec.writeSensor(out, sensor);
+            }
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    long getFirstSegment() {
+        return firstSegment;
+    }
+
+    AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getActiveCount() {
+        return activeCount;
+    }
+
+    int getActiveCount(SensorType sensorType) {
+        return activeByType[sensorType.ordinal()];
+    }
+
+    /**
+     * @return a newly decoded copy of the sensor with the given id, or null if there is none
+     */
+    Sensor find(UUID sensorId) {
+        long msb = sensorId.getMostSignificantBits();
+        long lsb = sensorId.getLeastSignificantBits();
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = indexOffset + middle * INDEX_ENTRY_BYTES;
+            int comparison = Long.compare(buffer.getLong(entry), msb);
+            if (comparison == 0) {
+                comparison = Long.compare(buffer.getLong(entry + 8), lsb);
+            }
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return read(middle);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes every sensor, in id order.
+     * @throws IllegalStateException if a record is corrupt
+     */
+    void forEach(Consumer<Sensor> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(read(i));
+        }
+    }
+
+    private Sensor read(int index) {
+        try {
+            buffer.position(buffer.getInt(indexOffset + index * INDEX_ENTRY_BYTES + 16));
+            return SensorCodec.readSensor(buffer);
+        } catch (IllegalArgumentException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalStateException("Corrupt sensor record " + index + " in snapshot", e);
+        }
+    }
+}
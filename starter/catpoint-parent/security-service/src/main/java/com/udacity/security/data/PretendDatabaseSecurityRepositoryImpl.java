@@ -2,82 +2,587 @@ package com.udacity.security.data;
 
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
+import com.udacity.security.metrics.RepositoryFlushEvent;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
 /**
  * Fake repository implementation for demo purposes. Stores state information in local
  * memory and writes it to user preferences between app loads. This implementation is
  * intentionally a little hard to use in unit tests, so watch out!
+ *
+ * By default every mutation is written straight through to the preferences. When constructed
+ * with a flush interval the repository runs in write-behind mode instead: mutations only mark
+ * the in-memory state dirty and a background flusher merges them into a single write per
+ * interval, or sooner once the dirty threshold is reached. Call {@link #close()} on shutdown
+ * so that pending changes are not lost.
+ *
+ * Sensors are stored in the {@link SensorCodec} binary format. A preference value is limited to
+ * {@link Preferences#MAX_VALUE_LENGTH} characters, so the encoded sensors are split over numbered
+ * chunk keys. The chunks belong to a generation, and a single manifest value names the current
+ * generation and its number of chunks. A flush that changes a single chunk overwrites it in place;
+ * any larger change writes a new generation and switches the manifest last. Either way a crash, or
+ * a sync of the preferences halfway through a flush, leaves a complete old or new state behind.
+ * Chunks of an abandoned generation are removed on the next load. Sensors saved as JSON, or in
+ * unversioned chunks, by earlier versions are read once and rewritten.
  */
-public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository{
+public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
 
-    private Set<Sensor> sensors;
+    private final SensorIndex sensors = new SensorIndex();
     private AlarmStatus alarmStatus;
     private ArmingStatus armingStatus;
+    private final ActiveSensorCounter activeSensors = new ActiveSensorCounter();
 
-    //preference keys
-    private static final String SENSORS = "SENSORS";
-    private static final String ALARM_STATUS = "ALARM_STATUS";
-    private static final String ARMING_STATUS = "ARMING_STATUS";
+    //preference keys; package-private for tests
+    static final String SENSOR_MANIFEST = "SENSOR_MANIFEST";
+    static final String SENSOR_CHUNK_PREFIX = "SENSORS.";
+    static final String ALARM_STATUS = "ALARM_STATUS";
+    static final String ARMING_STATUS = "ARMING_STATUS";
+    //written by earlier versions, only read to migrate them: JSON, then chunks without a generation
+    static final String LEGACY_SENSORS = "SENSORS";
+    static final String LEGACY_SENSOR_CHUNKS = "SENSOR_CHUNKS";
+
+    //largest byte array Preferences.putByteArray accepts
+    static final int CHUNK_BYTES = Preferences.MAX_VALUE_LENGTH * 3 / 4;
 
     private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
-    private static final Gson gson = new Gson(); //used to serialize objects into JSON
+    private static final Gson gson = new Gson(); //used to read sensors saved as JSON
+    private static final Type SENSOR_SET_TYPE = new TypeToken<Set<Sensor>>() {
+    }.getType();
+
+    //guards the in-memory state and the dirty flags
+    private final Object lock = new Object();
+    //held for a whole flush so that an older state is never written over a newer one
+    private final Object writeLock = new Object();
+    //sensors as they are stored in the preferences, so that unchanged chunks can be skipped
+    private byte[] storedSensors = new byte[0];
+    //generation of the stored chunks, 0 before any were written
+    private long sensorGeneration;
+    private boolean sensorsDirty;
+    private boolean alarmStatusDirty;
+    private boolean armingStatusDirty;
+    private int dirtyCount;
+
+    private final int dirtyThreshold;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile boolean closed;
+
+    //flush statistics
+    private final AtomicLong mutationCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong prefsWriteCount = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
 
+    /**
+     * Creates a repository that writes every mutation straight through to the preferences.
+     */
     public PretendDatabaseSecurityRepositoryImpl() {
+        this.dirtyThreshold = 1;
+        this.flusher = null;
+        load();
+    }
+
+    /**
+     * Creates a repository in write-behind mode.
+     * @param flushInterval Maximum time a mutation may stay in memory before it is written
+     * @param dirtyThreshold Number of pending mutations that triggers an early flush
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Duration flushInterval, int dirtyThreshold) {
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("flushInterval must be positive");
+        }
+        if (dirtyThreshold < 1) {
+            throw new IllegalArgumentException("dirtyThreshold must be at least 1");
+        }
+        this.dirtyThreshold = dirtyThreshold;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "security-repository-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        load();
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void load() {
         //load system state from prefs, or else default
         alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
         armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
 
         //we've serialized our sensor objects for storage, which should be a good warning sign that
         // this is likely an impractical solution for a real system
-        String sensorString = prefs.get(SENSORS, null);
-        if(sensorString == null) {
-            sensors = new TreeSet<>();
-        } else {
-            Type type = new TypeToken<Set<Sensor>>() {
-            }.getType();
-            sensors = gson.fromJson(sensorString, type);
+        String manifest = prefs.get(SENSOR_MANIFEST, null);
+        int legacyChunks = prefs.getInt(LEGACY_SENSOR_CHUNKS, 0);
+        String legacyJson = prefs.get(LEGACY_SENSORS, null);
+        try {
+            if (manifest != null) {
+                int separator = manifest.indexOf(':');
+                if (separator < 0) {
+                    throw new IOException("Invalid sensor manifest " + manifest);
+                }
+                sensorGeneration = Long.parseLong(manifest.substring(0, separator));
+                int chunks = Integer.parseInt(manifest.substring(separator + 1));
+                storedSensors = readChunks(chunks, i -> chunkKey(sensorGeneration, i));
+                SensorCodec.readSensors(new DataInputStream(new ByteArrayInputStream(storedSensors)), sensors::put);
+            } else if (legacyChunks > 0) {
+                byte[] stored = readChunks(legacyChunks, i -> SENSOR_CHUNK_PREFIX + i);
+                SensorCodec.readSensors(new DataInputStream(new ByteArrayInputStream(stored)), sensors::put);
+                sensorsDirty = true;
+            } else if (legacyJson != null) {
+                Set<Sensor> stored = gson.fromJson(legacyJson, SENSOR_SET_TYPE);
+                stored.forEach(sensors::put);
+                sensorsDirty = true;
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new UncheckedIOException("Unable to read the stored sensors",
+                    e instanceof IOException io ? io : new IOException(e));
+        }
+        activeSensors.reset(sensors.asSet());
+        if (sensorsDirty) {
+            //rewrite the migrated sensors in the current format right away
+            flush();
+        }
+        removeStaleChunks();
+    }
+
+    private static byte[] readChunks(int chunks, IntFunction<String> keys) throws IOException {
+        ByteArrayOutputStream stored = new ByteArrayOutputStream(chunks * CHUNK_BYTES);
+        for (int i = 0; i < chunks; i++) {
+            byte[] chunk = prefs.getByteArray(keys.apply(i), null);
+            if (chunk == null) {
+                throw new IOException("Sensor chunk " + i + " of " + chunks + " is missing");
+            }
+            stored.write(chunk);
         }
+        return stored.toByteArray();
+    }
+
+    static String chunkKey(long generation, int chunk) {
+        return SENSOR_CHUNK_PREFIX + generation + "." + chunk;
+    }
+
+    /**
+     * Removes the chunks of generations other than the current one, which a flush that did not
+     * finish may have left behind, and sensors stored in an earlier format.
+     */
+    private void removeStaleChunks() {
+        if (sensorGeneration == 0) {
+            return;
+        }
+        String current = SENSOR_CHUNK_PREFIX + sensorGeneration + ".";
+        try {
+            for (String key : prefs.keys()) {
+                if (key.startsWith(SENSOR_CHUNK_PREFIX) && !key.startsWith(current)) {
+                    prefs.remove(key);
+                }
+            }
+        } catch (BackingStoreException e) {
+            //left for the next load
+            return;
+        }
+        prefs.remove(LEGACY_SENSOR_CHUNKS);
+        prefs.remove(LEGACY_SENSORS);
+    }
+
+    /**
+     * Writes the encoded sensors. If they differ from the stored ones in a single chunk, as they
+     * do after toggling a sensor, only that chunk is overwritten, which the preferences do in one
+     * step. Otherwise every chunk is written under a new generation, the manifest is switched to it
+     * and only then are the chunks of the old generation removed.
+     * @return number of preference writes
+     */
+    private int writeSensors(byte[] encoded) {
+        int chunks = chunkCount(encoded);
+        int previous = chunkCount(storedSensors);
+        int changedChunk = -1;
+        int changedCount = 0;
+        for (int i = 0; i < chunks; i++) {
+            if (!chunkEquals(encoded, storedSensors, i)) {
+                changedChunk = i;
+                changedCount++;
+            }
+        }
+        if (sensorGeneration > 0 && chunks == previous && changedCount <= 1) {
+            if (changedCount == 1) {
+                prefs.putByteArray(chunkKey(sensorGeneration, changedChunk), chunk(encoded, changedChunk));
+            }
+            storedSensors = encoded;
+            return changedCount;
+        }
+
+        long generation = sensorGeneration + 1;
+        for (int i = 0; i < chunks; i++) {
+            prefs.putByteArray(chunkKey(generation, i), chunk(encoded, i));
+        }
+        prefs.put(SENSOR_MANIFEST, generation + ":" + chunks);
+        for (int i = 0; i < previous; i++) {
+            prefs.remove(chunkKey(sensorGeneration, i));
+        }
+        sensorGeneration = generation;
+        storedSensors = encoded;
+        return chunks + 1;
+    }
+
+    private static boolean chunkEquals(byte[] a, byte[] b, int chunk) {
+        int from = chunk * CHUNK_BYTES;
+        int aTo = Math.min(a.length, from + CHUNK_BYTES);
+        int bTo = Math.min(b.length, from + CHUNK_BYTES);
+        return aTo == bTo && Arrays.equals(a, from, aTo, b, from, bTo);
+    }
+
+    private static byte[] chunk(byte[] encoded, int chunk) {
+        int from = chunk * CHUNK_BYTES;
+        return Arrays.copyOfRange(encoded, from, Math.min(encoded.length, from + CHUNK_BYTES));
+    }
+
+    private static int chunkCount(byte[] encoded) {
+        return (encoded.length + CHUNK_BYTES - 1) / CHUNK_BYTES;
     }
 
     @Override
     public void addSensor(Sensor sensor) {
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        synchronized (lock) {
+            sensors.put(sensor);
+            activeSensors.update(sensor);
+            sensorsDirty = true;
+            verifyActiveSensors();
+        }
+        mutated();
     }
 
     @Override
     public void removeSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        synchronized (lock) {
+            sensors.remove(sensor.getSensorId());
+            activeSensors.remove(sensor);
+            sensorsDirty = true;
+            verifyActiveSensors();
+        }
+        mutated();
     }
 
     @Override
     public void updateSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        synchronized (lock) {
+            sensors.put(sensor);
+            activeSensors.update(sensor);
+            sensorsDirty = true;
+            verifyActiveSensors();
+        }
+        mutated();
+    }
+
+    @Override
+    public SensorActivation updateSensorActivation(Sensor sensor, boolean active) {
+        SensorActivation previous;
+        synchronized (lock) {
+            previous = flipSensor(sensor, active);
+            if (!previous.isKnown()) {
+                return previous;
+            }
+            sensorsDirty = true;
+            verifyActiveSensors();
+        }
+        mutated();
+        return previous;
+    }
+
+    @Override
+    public SensorActivation[] updateSensorActivations(List<Sensor> changed, boolean[] active) {
+        if (changed.size() != active.length) {
+            throw new IllegalArgumentException("Expected one activation state per sensor");
+        }
+        SensorActivation[] previous = new SensorActivation[changed.size()];
+        boolean stored = false;
+        synchronized (lock) {
+            for (int i = 0; i < previous.length; i++) {
+                previous[i] = flipSensor(changed.get(i), active[i]);
+                stored |= previous[i].isKnown();
+            }
+            if (!stored) {
+                return previous;
+            }
+            sensorsDirty = true;
+            verifyActiveSensors();
+        }
+        mutated();
+        return previous;
+    }
+
+    /**
+     * Sets and stores the activation of a sensor this repository holds. Called with the lock held.
+     */
+    private SensorActivation flipSensor(Sensor sensor, boolean active) {
+        if (sensors.get(sensor.getSensorId()) == null) {
+            return SensorActivation.UNKNOWN_SENSOR;
+        }
+        boolean wasActive = activeSensors.isActive(sensor.getSensorId());
+        sensor.setActive(active);
+        sensors.put(sensor);
+        activeSensors.update(sensor);
+        return wasActive ? SensorActivation.WAS_ACTIVE : SensorActivation.WAS_INACTIVE;
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> changed) {
+        synchronized (lock) {
+            for (Sensor sensor : changed) {
+                sensors.put(sensor);
+                activeSensors.update(sensor);
+            }
+            sensorsDirty = true;
+            verifyActiveSensors();
+        }
+        mutated();
     }
 
     @Override
     public void setAlarmStatus(AlarmStatus alarmStatus) {
-        this.alarmStatus = alarmStatus;
-        prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        synchronized (lock) {
+            this.alarmStatus = alarmStatus;
+            alarmStatusDirty = true;
+        }
+        mutated();
     }
 
     @Override
     public void setArmingStatus(ArmingStatus armingStatus) {
-        this.armingStatus = armingStatus;
-        prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        synchronized (lock) {
+            this.armingStatus = armingStatus;
+            armingStatusDirty = true;
+        }
+        mutated();
+    }
+
+    private void verifyActiveSensors() {
+        if (activeSensors.isVerifyEnabled()) {
+            activeSensors.verify(sensors.asSet());
+        }
+    }
+
+    /**
+     * Records a mutation and decides whether it has to be written now. In write-through mode
+     * the write happens on the caller's thread, in write-behind mode the flusher is only poked
+     * once enough mutations have piled up.
+     */
+    private void mutated() {
+        mutationCount.incrementAndGet();
+        if (flusher == null) {
+            flush();
+            return;
+        }
+        int pending;
+        synchronized (lock) {
+            pending = ++dirtyCount;
+        }
+        if (pending >= dirtyThreshold && !closed && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushRequested.set(false);
+                flush();
+            });
+        }
+    }
+
+    /**
+     * Writes all pending changes to the preferences. Only the parts of the state that changed
+     * since the last flush are written, and the sensors are serialized at most once no matter
+     * how many sensor mutations were merged.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            flushLocked();
+        }
+    }
+
+    private void flushLocked() {
+        byte[] encodedSensors = null;
+        String alarm = null;
+        String arming = null;
+        RepositoryFlushEvent event = new RepositoryFlushEvent();
+        event.begin();
+        long start = System.nanoTime();
+        synchronized (lock) {
+            if (!sensorsDirty && !alarmStatusDirty && !armingStatusDirty) {
+                return;
+            }
+            if (sensorsDirty) {
+                encodedSensors = encode(sensors.asSet());
+            }
+            if (alarmStatusDirty) {
+                alarm = alarmStatus.toString();
+            }
+            if (armingStatusDirty) {
+                arming = armingStatus.toString();
+            }
+            sensorsDirty = false;
+            alarmStatusDirty = false;
+            armingStatusDirty = false;
+            dirtyCount = 0;
+        }
+        int written = 0;
+        if (encodedSensors != null) {
+            written += writeSensors(encodedSensors);
+        }
+        if (alarm != null) {
+            prefs.put(ALARM_STATUS, alarm);
+            written++;
+        }
+        if (arming != null) {
+            prefs.put(ARMING_STATUS, arming);
+            written++;
+        }
+        prefsWriteCount.addAndGet(written);
+        long elapsed = System.nanoTime() - start;
+        flushCount.incrementAndGet();
+        totalFlushNanos.addAndGet(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        event.end();
+        if (event.shouldCommit()) {
+            event.repository = getClass().getSimpleName();
+            event.valuesWritten = written;
+            event.commit();
+        }
+    }
+
+    private static byte[] encode(Collection<Sensor> sensors) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(sensors.size() * 40 + 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            SensorCodec.writeSensors(out, sensors);
+        } catch (IOException e) {
+            //not thrown by in-memory streams
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Flushes any pending changes, stops the background flusher and asks the preferences to
+     * sync to their backing store.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        try {
+            prefs.flush();
+        } catch (BackingStoreException e) {
+            throw new IllegalStateException("Unable to flush preferences", e);
+        }
+    }
+
+    /**
+     * @return number of mutations applied to this repository
+     */
+    public long getMutationCount() {
+        return mutationCount.get();
+    }
+
+    /**
+     * @return number of flushes that wrote at least one value
+     */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /**
+     * @return number of individual preference writes performed by all flushes
+     */
+    public long getPrefsWriteCount() {
+        return prefsWriteCount.get();
+    }
+
+    /**
+     * @return average time spent in a flush, in nanoseconds
+     */
+    public long getAverageFlushNanos() {
+        long flushes = flushCount.get();
+        return flushes == 0 ? 0 : totalFlushNanos.get() / flushes;
+    }
+
+    /**
+     * @return longest time spent in a single flush, in nanoseconds
+     */
+    public long getMaxFlushNanos() {
+        return maxFlushNanos.get();
     }
 
     @Override
     public Set<Sensor> getSensors() {
-        return sensors;
+        return sensors.asSet();
+    }
+
+    @Override
+    public List<Sensor> getActiveSensors() {
+        synchronized (lock) {
+            List<Sensor> active = new ArrayList<>(activeSensors.getActiveCount());
+            for (UUID sensorId : activeSensors.getActiveSensorIds()) {
+                active.add(sensors.get(sensorId));
+            }
+            return active;
+        }
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        synchronized (lock) {
+            return sensors.get(sensorId);
+        }
+    }
+
+    @Override
+    public List<Sensor> getSortedSensors() {
+        synchronized (lock) {
+            return sensors.sorted();
+        }
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        synchronized (lock) {
+            return activeSensors.getActiveCount();
+        }
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        synchronized (lock) {
+            return activeSensors.getActiveCount(sensorType);
+        }
     }
 
     @Override
@@ -89,4 +594,4 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
     public ArmingStatus getArmingStatus() {
         return armingStatus;
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,9 @@
 package com.udacity.security.data;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Interface showing the methods our security repository will need to support
@@ -9,11 +12,76 @@ public interface SecurityRepository {
     void addSensor(Sensor sensor);
     void removeSensor(Sensor sensor);
     void updateSensor(Sensor sensor);
+
+    /**
+     * Sets whether the sensor is active and stores it, in one step with respect to every other
+     * change to this repository. Of several threads activating the same sensor at once, only one
+     * sees it inactive before. A sensor the repository no longer holds is neither changed nor
+     * added back.
+     * @return whether the repository held the sensor as active before the change, or
+     * {@link SensorActivation#UNKNOWN_SENSOR} if it does not hold the sensor
+     */
+    SensorActivation updateSensorActivation(Sensor sensor, boolean active);
+
+    /**
+     * Same as {@link #updateSensorActivation(Sensor, boolean)} for each sensor in turn, but all of
+     * them in one step with respect to every other change to this repository. Implementations
+     * persist the batch as a single write where they can.
+     * @param sensors Sensors to change, in order; the same sensor may appear more than once
+     * @param active Whether the sensor at the same position becomes active
+     * @return the previous state of the sensor at each position
+     */
+    SensorActivation[] updateSensorActivations(List<Sensor> sensors, boolean[] active);
+
+    /**
+     * Stores several changed sensors at once. Implementations persist the batch as a single write
+     * where they can.
+     */
+    void updateSensors(Collection<Sensor> sensors);
     void setAlarmStatus(AlarmStatus alarmStatus);
     void setArmingStatus(ArmingStatus armingStatus);
+
+    /**
+     * @return all sensors. This may be a live view, which must not be iterated while other threads
+     * add or remove sensors.
+     */
     Set<Sensor> getSensors();
+
+    /**
+     * @return a copy of the sensors that are currently active, taken in one step with respect to
+     * every other change to this repository
+     */
+    List<Sensor> getActiveSensors();
+
+    /**
+     * @return the sensor with the given id, or null if there is none
+     */
+    Sensor getSensor(UUID sensorId);
+
+    /**
+     * @return a read-only list of all sensors in display order
+     */
+    List<Sensor> getSortedSensors();
+
+    /**
+     * @return number of sensors. Repositories that load their sensors lazily answer without
+     * loading them.
+     */
+    default int getSensorCount() {
+        return getSensors().size();
+    }
     AlarmStatus getAlarmStatus();
     ArmingStatus getArmingStatus();
 
+    /**
+     * @return number of sensors currently active, maintained incrementally by the repository
+     */
+    int getActiveSensorCount();
+
+    /**
+     * @return number of sensors of the given type currently active
+     */
+    int getActiveSensorCount(SensorType sensorType);
+
 
 }
@@ -8,6 +8,9 @@ import java.util.UUID;
 
 /**
  * Sensor POJO. Needs to know how to sort itself for display purposes.
+ *
+ * Equality, hashing and ordering go through the getters so that subclasses which keep their
+ * state elsewhere, such as the views handed out by {@link CompactSensorStore}, behave the same.
  */
 public class Sensor implements Comparable<Sensor> {
     private UUID sensorId;
@@ -26,15 +29,15 @@ public class Sensor implements Comparable<Sensor> {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof Sensor)) return false;
         Sensor sensor = (Sensor) o;
-        return sensorId.equals(sensor.sensorId);
+        return getSensorId().equals(sensor.getSensorId());
     }
 
     @Override
     public int hashCode() {
 
-        return Objects.hash(sensorId);
+        return Objects.hash(getSensorId());
     }
 
     public String getName() {
@@ -80,9 +83,9 @@ public class Sensor implements Comparable<Sensor> {
     @Override
     public int compareTo(Sensor o) {
         return ComparisonChain.start()
-                .compare(this.name, o.name)
-                .compare(this.sensorType.toString(), o.sensorType.toString())
-                .compare(this.sensorId, o.sensorId)
+                .compare(getName(), o.getName())
+                .compare(getSensorType().toString(), o.getSensorType().toString())
+                .compare(getSensorId(), o.getSensorId())
                 .result();
     }
 }
@@ -0,0 +1,20 @@
+package com.udacity.security.data;
+
+/**
+ * What a sensor was before {@link SecurityRepository#updateSensorActivation(Sensor, boolean)}
+ * changed it, or that the repository does not hold it.
+ */
+public enum SensorActivation {
+    WAS_INACTIVE,
+    WAS_ACTIVE,
+    //the repository does not hold the sensor, so nothing was changed or stored
+    UNKNOWN_SENSOR;
+
+    public boolean wasActive() {
+        return this == WAS_ACTIVE;
+    }
+
+    public boolean isKnown() {
+        return this != UNKNOWN_SENSOR;
+    }
+}
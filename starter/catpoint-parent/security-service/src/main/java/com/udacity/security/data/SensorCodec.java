@@ -0,0 +1,254 @@
+package com.udacity.security.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Binary encoding of sensors and of the alarm and arming status. All values are big-endian.
+ *
+ * A sensor is its id as two longs (most significant bits first), the sensor type's ordinal and
+ * its activity as one byte each, and its name as an int length followed by that many bytes of
+ * UTF-8. A length of -1 stands for a missing name. The same layout is used for the records of
+ * {@link EventLogSecurityRepositoryImpl}.
+ *
+ * A state stream, as written by {@link #writeState}, starts with a magic number and a format
+ * version byte, followed by the alarm and arming status ordinals, the number of sensors and the
+ * sensors themselves. A sensor stream, as written by {@link #writeSensors}, has its own magic
+ * number and leaves out the statuses. Sensors are read and written one at a time, so a stream
+ * never has to be held in memory as a whole.
+ *
+ * Enum ordinals are part of the format: new constants go at the end.
+ */
+public final class SensorCodec {
+
+    public static final int STATE_MAGIC = 0x43505354; // "CPST"
+    public static final int SENSORS_MAGIC = 0x4350534E; // "CPSN"
+    public static final byte FORMAT_VERSION = 1;
+
+    //id, type, active and name length
+    private static final int FIXED_BYTES = 16 + 1 + 1 + 4;
+
+    //names are for display; anything longer is a corrupt length, not a name
+    private static final int MAX_NAME_BYTES = 1 << 16;
+
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+
+    private SensorCodec() {
+    }
+
+    /**
+     * State read from a stream, without its sensors.
+     */
+    public record Header(AlarmStatus alarmStatus, ArmingStatus armingStatus, int sensorCount) { }
+
+    /**
+     * Writes the whole state. The sensors are written in iteration order.
+     */
+    public static void writeState(DataOutput out, AlarmStatus alarmStatus, ArmingStatus armingStatus,
+                                  Collection<Sensor> sensors) throws IOException {
+        out.writeInt(STATE_MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(alarmStatus.ordinal());
+        out.writeByte(armingStatus.ordinal());
+        writeSensorList(out, sensors);
+    }
+
+    /**
+     * Reads a state written by {@link #writeState}, handing every sensor to the consumer as soon
+     * as it is decoded.
+     * @throws IOException if the stream is not a state stream, was written by a newer version or
+     * is truncated
+     */
+    public static Header readState(DataInput in, Consumer<Sensor> sensors) throws IOException {
+        readPreamble(in, STATE_MAGIC);
+        AlarmStatus alarmStatus = alarmStatus(in.readByte());
+        ArmingStatus armingStatus = armingStatus(in.readByte());
+        return new Header(alarmStatus, armingStatus, readSensorList(in, sensors));
+    }
+
+    /**
+     * Writes the sensors without any status. The sensors are written in iteration order.
+     */
+    public static void writeSensors(DataOutput out, Collection<Sensor> sensors) throws IOException {
+        out.writeInt(SENSORS_MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        writeSensorList(out, sensors);
+    }
+
+    /**
+     * Reads sensors written by {@link #writeSensors}, handing every sensor to the consumer as
+     * soon as it is decoded.
+     * @return number of sensors read
+     * @throws IOException if the stream is not a sensor stream, was written by a newer version or
+     * is truncated
+     */
+    public static int readSensors(DataInput in, Consumer<Sensor> sensors) throws IOException {
+        readPreamble(in, SENSORS_MAGIC);
+        return readSensorList(in, sensors);
+    }
+
+    private static void readPreamble(DataInput in, int magic) throws IOException {
+        if (in.readInt() != magic) {
+            throw new IOException("Unrecognised sensor stream");
+        }
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported sensor stream version " + version);
+        }
+    }
+
+    private static void writeSensorList(DataOutput out, Collection<Sensor> sensors) throws IOException {
+        out.writeInt(sensors.size());
+        for (Sensor sensor : sensors) {
+            writeSensor(out, sensor);
+        }
+    }
+
+    private static int readSensorList(DataInput in, Consumer<Sensor> sensors) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid sensor count " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            sensors.accept(readSensor(in));
+        }
+        return count;
+    }
+
+    public static void writeSensor(DataOutput out, Sensor sensor) throws IOException {
+        out.writeLong(sensor.getSensorId().getMostSignificantBits());
+        out.writeLong(sensor.getSensorId().getLeastSignificantBits());
+        out.writeByte(sensor.getSensorType().ordinal());
+        out.writeBoolean(Boolean.TRUE.equals(sensor.getActive()));
+        String name = sensor.getName();
+        if (name == null) {
+            out.writeInt(-1);
+        } else {
+            //one bulk write; DataOutputStream.writeBytes would write the name a byte at a time
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    public static Sensor readSensor(DataInput in) throws IOException {
+        Sensor sensor = new Sensor();
+        sensor.setSensorId(new UUID(in.readLong(), in.readLong()));
+        sensor.setSensorType(sensorType(in.readByte()));
+        sensor.setActive(in.readBoolean());
+        int length = in.readInt();
+        if (length > MAX_NAME_BYTES) {
+            throw new IOException("Invalid sensor name length " + length);
+        }
+        if (length >= 0) {
+            byte[] name = new byte[length];
+            in.readFully(name);
+            sensor.setName(new String(name, StandardCharsets.UTF_8));
+        } else if (length != -1) {
+            throw new IOException("Invalid sensor name length " + length);
+        }
+        return sensor;
+    }
+
+    /**
+     * @return number of bytes {@link #writeSensor} writes for the sensor
+     */
+    public static int encodedSize(Sensor sensor) {
+        String name = sensor.getName();
+        if (name == null) {
+            return FIXED_BYTES;
+        }
+        return FIXED_BYTES + (isAscii(name) ? name.length() : name.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    /**
+     * Writes the sensor at the buffer's position, which must have {@link #encodedSize} bytes left.
+     */
+    public static void writeSensor(ByteBuffer buffer, Sensor sensor) {
+        buffer.putLong(sensor.getSensorId().getMostSignificantBits());
+        buffer.putLong(sensor.getSensorId().getLeastSignificantBits());
+        buffer.put((byte) sensor.getSensorType().ordinal());
+        buffer.put((byte) (Boolean.TRUE.equals(sensor.getActive()) ? 1 : 0));
+        String name = sensor.getName();
+        if (name == null) {
+            buffer.putInt(-1);
+        } else if (isAscii(name)) {
+            buffer.putInt(name.length());
+            for (int i = 0; i < name.length(); i++) {
+                buffer.put((byte) name.charAt(i));
+            }
+        } else {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    /**
+     * Reads a sensor at the buffer's position.
+     * @throws IllegalArgumentException if the sensor type or name length is invalid
+     * @throws BufferUnderflowException if the buffer ends inside the sensor
+     */
+    public static Sensor readSensor(ByteBuffer buffer) {
+        Sensor sensor = new Sensor();
+        sensor.setSensorId(new UUID(buffer.getLong(), buffer.getLong()));
+        sensor.setSensorType(SENSOR_TYPES[checkOrdinal(buffer.get(), SENSOR_TYPES.length)]);
+        sensor.setActive(buffer.get() != 0);
+        int length = buffer.getInt();
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (length >= 0) {
+            byte[] name = new byte[length];
+            buffer.get(name);
+            sensor.setName(new String(name, StandardCharsets.UTF_8));
+        } else if (length != -1) {
+            throw new IllegalArgumentException("Invalid sensor name length " + length);
+        }
+        return sensor;
+    }
+
+    public static SensorType sensorType(int ordinal) throws IOException {
+        return SENSOR_TYPES[ordinal(ordinal, SENSOR_TYPES.length)];
+    }
+
+    public static AlarmStatus alarmStatus(int ordinal) throws IOException {
+        return ALARM_STATUSES[ordinal(ordinal, ALARM_STATUSES.length)];
+    }
+
+    public static ArmingStatus armingStatus(int ordinal) throws IOException {
+        return ARMING_STATUSES[ordinal(ordinal, ARMING_STATUSES.length)];
+    }
+
+    private static int ordinal(int ordinal, int count) throws IOException {
+        if (ordinal < 0 || ordinal >= count) {
+            throw new IOException("Invalid ordinal " + ordinal);
+        }
+        return ordinal;
+    }
+
+    private static int checkOrdinal(int ordinal, int count) {
+        if (ordinal < 0 || ordinal >= count) {
+            throw new IllegalArgumentException("Invalid ordinal " + ordinal);
+        }
+        return ordinal;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,139 @@
+package com.udacity.security.data;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Primary index of sensors keyed by sensorId, giving O(1) lookup, update and removal. The
+ * name-sorted order used for display is a secondary index that is rebuilt lazily, and only after
+ * a sensor was added, removed, renamed or changed type. Toggling a sensor's activation status
+ * leaves it intact.
+ *
+ * Not thread-safe; repositories call it while holding their own lock.
+ */
+class SensorIndex {
+
+    private final Map<UUID, Entry> byId = new HashMap<>();
+    private final Set<Sensor> view = new SensorSetView();
+    private List<Sensor> sorted;
+
+    /**
+     * Adds the sensor, or replaces the sensor with the same sensorId.
+     */
+    void put(Sensor sensor) {
+        Entry entry = byId.get(sensor.getSensorId());
+        if (entry == null || entry.sensor != sensor || entry.sortKeyChanged()) {
+            byId.put(sensor.getSensorId(), new Entry(sensor));
+            sorted = null;
+        }
+    }
+
+    /**
+     * @return the removed sensor, or null if no sensor with that sensorId was indexed
+     */
+    Sensor remove(UUID sensorId) {
+        Entry entry = byId.remove(sensorId);
+        if (entry == null) {
+            return null;
+        }
+        sorted = null;
+        return entry.sensor;
+    }
+
+    Sensor get(UUID sensorId) {
+        Entry entry = byId.get(sensorId);
+        return entry == null ? null : entry.sensor;
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    void clear() {
+        byId.clear();
+        sorted = null;
+    }
+
+    /**
+     * @return a read-only set view of the indexed sensors, in no particular order
+     */
+    Set<Sensor> asSet() {
+        return view;
+    }
+
+    /**
+     * @return a read-only list of the indexed sensors in {@link Sensor#compareTo} order
+     */
+    List<Sensor> sorted() {
+        if (sorted == null) {
+            List<Sensor> rebuilt = new ArrayList<>(byId.size());
+            byId.values().forEach(entry -> {
+                entry.indexed();
+                rebuilt.add(entry.sensor);
+            });
+            Collections.sort(rebuilt);
+            sorted = Collections.unmodifiableList(rebuilt);
+        }
+        return sorted;
+    }
+
+    /**
+     * A sensor together with the sort key it had when it was last placed in the sorted view.
+     * Sensors are mutable, so this is how renames are noticed.
+     */
+    private static final class Entry {
+        private final Sensor sensor;
+        private String name;
+        private SensorType sensorType;
+
+        private Entry(Sensor sensor) {
+            this.sensor = sensor;
+            indexed();
+        }
+
+        private void indexed() {
+            name = sensor.getName();
+            sensorType = sensor.getSensorType();
+        }
+
+        private boolean sortKeyChanged() {
+            return !Objects.equals(name, sensor.getName()) || sensorType != sensor.getSensorType();
+        }
+    }
+
+    private final class SensorSetView extends AbstractSet<Sensor> {
+        @Override
+        public Iterator<Sensor> iterator() {
+            Iterator<Entry> entries = byId.values().iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public Sensor next() {
+                    return entries.next().sensor;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return byId.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Sensor sensor && byId.containsKey(sensor.getSensorId());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.udacity.security.gateway;
+
+import com.udacity.security.data.Sensor;
+
+/**
+ * Sensors one hub connection has sent events for, keyed by the two halves of their id so that a
+ * frame can be matched to its sensor without creating a {@link java.util.UUID}. Also remembers the
+ * last sequence number seen for each sensor. Open addressing with linear probing; only used by the
+ * connection's own thread.
+ */
+final class SensorCache {
+
+    private long[] msbs;
+    private long[] lsbs;
+    private Sensor[] sensors;
+    private long[] lastSequences;
+    private int size;
+
+    SensorCache(int expectedSensors) {
+        allocate(Integer.highestOneBit(Math.max(4, expectedSensors) * 2 - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        sensors = new Sensor[capacity];
+        lastSequences = new long[capacity];
+    }
+
+    /**
+     * @return slot of the sensor, or -1 if it is not cached
+     */
+    int indexOf(long msb, long lsb) {
+        int mask = sensors.length - 1;
+        for (int slot = hash(msb, lsb) & mask; sensors[slot] != null; slot = (slot + 1) & mask) {
+            if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return slot of the newly cached sensor, whose last sequence number is Long.MIN_VALUE
+     */
+    int add(long msb, long lsb, Sensor sensor) {
+        if ((size + 1) * 2 > sensors.length) {
+            grow();
+        }
+        int mask = sensors.length - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (sensors[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        msbs[slot] = msb;
+        lsbs[slot] = lsb;
+        sensors[slot] = sensor;
+        lastSequences[slot] = Long.MIN_VALUE;
+        size++;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        Sensor[] oldSensors = sensors;
+        long[] oldSequences = lastSequences;
+        allocate(oldSensors.length * 2);
+        size = 0;
+        for (int i = 0; i < oldSensors.length; i++) {
+            if (oldSensors[i] != null) {
+                lastSequences[add(oldMsbs[i], oldLsbs[i], oldSensors[i])] = oldSequences[i];
+            }
+        }
+    }
+
+    Sensor sensor(int slot) {
+        return sensors[slot];
+    }
+
+    /**
+     * Records the sequence number if it is newer than the last one for the slot.
+     * @return false if it is not newer
+     */
+    boolean advance(int slot, long sequence) {
+        if (sequence <= lastSequences[slot]) {
+            return false;
+        }
+        lastSequences[slot] = sequence;
+        return true;
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
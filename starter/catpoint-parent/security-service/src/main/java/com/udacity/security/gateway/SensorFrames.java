@@ -0,0 +1,57 @@
+package com.udacity.security.gateway;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format between sensor hubs and the {@link SensorGateway}. All values are big-endian.
+ *
+ * A hub sends fixed-size frames of {@value #FRAME_BYTES} bytes: the sensor id as two longs (most
+ * significant bits first), a sequence number that increases with every event of that sensor, and
+ * a flags byte whose lowest bit is the new activity of the sensor. The gateway answers every frame,
+ * in order, with an acknowledgement of {@value #ACK_BYTES} bytes: the frame's sequence number and
+ * one of the result codes below.
+ */
+public final class SensorFrames {
+
+    public static final int FRAME_BYTES = 16 + 8 + 1;
+    public static final int ACK_BYTES = 8 + 1;
+
+    public static final byte FLAG_ACTIVE = 1;
+
+    /**
+     * The event was applied.
+     */
+    public static final byte ACCEPTED = 0;
+
+    /**
+     * The sequence number was not above the last one seen for the sensor on this connection, so
+     * the event is a repeat or arrived out of order and was ignored.
+     */
+    public static final byte DUPLICATE = 1;
+
+    /**
+     * No sensor has the given id.
+     */
+    public static final byte UNKNOWN_SENSOR = 2;
+
+    private SensorFrames() {
+    }
+
+    /**
+     * Appends one frame at the buffer's position.
+     */
+    public static void putFrame(ByteBuffer buffer, long sensorIdMsb, long sensorIdLsb, long sequence, boolean active) {
+        buffer.putLong(sensorIdMsb);
+        buffer.putLong(sensorIdLsb);
+        buffer.putLong(sequence);
+        buffer.put(active ? FLAG_ACTIVE : 0);
+    }
+
+    /**
+     * Appends one acknowledgement at the buffer's position.
+     */
+    public static void putAck(ByteBuffer buffer, long sequence, byte result) {
+        buffer.putLong(sequence);
+        buffer.put(result);
+    }
+}
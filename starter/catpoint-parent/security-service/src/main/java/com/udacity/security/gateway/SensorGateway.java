@@ -0,0 +1,207 @@
+package com.udacity.security.gateway;
+
+import com.udacity.security.data.Sensor;
+import com.udacity.security.metrics.LatencyHistogram;
+import com.udacity.security.metrics.LatencySnapshot;
+import com.udacity.security.service.SecurityService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Accepts long-lived TCP connections from sensor hubs and feeds the sensor events they send into
+ * the {@link SecurityService}. The protocol is described in {@link SensorFrames}.
+ *
+ * Each connection is served by its own virtual thread with plain blocking reads, so thousands of
+ * idle hubs cost little more than their socket buffers. A connection reads whatever frames have
+ * arrived into a direct buffer, applies them in order and answers them with one write. Decoding
+ * reads the buffer in place and sensors are looked up in a per-connection cache, so once a hub's
+ * sensors are known an event is handled without allocating. Events for a sensor removed after it
+ * was cached are answered with {@link SensorFrames#UNKNOWN_SENSOR}; the repository reports the
+ * sensor as unknown rather than storing it again.
+ */
+public class SensorGateway implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(SensorGateway.class.getName());
+
+    //frames handled per read; a hub that sends more just waits for the next read
+    private static final int FRAMES_PER_READ = 128;
+
+    private final SecurityService securityService;
+    private final ServerSocketChannel serverChannel;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private Thread acceptor;
+    private volatile boolean closed;
+
+    private final LongAdder acceptedEvents = new LongAdder();
+    private final LongAdder duplicateEvents = new LongAdder();
+    private final LongAdder unknownSensorEvents = new LongAdder();
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LatencyHistogram ingestLatency = new LatencyHistogram();
+
+    /**
+     * @param address Address to listen on; port 0 picks a free port
+     */
+    public SensorGateway(SecurityService securityService, InetSocketAddress address) {
+        this.securityService = securityService;
+        try {
+            this.serverChannel = ServerSocketChannel.open();
+            //hubs connect in bursts, for example after a network outage
+            serverChannel.bind(address, 1024);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to listen on " + address, e);
+        }
+    }
+
+    public synchronized void start() {
+        if (acceptor != null) {
+            throw new IllegalStateException("Gateway already started");
+        }
+        acceptor = Thread.ofVirtual().name("sensor-gateway-accept").start(this::accept);
+    }
+
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connections.add(channel);
+                connectionsOpened.increment();
+                Thread.ofVirtual().name("sensor-gateway-connection").start(() -> serve(channel));
+            }
+        } catch (AsynchronousCloseException e) {
+            //closed
+        } catch (IOException e) {
+            if (!closed) {
+                log.log(Level.SEVERE, "Sensor gateway stopped accepting connections", e);
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        ByteBuffer frames = ByteBuffer.allocateDirect(FRAMES_PER_READ * SensorFrames.FRAME_BYTES);
+        ByteBuffer acks = ByteBuffer.allocateDirect(FRAMES_PER_READ * SensorFrames.ACK_BYTES);
+        SensorCache sensors = new SensorCache(16);
+        try (channel) {
+            while (channel.read(frames) >= 0) {
+                long received = System.nanoTime();
+                frames.flip();
+                acks.clear();
+                while (frames.remaining() >= SensorFrames.FRAME_BYTES) {
+                    apply(frames, acks, sensors);
+                }
+                //keep a partial frame for the next read
+                frames.compact();
+                acks.flip();
+                while (acks.hasRemaining()) {
+                    channel.write(acks);
+                }
+                ingestLatency.record(System.nanoTime() - received);
+            }
+        } catch (AsynchronousCloseException e) {
+            //gateway closed
+        } catch (IOException e) {
+            log.log(Level.FINE, "Sensor hub connection lost", e);
+        } finally {
+            connections.remove(channel);
+        }
+    }
+
+    private void apply(ByteBuffer frames, ByteBuffer acks, SensorCache sensors) {
+        long msb = frames.getLong();
+        long lsb = frames.getLong();
+        long sequence = frames.getLong();
+        boolean active = (frames.get() & SensorFrames.FLAG_ACTIVE) != 0;
+
+        int slot = sensors.indexOf(msb, lsb);
+        if (slot < 0) {
+            Sensor sensor = securityService.getSensor(new UUID(msb, lsb));
+            if (sensor == null) {
+                unknownSensorEvents.increment();
+                SensorFrames.putAck(acks, sequence, SensorFrames.UNKNOWN_SENSOR);
+                return;
+            }
+            slot = sensors.add(msb, lsb, sensor);
+        }
+        if (!sensors.advance(slot, sequence)) {
+            duplicateEvents.increment();
+            SensorFrames.putAck(acks, sequence, SensorFrames.DUPLICATE);
+            return;
+        }
+        if (!securityService.changeSensorActivationStatus(sensors.sensor(slot), active)) {
+            //removed since the connection cached it
+            unknownSensorEvents.increment();
+            SensorFrames.putAck(acks, sequence, SensorFrames.UNKNOWN_SENSOR);
+            return;
+        }
+        acceptedEvents.increment();
+        SensorFrames.putAck(acks, sequence, SensorFrames.ACCEPTED);
+    }
+
+    /**
+     * @return number of hubs connected right now
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    public long getAcceptedEventCount() {
+        return acceptedEvents.sum();
+    }
+
+    public long getDuplicateEventCount() {
+        return duplicateEvents.sum();
+    }
+
+    public long getUnknownSensorEventCount() {
+        return unknownSensorEvents.sum();
+    }
+
+    /**
+     * @return time from a read returning frames to their acknowledgements being written
+     */
+    public LatencySnapshot getIngestLatency() {
+        return ingestLatency.snapshot();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to close sensor gateway", e);
+        }
+        for (SocketChannel channel : connections) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //closing anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.udacity.security.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a change of the alarm status. Its duration covers deciding on the
+ * transition, including retries when other threads got there first, and persisting it.
+ */
+@Name("com.udacity.security.AlarmTransition")
+@Label("Alarm Transition")
+@Category({"Catpoint", "Alarm"})
+@Description("The alarm status changed")
+public class AlarmTransitionEvent extends jdk.jfr.Event {
+
+    @Label("From")
+    public String from;
+
+    @Label("To")
+    public String to;
+
+    @Label("Arming Status")
+    public String armingStatus;
+}
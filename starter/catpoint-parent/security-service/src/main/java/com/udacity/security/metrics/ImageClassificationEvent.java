@@ -0,0 +1,32 @@
+package com.udacity.security.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a call to the image service. A burst of frames classified in one call
+ * is one event; its size is that of the first frame.
+ */
+@Name("com.udacity.security.ImageClassification")
+@Label("Image Classification")
+@Category({"Catpoint", "Camera"})
+@Description("The image service classified one or more frames")
+public class ImageClassificationEvent extends jdk.jfr.Event {
+
+    @Label("Image Service")
+    public String imageService;
+
+    @Label("Frames")
+    public int frames;
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+
+    @Label("Cat Detected")
+    public boolean catDetected;
+}
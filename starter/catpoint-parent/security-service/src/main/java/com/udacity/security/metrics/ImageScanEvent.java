@@ -0,0 +1,27 @@
+package com.udacity.security.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a camera frame processed by the security service, from the motion
+ * gate to the resulting alarm update. Frames that reached the image service also have an
+ * {@link ImageClassificationEvent} inside this one.
+ */
+@Name("com.udacity.security.ImageScan")
+@Label("Image Scan")
+@Category({"Catpoint", "Camera"})
+@Description("A camera frame was processed")
+public class ImageScanEvent extends jdk.jfr.Event {
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+
+    @Label("Cat Detected")
+    public boolean catDetected;
+}
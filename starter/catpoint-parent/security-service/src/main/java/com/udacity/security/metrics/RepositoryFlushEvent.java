@@ -0,0 +1,24 @@
+package com.udacity.security.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a repository making pending changes durable: a preferences flush, or
+ * forcing the event log to disk.
+ */
+@Name("com.udacity.security.RepositoryFlush")
+@Label("Repository Flush")
+@Category({"Catpoint", "Repository"})
+@Description("Pending changes were written to the backing store")
+public class RepositoryFlushEvent extends jdk.jfr.Event {
+
+    @Label("Repository")
+    public String repository;
+
+    @Label("Values Written")
+    @Description("Preference values written, or log records forced to disk")
+    public int valuesWritten;
+}
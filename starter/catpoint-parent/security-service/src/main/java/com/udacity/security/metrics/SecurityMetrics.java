@@ -0,0 +1,163 @@
+package com.udacity.security.metrics;
+
+import com.udacity.security.data.AlarmStatus;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and latency histograms of a security service. Recording never blocks, so the service
+ * records on every call. The metrics can be read directly, which is how tests use them, or
+ * published as an MXBean on the platform MBean server for JConsole, VisualVM or any other JMX
+ * client. No external service is involved either way.
+ */
+public class SecurityMetrics implements SecurityMetricsMXBean {
+
+    public static final String DEFAULT_OBJECT_NAME = "com.udacity.security:type=SecurityMetrics";
+
+    private final LongAdder alarmTransitions = new LongAdder();
+    private final LongAdder alarmsRaised = new LongAdder();
+    private final LongAdder armingTransitions = new LongAdder();
+    private final LongAdder sensorActivations = new LongAdder();
+    private final LongAdder sensorDeactivations = new LongAdder();
+    private final LongSupplier listenerDispatches;
+
+    private final LatencyHistogram processImageLatency = new LatencyHistogram();
+    private final LatencyHistogram imageServiceLatency = new LatencyHistogram();
+    private final LatencyHistogram repositoryWriteLatency = new LatencyHistogram();
+
+    private ObjectName registeredName;
+
+    /**
+     * @param listenerDispatches Reads the number of status events handed to listeners, which the
+     * event bus counts already
+     */
+    public SecurityMetrics(LongSupplier listenerDispatches) {
+        this.listenerDispatches = listenerDispatches;
+    }
+
+    public void recordAlarmTransition(AlarmStatus to) {
+        alarmTransitions.increment();
+        if (to == AlarmStatus.ALARM) {
+            alarmsRaised.increment();
+        }
+    }
+
+    public void recordArmingTransition() {
+        armingTransitions.increment();
+    }
+
+    public void recordSensorActivation() {
+        sensorActivations.increment();
+    }
+
+    public void recordSensorDeactivations(int count) {
+        sensorDeactivations.add(count);
+    }
+
+    public void recordProcessImage(long nanos) {
+        processImageLatency.record(nanos);
+    }
+
+    public void recordImageService(long nanos) {
+        imageServiceLatency.record(nanos);
+    }
+
+    public void recordRepositoryWrite(long nanos) {
+        repositoryWriteLatency.record(nanos);
+    }
+
+    @Override
+    public long getAlarmTransitionCount() {
+        return alarmTransitions.sum();
+    }
+
+    @Override
+    public long getAlarmsRaisedCount() {
+        return alarmsRaised.sum();
+    }
+
+    @Override
+    public long getArmingTransitionCount() {
+        return armingTransitions.sum();
+    }
+
+    @Override
+    public long getSensorActivationCount() {
+        return sensorActivations.sum();
+    }
+
+    @Override
+    public long getSensorDeactivationCount() {
+        return sensorDeactivations.sum();
+    }
+
+    @Override
+    public long getListenerDispatchCount() {
+        return listenerDispatches.getAsLong();
+    }
+
+    @Override
+    public LatencySnapshot getProcessImageLatency() {
+        return processImageLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getImageServiceLatency() {
+        return imageServiceLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getRepositoryWriteLatency() {
+        return repositoryWriteLatency.snapshot();
+    }
+
+    @Override
+    public void resetLatencies() {
+        processImageLatency.reset();
+        imageServiceLatency.reset();
+        repositoryWriteLatency.reset();
+    }
+
+    /**
+     * Publishes these metrics on the platform MBean server under {@link #DEFAULT_OBJECT_NAME}.
+     */
+    public void register() {
+        register(DEFAULT_OBJECT_NAME);
+    }
+
+    /**
+     * Publishes these metrics on the platform MBean server, for example under a name of its own for
+     * each of several services in one JVM.
+     * @throws IllegalStateException if the name is taken or invalid
+     */
+    public synchronized void register(String objectName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(objectName);
+            server.registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register security metrics as " + objectName, e);
+        }
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if they were registered.
+     */
+    public synchronized void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            //already gone
+        }
+        registeredName = null;
+    }
+}
@@ -0,0 +1,48 @@
+package com.udacity.security.metrics;
+
+/**
+ * Counters and latencies of a security service, as seen over JMX.
+ */
+public interface SecurityMetricsMXBean {
+
+    /**
+     * @return number of changes of the alarm status
+     */
+    long getAlarmTransitionCount();
+
+    /**
+     * @return number of times the alarm went off
+     */
+    long getAlarmsRaisedCount();
+
+    /**
+     * @return number of changes of the arming status
+     */
+    long getArmingTransitionCount();
+
+    /**
+     * @return number of sensors that went from inactive to active
+     */
+    long getSensorActivationCount();
+
+    /**
+     * @return number of sensors that went from active to inactive, including those reset by arming
+     */
+    long getSensorDeactivationCount();
+
+    /**
+     * @return number of status events handed to a listener
+     */
+    long getListenerDispatchCount();
+
+    LatencySnapshot getProcessImageLatency();
+
+    LatencySnapshot getImageServiceLatency();
+
+    LatencySnapshot getRepositoryWriteLatency();
+
+    /**
+     * Starts all latency histograms over. Counters keep counting.
+     */
+    void resetLatencies();
+}
@@ -0,0 +1,32 @@
+package com.udacity.security.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a sensor being activated or deactivated. Its duration covers storing
+ * the sensor and updating the alarm.
+ */
+@Name("com.udacity.security.SensorStatusChange")
+@Label("Sensor Status Change")
+@Category({"Catpoint", "Sensors"})
+@Description("A sensor was activated or deactivated")
+public class SensorStatusChangeEvent extends jdk.jfr.Event {
+
+    @Label("Sensor Id")
+    public String sensorId;
+
+    @Label("Sensor Name")
+    public String sensorName;
+
+    @Label("Sensor Type")
+    public String sensorType;
+
+    @Label("Was Active")
+    public boolean wasActive;
+
+    @Label("Active")
+    public boolean active;
+}
@@ -0,0 +1,134 @@
+package com.udacity.security.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters and latency histograms of one shard of a premises host. Only the shard's thread records
+ * completions, but submissions and rejections come from any thread, so recording never blocks.
+ * Like {@link SecurityMetrics} they can be read directly or published as an MXBean.
+ */
+public class ShardMetrics implements ShardMetricsMXBean {
+
+    private final IntSupplier queueDepth;
+    private final IntSupplier premisesCount;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private final LatencyHistogram queueWaitLatency = new LatencyHistogram();
+    private final LatencyHistogram taskLatency = new LatencyHistogram();
+
+    private ObjectName registeredName;
+
+    /**
+     * @param queueDepth Reads the number of tasks waiting, which the shard's queue knows already
+     * @param premisesCount Reads the number of premises on the shard
+     */
+    public ShardMetrics(IntSupplier queueDepth, IntSupplier premisesCount) {
+        this.queueDepth = queueDepth;
+        this.premisesCount = premisesCount;
+    }
+
+    public void recordSubmitted() {
+        submitted.increment();
+    }
+
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * @param queueWaitNanos Time from submission until the task started
+     * @param taskNanos Time the task took once started
+     * @param failure True if the task ended with an exception
+     */
+    public void recordCompleted(long queueWaitNanos, long taskNanos, boolean failure) {
+        completed.increment();
+        if (failure) {
+            failed.increment();
+        }
+        queueWaitLatency.record(queueWaitNanos);
+        taskLatency.record(taskNanos);
+    }
+
+    @Override
+    public int getPremisesCount() {
+        return premisesCount.getAsInt();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public LatencySnapshot getQueueWaitLatency() {
+        return queueWaitLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getTaskLatency() {
+        return taskLatency.snapshot();
+    }
+
+    @Override
+    public void resetLatencies() {
+        queueWaitLatency.reset();
+        taskLatency.reset();
+    }
+
+    /**
+     * Publishes these metrics on the platform MBean server.
+     * @throws IllegalStateException if the name is taken or invalid
+     */
+    public synchronized void register(String objectName) {
+        try {
+            ObjectName name = new ObjectName(objectName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register shard metrics as " + objectName, e);
+        }
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if they were registered.
+     */
+    public synchronized void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            //already gone
+        }
+        registeredName = null;
+    }
+}
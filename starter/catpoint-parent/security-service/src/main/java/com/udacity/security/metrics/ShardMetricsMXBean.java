@@ -0,0 +1,53 @@
+package com.udacity.security.metrics;
+
+/**
+ * Load of one shard of a premises host, as seen over JMX. Throughput is the change in
+ * {@link #getCompletedCount()} between two reads.
+ */
+public interface ShardMetricsMXBean {
+
+    /**
+     * @return number of premises assigned to the shard so far
+     */
+    int getPremisesCount();
+
+    /**
+     * @return number of tasks waiting for the shard's thread
+     */
+    int getQueueDepth();
+
+    /**
+     * @return number of tasks submitted to the shard, including rejected ones
+     */
+    long getSubmittedCount();
+
+    /**
+     * @return number of tasks the shard's thread has run, including failed ones
+     */
+    long getCompletedCount();
+
+    /**
+     * @return number of tasks that failed with an exception
+     */
+    long getFailedCount();
+
+    /**
+     * @return number of tasks turned away because the shard's queue was full
+     */
+    long getRejectedCount();
+
+    /**
+     * @return time from submission until the shard's thread started a task
+     */
+    LatencySnapshot getQueueWaitLatency();
+
+    /**
+     * @return time the shard's thread spent on a task
+     */
+    LatencySnapshot getTaskLatency();
+
+    /**
+     * Starts all latency histograms over. Counters keep counting.
+     */
+    void resetLatencies();
+}
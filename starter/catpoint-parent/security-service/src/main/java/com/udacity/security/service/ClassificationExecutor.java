@@ -0,0 +1,197 @@
+package com.udacity.security.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor for image classifications. At most {@code maxConcurrency} classifications run
+ * at once and at most {@code queueCapacity} wait for a free slot. When the queue is full a new
+ * classification is either rejected, or it replaces the oldest waiting one, depending on the
+ * {@link OverflowPolicy}. Either way the future of the classification that lost is completed
+ * exceptionally, so callers never wait forever.
+ *
+ * Time spent waiting in the queue and time spent classifying are measured separately.
+ */
+public class ClassificationExecutor implements AutoCloseable {
+
+    public enum OverflowPolicy {
+        /** Fail the new classification with a {@link RejectedExecutionException}. */
+        REJECT,
+        /** Cancel the oldest waiting classification in favour of the new one. */
+        DROP_OLDEST
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final OverflowPolicy overflowPolicy;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final AtomicLong totalServiceNanos = new AtomicLong();
+    private final AtomicLong maxServiceNanos = new AtomicLong();
+
+    /**
+     * @param maxConcurrency Maximum number of classifications running at the same time
+     * @param queueCapacity Maximum number of classifications waiting to run
+     * @param overflowPolicy What to do with a classification that arrives while the queue is full
+     */
+    public ClassificationExecutor(int maxConcurrency, int queueCapacity, OverflowPolicy overflowPolicy) {
+        if (maxConcurrency < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("maxConcurrency and queueCapacity must be at least 1");
+        }
+        this.overflowPolicy = overflowPolicy;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "image-classification-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                (r, executor) -> overflow((Job<?>) r));
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues a classification.
+     * @return future completed with the classification's result, or exceptionally if the
+     * classification failed, was rejected or was dropped
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> classification) {
+        Job<T> job = new Job<>(classification);
+        submittedCount.incrementAndGet();
+        pool.execute(job);
+        return job.future;
+    }
+
+    private void overflow(Job<?> job) {
+        if (pool.isShutdown()) {
+            rejectedCount.incrementAndGet();
+            job.future.completeExceptionally(new RejectedExecutionException("Classification executor is shut down"));
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+            Runnable oldest = pool.getQueue().poll();
+            if (oldest != null) {
+                droppedCount.incrementAndGet();
+                ((Job<?>) oldest).future.completeExceptionally(new CancellationException("Dropped in favour of a newer image"));
+            }
+            pool.execute(job);
+        } else {
+            rejectedCount.incrementAndGet();
+            job.future.completeExceptionally(new RejectedExecutionException("Too many images waiting for classification"));
+        }
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return number of classifications waiting for a free slot
+     */
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * @return number of classifications running right now
+     */
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    /**
+     * @return average time from submission until a classification started, in nanoseconds
+     */
+    public long getAverageQueueWaitNanos() {
+        long completed = completedCount.get();
+        return completed == 0 ? 0 : totalQueueWaitNanos.get() / completed;
+    }
+
+    public long getMaxQueueWaitNanos() {
+        return maxQueueWaitNanos.get();
+    }
+
+    /**
+     * @return average time a classification took once started, in nanoseconds
+     */
+    public long getAverageServiceNanos() {
+        long completed = completedCount.get();
+        return completed == 0 ? 0 : totalServiceNanos.get() / completed;
+    }
+
+    public long getMaxServiceNanos() {
+        return maxServiceNanos.get();
+    }
+
+    /**
+     * Stops accepting classifications. Classifications that already started are allowed to finish.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private final class Job<T> implements Runnable {
+        private final Supplier<T> classification;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long submittedNanos = System.nanoTime();
+
+        private Job(Supplier<T> classification) {
+            this.classification = classification;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                return;
+            }
+            long started = System.nanoTime();
+            T result = null;
+            Throwable failure = null;
+            try {
+                result = classification.get();
+            } catch (Throwable t) {
+                failure = t;
+            }
+            long finished = System.nanoTime();
+            record(started - submittedNanos, finished - started);
+            if (failure == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void record(long queueWaitNanos, long serviceNanos) {
+        completedCount.incrementAndGet();
+        totalQueueWaitNanos.addAndGet(queueWaitNanos);
+        maxQueueWaitNanos.accumulateAndGet(queueWaitNanos, Math::max);
+        totalServiceNanos.addAndGet(serviceNanos);
+        maxServiceNanos.accumulateAndGet(serviceNanos, Math::max);
+    }
+}
@@ -0,0 +1,178 @@
+package com.udacity.security.service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivers each image a camera writes into a directory, once per completed write. Writing a file
+ * raises a creation event and any number of modification events, so a file is only read once no
+ * event has arrived for it for the settle time, and only if its size or modification time differ
+ * from when it was last delivered. Cameras that write to a temporary name, such as
+ * {@code frame.jpg.tmp}, and rename the file when done never have a partial frame read; for other
+ * cameras the settle time must be longer than the pauses within one write.
+ */
+public class DirectoryWatchFrameSource implements FrameSource {
+
+    private static final Logger log = Logger.getLogger(DirectoryWatchFrameSource.class.getName());
+
+    public static final Duration DEFAULT_SETTLE_TIME = Duration.ofMillis(200);
+
+    private final Path directory;
+    private final long settleNanos;
+    private final WatchService watchService;
+    private Thread thread;
+
+    public DirectoryWatchFrameSource(Path directory) {
+        this(directory, DEFAULT_SETTLE_TIME);
+    }
+
+    /**
+     * @param settleTime How long a file must go without events before it is read
+     */
+    public DirectoryWatchFrameSource(Path directory, Duration settleTime) {
+        if (settleTime.isNegative()) {
+            throw new IllegalArgumentException("settleTime must not be negative");
+        }
+        this.directory = directory;
+        this.settleNanos = settleTime.toNanos();
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to watch " + directory, ioe);
+        }
+    }
+
+    @Override
+    public synchronized void start(Consumer<BufferedImage> sink) {
+        if (thread != null) {
+            throw new IllegalStateException("Frame source already started");
+        }
+        thread = new Thread(() -> watch(sink), "frame-source-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Size and modification time of a file, which tell one write of it from the next.
+     */
+    private record Version(long size, FileTime modified) { }
+
+    private void watch(Consumer<BufferedImage> sink) {
+        //files with recent events, by the time of their last event; only used on this thread
+        Map<Path, Long> pending = new HashMap<>();
+        Map<Path, Version> delivered = new HashMap<>();
+        try {
+            while (true) {
+                WatchKey key = pending.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(Math.max(settleNanos, 1), TimeUnit.NANOSECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            continue;
+                        }
+                        Path file = directory.resolve((Path) event.context());
+                        if (!isImage(file)) {
+                            continue;
+                        }
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                            pending.remove(file);
+                            delivered.remove(file);
+                        } else {
+                            pending.put(file, System.nanoTime());
+                        }
+                    }
+                    if (!key.reset()) {
+                        log.warning("Stopped watching " + directory + ", it is no longer accessible");
+                        return;
+                    }
+                }
+                deliverSettled(pending, delivered, sink);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //closed
+        }
+    }
+
+    private void deliverSettled(Map<Path, Long> pending, Map<Path, Version> delivered, Consumer<BufferedImage> sink) {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Long>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Path, Long> entry = entries.next();
+            if (now - entry.getValue() < settleNanos) {
+                continue;
+            }
+            entries.remove();
+            Path file = entry.getKey();
+            Version version = version(file);
+            if (version == null || version.equals(delivered.get(file))) {
+                continue;
+            }
+            BufferedImage frame = read(file);
+            if (frame != null) {
+                delivered.put(file, version);
+                sink.accept(frame);
+            }
+        }
+    }
+
+    private static Version version(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new Version(attributes.size(), attributes.lastModifiedTime());
+        } catch (IOException ioe) {
+            //deleted or renamed since the event
+            return null;
+        }
+    }
+
+    static boolean isImage(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png")
+                || name.endsWith(".bmp") || name.endsWith(".gif");
+    }
+
+    static BufferedImage read(Path file) {
+        try {
+            return ImageIO.read(file.toFile());
+        } catch (IOException ioe) {
+            log.log(Level.FINE, "Skipping unreadable frame " + file, ioe);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            watchService.close();
+        } catch (IOException ioe) {
+            log.log(Level.WARNING, "Unable to close watch service for " + directory, ioe);
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.udacity.security.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Replays the images in a folder, in file name order, at a fixed frame rate. Useful for feeding
+ * recorded footage through the system as if a camera were delivering it.
+ */
+public class FolderReplayFrameSource implements FrameSource {
+
+    private final List<Path> files;
+    private final long periodNanos;
+    private final boolean loop;
+    private ScheduledExecutorService scheduler;
+    private int next;
+
+    /**
+     * @param folder Folder holding the frames
+     * @param fps Frames delivered per second
+     * @param loop Whether to start over after the last frame
+     */
+    public FolderReplayFrameSource(Path folder, double fps, boolean loop) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("fps must be positive");
+        }
+        try (Stream<Path> listing = Files.list(folder)) {
+            this.files = listing.filter(DirectoryWatchFrameSource::isImage).sorted().collect(Collectors.toList());
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to list " + folder, ioe);
+        }
+        this.periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / fps);
+        this.loop = loop;
+    }
+
+    /**
+     * @return number of frames in one pass over the folder
+     */
+    public int getFrameCount() {
+        return files.size();
+    }
+
+    @Override
+    public synchronized void start(Consumer<BufferedImage> sink) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Frame source already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "frame-source-replay");
+            t.setDaemon(true);
+            return t;
+        });
+        if (!files.isEmpty()) {
+            scheduler.scheduleAtFixedRate(() -> deliverNext(sink), 0, periodNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void deliverNext(Consumer<BufferedImage> sink) {
+        if (next == files.size()) {
+            if (!loop) {
+                scheduler.shutdown();
+                return;
+            }
+            next = 0;
+        }
+        BufferedImage frame = DirectoryWatchFrameSource.read(files.get(next++));
+        if (frame != null) {
+            sink.accept(frame);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
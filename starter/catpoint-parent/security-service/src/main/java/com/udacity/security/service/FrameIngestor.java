@@ -0,0 +1,214 @@
+package com.udacity.security.service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Feeds frames from a {@link FrameSource} into {@link SecurityService#processImage(BufferedImage)}
+ * at no more than a target frame rate. Frames wait in a small bounded queue; when it is full the
+ * oldest frame is dropped, since a stale frame is worth less than a current one and letting the
+ * queue grow would only add latency.
+ *
+ * Frames in, classified, dropped and failed are counted, and their rates over the last full second
+ * are available for display. A frame whose classification or listener throws is logged and counted
+ * as failed, and ingestion carries on with the next frame.
+ */
+public class FrameIngestor implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(FrameIngestor.class.getName());
+
+    private final SecurityService securityService;
+    private final FrameSource source;
+    private final long minIntervalNanos;
+    private final int queueCapacity;
+    private final ArrayDeque<BufferedImage> queue = new ArrayDeque<>();
+    private volatile Consumer<BufferedImage> frameListener = frame -> { };
+    private Thread thread;
+    private boolean closed;
+
+    private final RateMeter in = new RateMeter();
+    private final RateMeter classified = new RateMeter();
+    private final RateMeter dropped = new RateMeter();
+    private final RateMeter failed = new RateMeter();
+
+    /**
+     * @param targetFps Maximum number of frames classified per second
+     * @param queueCapacity Maximum number of frames waiting to be classified
+     */
+    public FrameIngestor(SecurityService securityService, FrameSource source, double targetFps, int queueCapacity) {
+        if (targetFps <= 0) {
+            throw new IllegalArgumentException("targetFps must be positive");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be at least 1");
+        }
+        this.securityService = securityService;
+        this.source = source;
+        this.minIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / targetFps);
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @param frameListener Called with each frame after it was classified, for example to display it
+     */
+    public void setFrameListener(Consumer<BufferedImage> frameListener) {
+        this.frameListener = frameListener;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Ingestor already started");
+        }
+        thread = new Thread(this::classifyFrames, "frame-ingestor");
+        thread.setDaemon(true);
+        thread.start();
+        source.start(this::offer);
+    }
+
+    private void offer(BufferedImage frame) {
+        in.record();
+        synchronized (queue) {
+            if (queue.size() >= queueCapacity) {
+                queue.pollFirst();
+                dropped.record();
+            }
+            queue.addLast(frame);
+            queue.notifyAll();
+        }
+    }
+
+    private void classifyFrames() {
+        try {
+            long nextStart = System.nanoTime();
+            while (true) {
+                long wait = nextStart - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                BufferedImage frame;
+                synchronized (queue) {
+                    while (queue.isEmpty()) {
+                        queue.wait();
+                    }
+                    frame = queue.pollFirst();
+                }
+                nextStart = System.nanoTime() + minIntervalNanos;
+                try {
+                    securityService.processImage(frame);
+                    frameListener.accept(frame);
+                    classified.record();
+                } catch (RuntimeException e) {
+                    //an image service or listener failure must not stop the only ingest thread
+                    failed.record();
+                    log.log(Level.WARNING, "Unable to process frame, continuing with the next one", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            //closed
+        }
+    }
+
+    public long getFramesIn() {
+        return in.total();
+    }
+
+    public long getFramesClassified() {
+        return classified.total();
+    }
+
+    public long getFramesDropped() {
+        return dropped.total();
+    }
+
+    /**
+     * @return frames whose classification or frame listener threw
+     */
+    public long getFramesFailed() {
+        return failed.total();
+    }
+
+    /**
+     * @return frames delivered by the source during the last full second
+     */
+    public long getInFps() {
+        return in.lastSecond();
+    }
+
+    /**
+     * @return frames classified during the last full second
+     */
+    public long getClassifiedFps() {
+        return classified.lastSecond();
+    }
+
+    /**
+     * @return frames dropped during the last full second
+     */
+    public long getDroppedFps() {
+        return dropped.lastSecond();
+    }
+
+    /**
+     * @return frames that failed during the last full second
+     */
+    public long getFailedFps() {
+        return failed.lastSecond();
+    }
+
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        source.close();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Counts events in whole-second buckets and keeps the previous bucket for reporting.
+     */
+    private static final class RateMeter {
+        private long total;
+        private long currentSecond = -1;
+        private long currentCount;
+        private long previousCount;
+
+        private synchronized void record() {
+            roll(System.nanoTime());
+            currentCount++;
+            total++;
+        }
+
+        private synchronized long lastSecond() {
+            roll(System.nanoTime());
+            return previousCount;
+        }
+
+        private synchronized long total() {
+            return total;
+        }
+
+        private void roll(long now) {
+            long second = TimeUnit.NANOSECONDS.toSeconds(now);
+            if (second == currentSecond) {
+                return;
+            }
+            previousCount = second == currentSecond + 1 ? currentCount : 0;
+            currentSecond = second;
+            currentCount = 0;
+        }
+    }
+}
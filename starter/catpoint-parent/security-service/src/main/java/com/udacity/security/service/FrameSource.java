@@ -0,0 +1,23 @@
+package com.udacity.security.service;
+
+import java.awt.image.BufferedImage;
+import java.util.function.Consumer;
+
+/**
+ * Continuous supply of camera frames, such as a folder a camera writes into. A source delivers
+ * frames on its own thread from the moment it is started until it is closed.
+ */
+public interface FrameSource extends AutoCloseable {
+
+    /**
+     * Starts delivering frames. A source can only be started once.
+     * @param sink Receives each frame; it should return quickly, since the source waits for it
+     */
+    void start(Consumer<BufferedImage> sink);
+
+    /**
+     * Stops delivering frames and releases the source's thread and files.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,201 @@
+package com.udacity.security.service;
+
+import com.udacity.security.data.ArmingStatus;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Skips the classification of camera frames that look just like the last classified frame. Each
+ * frame is reduced to a small grayscale grid and compared cell by cell with the grid of the last
+ * classified frame. If the share of cells whose brightness changed noticeably stays below the
+ * threshold for the current arming status, the previous verdict is reused.
+ *
+ * Frames are sampled straight from their raster into grids that are recycled rather than
+ * reallocated, so a gated frame allocates nothing. The grids are only allocated with the first
+ * frame, which keeps the gates of premises without a camera small. A frame that passes the gate
+ * takes its grid with it while it is classified, and a spare grid takes its place.
+ *
+ * The gate compares frames of one camera in sequence. Only the sampling and bookkeeping are
+ * synchronized; the classifier runs outside the lock, so a slow classification holds up neither the
+ * next frame nor the counters. If frames are classified concurrently, the most recent frame that
+ * passed the gate becomes the reference, whichever classification finishes last.
+ */
+public class MotionGate {
+
+    private static final int GRID_WIDTH = 32;
+    private static final int GRID_HEIGHT = 24;
+    //samples per cell along each axis
+    private static final int SAMPLES = 2;
+    //brightness difference, out of 255, below which a cell counts as unchanged
+    private static final int CELL_TOLERANCE = 12;
+
+    private final EnumMap<ArmingStatus, Double> thresholds;
+    private int[] reference;
+    private int[] current;
+    private int[] spare;
+    private boolean hasReference;
+    private boolean lastVerdict;
+    //number of the last frame handed to the classifier, and of the one that set the reference
+    private long classifiedSequence;
+    private long referenceSequence;
+
+    private long frameCount;
+    private long skippedCount;
+
+    /**
+     * Creates a gate that reclassifies when 2% of the frame changed while armed, or 10% while disarmed.
+     */
+    public MotionGate() {
+        this(defaultThresholds());
+    }
+
+    /**
+     * @param thresholds Share of the frame, between 0 and 1, that must change before a frame is
+     * classified again, per arming status. 0 classifies every frame.
+     */
+    public MotionGate(Map<ArmingStatus, Double> thresholds) {
+        this.thresholds = new EnumMap<>(ArmingStatus.class);
+        for (ArmingStatus status : ArmingStatus.values()) {
+            Double threshold = thresholds.get(status);
+            if (threshold == null || threshold < 0 || threshold > 1) {
+                throw new IllegalArgumentException("A threshold between 0 and 1 is required for " + status);
+            }
+            this.thresholds.put(status, threshold);
+        }
+    }
+
+    private static Map<ArmingStatus, Double> defaultThresholds() {
+        Map<ArmingStatus, Double> thresholds = new EnumMap<>(ArmingStatus.class);
+        thresholds.put(ArmingStatus.DISARMED, 0.10);
+        thresholds.put(ArmingStatus.ARMED_HOME, 0.02);
+        thresholds.put(ArmingStatus.ARMED_AWAY, 0.02);
+        return thresholds;
+    }
+
+    /**
+     * Returns the previous verdict if the frame has not changed enough since the last classified
+     * frame, and otherwise classifies it and remembers it as the new reference.
+     * @param frame Camera frame; frames that cannot be sampled are always classified
+     * @param armingStatus Current arming status, which selects the threshold
+     * @param classifier Classifies a frame that passes the gate
+     * @return true if the frame is considered to contain a cat
+     */
+    public boolean classify(BufferedImage frame, ArmingStatus armingStatus, Predicate<BufferedImage> classifier) {
+        int[] grid;
+        long sequence;
+        synchronized (this) {
+            frameCount++;
+            if (frame == null || frame.getWidth() < GRID_WIDTH || frame.getHeight() < GRID_HEIGHT) {
+                //frames classified before this one must not become the reference either
+                hasReference = false;
+                referenceSequence = ++classifiedSequence;
+                grid = null;
+                sequence = 0;
+            } else {
+                if (current == null) {
+                    reference = new int[GRID_WIDTH * GRID_HEIGHT];
+                    current = new int[GRID_WIDTH * GRID_HEIGHT];
+                }
+                sample(frame, current);
+                if (hasReference && changedShare(reference, current) < thresholds.get(armingStatus)) {
+                    skippedCount++;
+                    return lastVerdict;
+                }
+                grid = current;
+                current = spare != null ? spare : new int[GRID_WIDTH * GRID_HEIGHT];
+                spare = null;
+                sequence = ++classifiedSequence;
+            }
+        }
+        boolean verdict = classifier.test(frame);
+        if (grid != null) {
+            updateReference(grid, sequence, verdict);
+        }
+        return verdict;
+    }
+
+    private synchronized void updateReference(int[] grid, long sequence, boolean verdict) {
+        if (sequence <= referenceSequence) {
+            //a later frame or a reset got there first
+            spare = grid;
+            return;
+        }
+        spare = reference;
+        reference = grid;
+        referenceSequence = sequence;
+        hasReference = true;
+        lastVerdict = verdict;
+    }
+
+    /**
+     * Forgets the reference frame, so the next frame is classified whatever it looks like.
+     */
+    public synchronized void reset() {
+        hasReference = false;
+        referenceSequence = classifiedSequence;
+    }
+
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    public synchronized long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * @return share of frames that reused the previous verdict, between 0 and 1
+     */
+    public synchronized double getSkipRatio() {
+        return frameCount == 0 ? 0 : (double) skippedCount / frameCount;
+    }
+
+    private static double changedShare(int[] before, int[] after) {
+        int changed = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (Math.abs(before[i] - after[i]) > CELL_TOLERANCE) {
+                changed++;
+            }
+        }
+        return (double) changed / before.length;
+    }
+
+    /**
+     * Averages the brightness of a few evenly spaced pixels per grid cell. Rasters with direct or
+     * component colour models are read sample by sample, which allocates nothing; anything else,
+     * such as an indexed palette, goes through {@link BufferedImage#getRGB(int, int)}.
+     */
+    private static void sample(BufferedImage frame, int[] grid) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        Raster raster = frame.getRaster();
+        boolean direct = frame.getColorModel() instanceof DirectColorModel || frame.getColorModel() instanceof ComponentColorModel;
+        boolean gray = direct && raster.getNumBands() < 3;
+        for (int cy = 0; cy < GRID_HEIGHT; cy++) {
+            for (int cx = 0; cx < GRID_WIDTH; cx++) {
+                int sum = 0;
+                for (int sy = 0; sy < SAMPLES; sy++) {
+                    int y = (cy * SAMPLES + sy) * height / (GRID_HEIGHT * SAMPLES);
+                    for (int sx = 0; sx < SAMPLES; sx++) {
+                        int x = (cx * SAMPLES + sx) * width / (GRID_WIDTH * SAMPLES);
+                        if (gray) {
+                            sum += raster.getSample(x, y, 0) * 1000;
+                        } else if (direct) {
+                            sum += 299 * raster.getSample(x, y, 0) + 587 * raster.getSample(x, y, 1) + 114 * raster.getSample(x, y, 2);
+                        } else {
+                            int rgb = frame.getRGB(x, y);
+                            sum += 299 * ((rgb >> 16) & 0xff) + 587 * ((rgb >> 8) & 0xff) + 114 * (rgb & 0xff);
+                        }
+                    }
+                }
+                grid[cy * GRID_WIDTH + cx] = sum / (1000 * SAMPLES * SAMPLES);
+            }
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.udacity.security.service;
+
+import com.udacity.image.service.ImageService;
+import com.udacity.security.application.StatusListener;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.data.SecurityRepository;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.metrics.SecurityMetrics;
+import com.udacity.security.metrics.ShardMetrics;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hosts the security systems of many premises in one process. Every premises has a
+ * {@link SecurityService} and {@link SecurityRepository} of its own, so the alarm and arming
+ * status of one premises never affect another. Premises are partitioned by id across a fixed
+ * number of shards. A shard owns the services of its premises and runs every task for them, in
+ * submission order, on its single thread. Shards share no state, so they never wait for each other,
+ * and a busy premises can only delay the premises on its own shard.
+ *
+ * A premises is created on its shard's thread when the first task for it arrives. Image
+ * classification would hold up the whole shard, so frames are handed to a
+ * {@link ClassificationExecutor} shared by all premises. The verdict is applied back on the
+ * premises' shard, like every other change to its state.
+ *
+ * Every shard has a bounded queue. A task that finds it full fails with a
+ * {@link RejectedExecutionException} instead of piling up. Queue depth, throughput and task latency
+ * are recorded per shard in {@link ShardMetrics}, and the services of one shard record into one
+ * {@link SecurityMetrics} rather than one each.
+ */
+public class PremisesHost implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(PremisesHost.class.getName());
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    public static final String SHARD_OBJECT_NAME = "com.udacity.security:type=PremisesShard,shard=";
+    public static final String SERVICE_OBJECT_NAME = "com.udacity.security:type=SecurityMetrics,shard=";
+
+    private final ImageService imageService;
+    private final Function<String, SecurityRepository> repositories;
+    private final ClassificationExecutor classificationExecutor;
+    private final ExecutorService dispatchExecutor;
+    private final Shard[] shards;
+
+    /**
+     * Creates a host with a shard per core, keeping every premises in a
+     * {@link CompactSecurityRepositoryImpl}.
+     */
+    public PremisesHost(ImageService imageService) {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, imageService,
+                premisesId -> new CompactSecurityRepositoryImpl());
+    }
+
+    /**
+     * @param shardCount Number of shards, each with a thread of its own; usually the number of cores
+     * @param queueCapacity Maximum number of tasks waiting per shard
+     * @param repositories Opens the repository of a premises when it is first used, on its shard's
+     * thread. Repositories that are {@link AutoCloseable} are closed with the host.
+     */
+    public PremisesHost(int shardCount, int queueCapacity, ImageService imageService,
+                        Function<String, SecurityRepository> repositories) {
+        if (shardCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("shardCount and queueCapacity must be at least 1");
+        }
+        this.imageService = imageService;
+        this.repositories = repositories;
+        this.classificationExecutor = new ClassificationExecutor(shardCount, queueCapacity,
+                ClassificationExecutor.OverflowPolicy.REJECT);
+        //listeners of all premises share the dispatch threads instead of a pool per premises
+        this.dispatchExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "status-event-dispatch");
+            t.setDaemon(true);
+            return t;
+        });
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+        }
+    }
+
+    /**
+     * Runs a task against the security service of a premises on the premises' shard.
+     * @param task Runs on the shard's thread, so it must not block
+     * @return future completed with the task's result, or exceptionally if the task failed or the
+     * shard's queue was full
+     */
+    public <T> CompletableFuture<T> submit(String premisesId, Function<SecurityService, T> task) {
+        Objects.requireNonNull(premisesId);
+        Shard shard = shards[shardOf(premisesId)];
+        return shard.submit(() -> task.apply(shard.service(premisesId)));
+    }
+
+    /**
+     * Changes the activation status of a sensor of a premises.
+     * @return future completed with false if the premises has no sensor with the given id
+     */
+    public CompletableFuture<Boolean> changeSensorActivationStatus(String premisesId, UUID sensorId, boolean active) {
+        return submit(premisesId, service -> {
+            Sensor sensor = service.getSensor(sensorId);
+            if (sensor == null) {
+                return false;
+            }
+            return service.changeSensorActivationStatus(sensor, active);
+        });
+    }
+
+    /**
+     * Classifies a camera frame of a premises and updates its alarm status accordingly.
+     * @return future completed with true if the frame contains a cat; see
+     * {@link SecurityService#processImageAsync(BufferedImage)} for when it completes exceptionally
+     */
+    public CompletableFuture<Boolean> processImage(String premisesId, BufferedImage image) {
+        Objects.requireNonNull(premisesId);
+        Shard shard = shards[shardOf(premisesId)];
+        return shard.submit(() -> shard.service(premisesId).processImageAsync(image, shard::execute))
+                .thenCompose(Function.identity());
+    }
+
+    public CompletableFuture<Void> setArmingStatus(String premisesId, ArmingStatus armingStatus) {
+        return submit(premisesId, service -> {
+            service.setArmingStatus(armingStatus);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> addSensor(String premisesId, Sensor sensor) {
+        return submit(premisesId, service -> {
+            service.addSensor(sensor);
+            return null;
+        });
+    }
+
+    public CompletableFuture<SecurityState> getState(String premisesId) {
+        return submit(premisesId, SecurityService::getState);
+    }
+
+    /**
+     * Registers a listener for the status updates of one premises.
+     */
+    public CompletableFuture<Void> addStatusListener(String premisesId, StatusListener statusListener) {
+        return submit(premisesId, service -> {
+            service.addStatusListener(statusListener);
+            return null;
+        });
+    }
+
+    /**
+     * @return number of the shard that runs the tasks of the given premises
+     */
+    public int shardOf(String premisesId) {
+        int h = premisesId.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @return number of premises created so far, across all shards
+     */
+    public int getPremisesCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.premises.size();
+        }
+        return count;
+    }
+
+    public ShardMetrics getShardMetrics(int shard) {
+        return shards[shard].metrics;
+    }
+
+    /**
+     * @return counters and latencies of the services of all premises on the given shard
+     */
+    public SecurityMetrics getServiceMetrics(int shard) {
+        return shards[shard].serviceMetrics;
+    }
+
+    /**
+     * Publishes the metrics of every shard on the platform MBean server, under
+     * {@link #SHARD_OBJECT_NAME} and {@link #SERVICE_OBJECT_NAME} followed by the shard number.
+     */
+    public void registerMetrics() {
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].metrics.register(SHARD_OBJECT_NAME + i);
+            shards[i].serviceMetrics.register(SERVICE_OBJECT_NAME + i);
+        }
+    }
+
+    /**
+     * Stops accepting tasks, runs the tasks already queued and closes the repositories.
+     */
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.metrics.unregister();
+            shard.serviceMetrics.unregister();
+            shard.executor.shutdown();
+        }
+        try {
+            for (Shard shard : shards) {
+                if (!shard.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warning("Premises shard did not finish its queued tasks");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Shard shard : shards) {
+            shard.closeRepositories();
+        }
+        classificationExecutor.close();
+        dispatchExecutor.shutdown();
+    }
+
+    private record Premises(SecurityRepository repository, SecurityService service) { }
+
+    private final class Shard {
+        private final ThreadPoolExecutor executor;
+        //written only on the shard's thread; other threads read it for metrics
+        private final Map<String, Premises> premises = new ConcurrentHashMap<>();
+        private final ShardMetrics metrics;
+        private final SecurityMetrics serviceMetrics;
+
+        private Shard(int number, int queueCapacity) {
+            this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    r -> {
+                        Thread t = new Thread(r, "premises-shard-" + number);
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    (r, e) -> reject((Task<?>) r));
+            this.metrics = new ShardMetrics(() -> executor.getQueue().size(), premises::size);
+            this.serviceMetrics = new SecurityMetrics(this::deliveredCount);
+        }
+
+        private <T> CompletableFuture<T> submit(Supplier<T> body) {
+            Task<T> task = new Task<>(body);
+            executor.execute(task);
+            return task.future;
+        }
+
+        /**
+         * Runs a body on the shard's thread, for callers that expect an {@link java.util.concurrent.Executor}.
+         * @throws RejectedExecutionException if the shard's queue is full or the host is closed
+         */
+        private void execute(Runnable body) {
+            Task<Void> task = new Task<>(() -> {
+                body.run();
+                return null;
+            });
+            executor.execute(task);
+            //a rejected task is failed on this thread, before execute returns
+            if (task.future.isCompletedExceptionally()
+                    && task.future.exceptionNow() instanceof RejectedExecutionException rejected) {
+                throw rejected;
+            }
+        }
+
+        private void reject(Task<?> task) {
+            metrics.recordRejected();
+            task.future.completeExceptionally(new RejectedExecutionException(executor.isShutdown()
+                    ? "Premises host is closed"
+                    : "Too many tasks waiting for premises shard"));
+        }
+
+        private SecurityService service(String premisesId) {
+            Premises existing = premises.get(premisesId);
+            if (existing != null) {
+                return existing.service();
+            }
+            SecurityRepository repository = repositories.apply(premisesId);
+            StatusEventBus statusEventBus = new StatusEventBus(dispatchExecutor, SwingUtilities::invokeLater,
+                    StatusEventBus.DEFAULT_QUEUE_CAPACITY);
+            SecurityService service = new SecurityService(repository, imageService, statusEventBus,
+                    classificationExecutor, new MotionGate(), serviceMetrics);
+            premises.put(premisesId, new Premises(repository, service));
+            return service;
+        }
+
+        private long deliveredCount() {
+            long count = 0;
+            for (Premises p : premises.values()) {
+                count += p.service().getStatusEventBus().getDeliveredCount();
+            }
+            return count;
+        }
+
+        private void closeRepositories() {
+            for (Premises p : premises.values()) {
+                if (p.repository() instanceof AutoCloseable closeable) {
+                    try {
+                        closeable.close();
+                    } catch (Exception e) {
+                        log.log(Level.WARNING, "Unable to close premises repository", e);
+                    }
+                }
+            }
+        }
+
+        private final class Task<T> implements Runnable {
+            private final Supplier<T> body;
+            private final CompletableFuture<T> future = new CompletableFuture<>();
+            private final long submittedNanos = System.nanoTime();
+
+            private Task(Supplier<T> body) {
+                this.body = body;
+                metrics.recordSubmitted();
+            }
+
+            @Override
+            public void run() {
+                long started = System.nanoTime();
+                T result = null;
+                Throwable failure = null;
+                try {
+                    result = body.get();
+                } catch (Throwable t) {
+                    failure = t;
+                }
+                metrics.recordCompleted(started - submittedNanos, System.nanoTime() - started, failure != null);
+                if (failure == null) {
+                    future.complete(result);
+                } else {
+                    future.completeExceptionally(failure);
+                }
+            }
+        }
+    }
+}
@@ -1,30 +1,116 @@
 package com.udacity.security.service;
 
-import com.udacity.image.service.FakeImageService;
+import com.udacity.image.service.ImageService;
 import com.udacity.security.application.StatusListener;
 import com.udacity.security.data.AlarmStatus;
 import com.udacity.security.data.ArmingStatus;
 import com.udacity.security.data.SecurityRepository;
 import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorActivation;
+import com.udacity.security.metrics.AlarmTransitionEvent;
+import com.udacity.security.metrics.ImageClassificationEvent;
+import com.udacity.security.metrics.ImageScanEvent;
+import com.udacity.security.metrics.SecurityMetrics;
+import com.udacity.security.metrics.SensorStatusChangeEvent;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 /**
  * Service that receives information about changes to the security system. Responsible for
  * forwarding updates to the repository and making any decisions about changing the system state.
+ *
+ * The service is safe to call from many threads at once. The alarm and arming status live in one
+ * immutable {@link SecurityState} that is replaced by compare-and-set, so concurrent sensor and
+ * image events never block each other while deciding on a transition. Only the write of a new
+ * state to the repository is serialized, and a state is never written over a newer one.
+ *
+ * Every added, removed, activated or deactivated sensor is announced to the listeners, which
+ * receive the changed sensors through {@link StatusListener#sensorStatusChanged(Collection)}.
+ *
+ * Transitions, sensor changes and the latency of image processing and repository writes are
+ * recorded in {@link SecurityMetrics}. The same hot paths emit flight recorder events, such as
+ * {@link AlarmTransitionEvent}, which cost next to nothing unless a recording enables them.
  */
 public class SecurityService {
 
-    private FakeImageService imageService;
+    //how a single event in a sensor batch affects the alarm
+    private static final byte STEP_ACTIVATED = 1;
+    private static final byte STEP_ALL_INACTIVE = 2;
+
+    //how sure the image service must be before an image counts as a cat
+    private static final float CAT_CONFIDENCE_THRESHOLD = 50.0f;
+
+    private ImageService imageService;
     private SecurityRepository securityRepository;
-    private Set<StatusListener> statusListeners = new HashSet<>();
+    private final StatusEventBus statusEventBus;
+    private final ClassificationExecutor classificationExecutor;
+    private final MotionGate motionGate;
+    private final SecurityMetrics metrics;
+
+    private final AtomicReference<SecurityState> state;
+    private final Object persistLock = new Object();
+    private SecurityState persistedState;
+
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
+        this(securityRepository, imageService, new StatusEventBus());
+    }
+
+    /**
+     * @param statusEventBus Delivers status changes to the registered listeners
+     */
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService, StatusEventBus statusEventBus) {
+        this(securityRepository, imageService, statusEventBus,
+                new ClassificationExecutor(2, 4, ClassificationExecutor.OverflowPolicy.DROP_OLDEST));
+    }
+
+    /**
+     * @param statusEventBus Delivers status changes to the registered listeners
+     * @param classificationExecutor Runs the classifications started by {@link #processImageAsync(BufferedImage)}
+     */
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService, StatusEventBus statusEventBus,
+                           ClassificationExecutor classificationExecutor) {
+        this(securityRepository, imageService, statusEventBus, classificationExecutor, new MotionGate());
+    }
 
-    public SecurityService(SecurityRepository securityRepository, FakeImageService imageService) {
+    /**
+     * @param statusEventBus Delivers status changes to the registered listeners
+     * @param classificationExecutor Runs the classifications started by {@link #processImageAsync(BufferedImage)}
+     * @param motionGate Decides which camera frames changed enough to be classified again
+     */
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService, StatusEventBus statusEventBus,
+                           ClassificationExecutor classificationExecutor, MotionGate motionGate) {
+        this(securityRepository, imageService, statusEventBus, classificationExecutor, motionGate,
+                new SecurityMetrics(statusEventBus::getDeliveredCount));
+    }
+
+    /**
+     * @param statusEventBus Delivers status changes to the registered listeners
+     * @param classificationExecutor Runs the classifications started by {@link #processImageAsync(BufferedImage)}
+     * @param motionGate Decides which camera frames changed enough to be classified again
+     * @param metrics Records the counters and latencies of this service; several services may share one
+     */
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService, StatusEventBus statusEventBus,
+                           ClassificationExecutor classificationExecutor, MotionGate motionGate, SecurityMetrics metrics) {
         this.securityRepository = securityRepository;
         this.imageService = imageService;
+        this.statusEventBus = statusEventBus;
+        this.classificationExecutor = classificationExecutor;
+        this.motionGate = motionGate;
+        this.metrics = metrics;
+        this.persistedState = new SecurityState(securityRepository.getAlarmStatus(), securityRepository.getArmingStatus());
+        this.state = new AtomicReference<>(persistedState);
     }
 
     /**
@@ -33,16 +119,35 @@ public class SecurityService {
      * @param armingStatus
      */
     public void setArmingStatus(ArmingStatus armingStatus) {
-        if (armingStatus == ArmingStatus.DISARMED) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
-            securityRepository.getSensors().forEach(sensor -> sensor.setActive(false));
-            securityRepository.setArmingStatus(armingStatus);
+        // Disarming and arming both start over with every sensor inactive
+        deactivateAllSensors();
+        transition(s -> s.with(armingStatus == ArmingStatus.DISARMED ? AlarmStatus.NO_ALARM : s.getAlarmStatus(), armingStatus));
+    }
+
+    /**
+     * Resets every active sensor to inactive. The active sensors are copied by the repository and
+     * then flipped by it in one step, since other threads may change or remove sensors meanwhile;
+     * a sensor removed in between is not stored again, and only sensors that were still active are
+     * reported as changed.
+     */
+    private void deactivateAllSensors() {
+        List<Sensor> active = securityRepository.getActiveSensors();
+        if (active.isEmpty()) {
             return;
         }
-        if (armingStatus == ArmingStatus.ARMED_HOME || armingStatus == ArmingStatus.ARMED_AWAY) {
-            securityRepository.getSensors().forEach(sensor -> sensor.setActive(false));
+        long start = System.nanoTime();
+        SensorActivation[] previous = securityRepository.updateSensorActivations(active, new boolean[active.size()]);
+        metrics.recordRepositoryWrite(System.nanoTime() - start);
+        List<Sensor> changed = new ArrayList<>(active.size());
+        for (int i = 0; i < previous.length; i++) {
+            if (previous[i].wasActive()) {
+                changed.add(active.get(i));
+            }
+        }
+        if (!changed.isEmpty()) {
+            metrics.recordSensorDeactivations(changed.size());
+            statusEventBus.publishSensorStatusChanged(changed);
         }
-        securityRepository.setArmingStatus(armingStatus);
     }
 
     /**
@@ -51,30 +156,28 @@ public class SecurityService {
      * @param cat True if a cat is detected, otherwise false.
      */
     private void catDetected(Boolean cat) {
-        System.out.println("catDetected called with cat=" + cat + ",ArmingStatus=" + getArmingStatus());
-        if (cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
-            if(getAlarmStatus() != AlarmStatus.ALARM ){
-                setAlarmStatus(AlarmStatus.ALARM);
-                System.out.println("setAlarmStatus(ALARM) called");
-            }
-        } else {
-            if(getAlarmStatus() != AlarmStatus.NO_ALARM )
-                setAlarmStatus(AlarmStatus.NO_ALARM);
-            System.out.println("setAlarmStatus(NO_ALARM) called");
-        }
-        statusListeners.forEach(sl -> sl.catDetected(cat));
+        transition(s -> cat && s.getArmingStatus() == ArmingStatus.ARMED_HOME
+                ? s.withAlarmStatus(AlarmStatus.ALARM)
+                : s.withAlarmStatus(AlarmStatus.NO_ALARM));
+        statusEventBus.publishCatDetected(cat);
     }
 
     /**
      * Register the StatusListener for alarm system updates from within the SecurityService.
+     * Updates are delivered asynchronously through the {@link StatusEventBus}; listeners that are
+     * Swing components receive them on the event dispatch thread.
      * @param statusListener
      */
     public void addStatusListener(StatusListener statusListener) {
-        statusListeners.add(statusListener);
+        statusEventBus.subscribe(statusListener);
     }
 
     public void removeStatusListener(StatusListener statusListener) {
-        statusListeners.remove(statusListener);
+        statusEventBus.unsubscribe(statusListener);
+    }
+
+    public StatusEventBus getStatusEventBus() {
+        return statusEventBus;
     }
 
     /**
@@ -82,73 +185,345 @@ public class SecurityService {
      * @param status
      */
     public void setAlarmStatus(AlarmStatus status) {
-        System.out.println("setAlarmStatus called with status=" + status);
-        securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(sl -> sl.notify(status));
+        transition(s -> s.withAlarmStatus(status));
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been activated.
+     * Moves to the state computed from the current one, retrying if another thread got there
+     * first. The change function may therefore run more than once and must not have side effects.
+     * Once the new state is in place it is persisted and listeners hear about a new alarm status.
      */
-    private void handleSensorActivated() {
-        if (securityRepository.getArmingStatus() == ArmingStatus.DISARMED) {
-            return; // No action if the system is disarmed
-        }
-        switch (securityRepository.getAlarmStatus()) {
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
+    private void transition(UnaryOperator<SecurityState> change) {
+        AlarmTransitionEvent event = new AlarmTransitionEvent();
+        event.begin();
+        while (true) {
+            SecurityState current = state.get();
+            SecurityState next = change.apply(current);
+            if (next == current) {
+                return;
+            }
+            if (state.compareAndSet(current, next)) {
+                persist(next);
+                if (next.getAlarmStatus() != current.getAlarmStatus()) {
+                    metrics.recordAlarmTransition(next.getAlarmStatus());
+                    statusEventBus.publishAlarmStatus(next.getAlarmStatus(), next.getVersion());
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.from = current.getAlarmStatus().name();
+                        event.to = next.getAlarmStatus().name();
+                        event.armingStatus = next.getArmingStatus().name();
+                        event.commit();
+                    }
+                }
+                if (next.getArmingStatus() != current.getArmingStatus()) {
+                    metrics.recordArmingTransition();
+                }
+                return;
+            }
         }
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been deactivated.
+     * Writes the parts of the given state that differ from what the repository holds. States that
+     * lost the race to a newer one are skipped.
      */
-    private void handleSensorDeactivated() {
-        if (securityRepository.getAlarmStatus() == AlarmStatus.ALARM) {
-            return; // Do not change the alarm state if it is already in ALARM state
-        }
-        if (securityRepository.getAlarmStatus() == AlarmStatus.PENDING_ALARM) {
-            // Check if all sensors are inactive
-            boolean allSensorsInactive = securityRepository.getSensors().stream()
-                    .noneMatch(Sensor::getActive);
-            if (allSensorsInactive) {
-                setAlarmStatus(AlarmStatus.NO_ALARM);
+    private void persist(SecurityState next) {
+        synchronized (persistLock) {
+            if (next.getVersion() <= persistedState.getVersion()) {
+                return;
             }
+            long start = System.nanoTime();
+            if (next.getAlarmStatus() != persistedState.getAlarmStatus()) {
+                securityRepository.setAlarmStatus(next.getAlarmStatus());
+            }
+            if (next.getArmingStatus() != persistedState.getArmingStatus()) {
+                securityRepository.setArmingStatus(next.getArmingStatus());
+            }
+            metrics.recordRepositoryWrite(System.nanoTime() - start);
+            persistedState = next;
         }
     }
 
+    /**
+     * Internal method for updating the alarm status when a sensor has been activated.
+     */
+    private void handleSensorActivated() {
+        // No action if the system is disarmed
+        transition(s -> s.getArmingStatus() == ArmingStatus.DISARMED
+                ? s
+                : s.withAlarmStatus(alarmStatusAfterActivation(s.getAlarmStatus())));
+    }
+
+    /**
+     * An activated sensor on an armed system escalates the alarm by one step.
+     */
+    private static AlarmStatus alarmStatusAfterActivation(AlarmStatus current) {
+        return switch (current) {
+            case NO_ALARM -> AlarmStatus.PENDING_ALARM;
+            case PENDING_ALARM, ALARM -> AlarmStatus.ALARM;
+        };
+    }
+
+    /**
+     * Internal method for updating the alarm status when a sensor has been deactivated. A pending
+     * alarm is cleared once no sensor is active; an alarm that already went off stays on.
+     */
+    private void handleSensorDeactivated() {
+        // The repository keeps the active count up to date, so no need to scan every sensor
+        transition(s -> s.getAlarmStatus() == AlarmStatus.PENDING_ALARM && securityRepository.getActiveSensorCount() == 0
+                ? s.withAlarmStatus(AlarmStatus.NO_ALARM)
+                : s);
+    }
+
     /**
      * Change the activation status for the specified sensor and update alarm status if necessary.
+     * The sensor is stored first so that the repository's active count already reflects the change.
+     * The repository flips the sensor and reports its previous state in one step, so two threads
+     * activating the same sensor escalate the alarm only once.
      * @param sensor
      * @param active
+     * @return false if the repository no longer holds the sensor, which is then left as it is and
+     * not stored again
      */
-    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        if (!sensor.getActive() && active) {
+    public boolean changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        SensorStatusChangeEvent event = new SensorStatusChangeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        SensorActivation previous = securityRepository.updateSensorActivation(sensor, active);
+        metrics.recordRepositoryWrite(System.nanoTime() - start);
+        if (!previous.isKnown()) {
+            return false;
+        }
+        boolean wasActive = previous.wasActive();
+        recordSensorChange(wasActive, active);
+        if (wasActive != active) {
+            statusEventBus.publishSensorStatusChanged(sensor);
+        }
+        if (!wasActive && active) {
             // Sensor is being activated
             handleSensorActivated();
-        } else if (sensor.getActive() && !active) {
-            // Sensor is being deactivated
+        } else if (!active) {
+            // Sensor is being deactivated, or is already inactive and is being deactivated again
             handleSensorDeactivated();
-        } else if (!sensor.getActive() && !active) {
-            // Sensor is already inactive and is being deactivated again
-            handleSensorDeactivated(); // Add this line to handle the case
         }
-        sensor.setActive(active);
-        securityRepository.updateSensor(sensor);
+        event.end();
+        if (event.shouldCommit()) {
+            event.sensorId = sensor.getSensorId().toString();
+            event.sensorName = sensor.getName();
+            event.sensorType = sensor.getSensorType().name();
+            event.wasActive = wasActive;
+            event.active = active;
+            event.commit();
+        }
+        return true;
+    }
+
+    /**
+     * Apply a batch of sensor changes in order. The alarm state machine sees every change exactly as
+     * if {@link #changeSensorActivationStatus(Sensor, Boolean)} had been called for each one, but the
+     * sensors are flipped by the repository in a single call and listeners only hear about the final
+     * alarm status, if it differs from the status before the batch. As with single changes, the
+     * repository reports each sensor's previous state, so a batch and a single change racing on the
+     * same sensor escalate the alarm only once.
+     * @param events Sensor changes, applied in iteration order
+     * @return number of events skipped because the repository no longer holds their sensor
+     */
+    public int changeSensorActivationStatuses(Collection<SensorEvent> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        List<Sensor> sensors = new ArrayList<>(events.size());
+        boolean[] active = new boolean[events.size()];
+        for (SensorEvent event : events) {
+            active[sensors.size()] = event.isActive();
+            sensors.add(event.getSensor());
+        }
+        long start = System.nanoTime();
+        SensorActivation[] previous = securityRepository.updateSensorActivations(sensors, active);
+        metrics.recordRepositoryWrite(System.nanoTime() - start);
+
+        //what each event means for the alarm, so the transition can be replayed if the CAS is retried.
+        //Walks back from the count after the batch, as single changes read the count after their write.
+        byte[] steps = new byte[previous.length];
+        int activeSensors = securityRepository.getActiveSensorCount();
+        for (int i = previous.length - 1; i >= 0; i--) {
+            if (!previous[i].isKnown()) {
+                continue;
+            }
+            boolean wasActive = previous[i].wasActive();
+            if (!wasActive && active[i]) {
+                steps[i] = STEP_ACTIVATED;
+            } else if (!active[i] && activeSensors == 0) {
+                steps[i] = STEP_ALL_INACTIVE;
+            }
+            activeSensors -= (active[i] ? 1 : 0) - (wasActive ? 1 : 0);
+        }
+
+        Map<UUID, Sensor> changed = new LinkedHashMap<>();
+        int skipped = 0;
+        for (int i = 0; i < previous.length; i++) {
+            if (!previous[i].isKnown()) {
+                skipped++;
+                continue;
+            }
+            recordSensorChange(previous[i].wasActive(), active[i]);
+            if (previous[i].wasActive() != active[i]) {
+                changed.putIfAbsent(sensors.get(i).getSensorId(), sensors.get(i));
+            }
+        }
+        if (!changed.isEmpty()) {
+            statusEventBus.publishSensorStatusChanged(changed.values());
+        }
+        transition(s -> {
+            AlarmStatus alarmStatus = s.getAlarmStatus();
+            for (byte step : steps) {
+                if (step == STEP_ACTIVATED && s.getArmingStatus() != ArmingStatus.DISARMED) {
+                    alarmStatus = alarmStatusAfterActivation(alarmStatus);
+                } else if (step == STEP_ALL_INACTIVE && alarmStatus == AlarmStatus.PENDING_ALARM) {
+                    alarmStatus = AlarmStatus.NO_ALARM;
+                }
+            }
+            return s.withAlarmStatus(alarmStatus);
+        });
+        return skipped;
+    }
+
+    private void recordSensorChange(boolean wasActive, boolean active) {
+        if (!wasActive && active) {
+            metrics.recordSensorActivation();
+        } else if (wasActive && !active) {
+            metrics.recordSensorDeactivations(1);
+        }
     }
 
     /**
      * Send an image to the SecurityService for processing. The securityService will use its provided
-     * ImageService to analyze the image for cats and update the alarm status accordingly.
+     * ImageService to analyze the image for cats and update the alarm status accordingly. Frames
+     * that barely differ from the last classified one reuse its verdict; see {@link MotionGate}.
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        System.out.println("processing called");
-        catDetected(Boolean.valueOf(imageService.imageContainsCat(currentCameraImage, 50.0f)));
+        ImageScanEvent event = new ImageScanEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean cat = classifyGated(currentCameraImage);
+        catDetected(cat);
+        metrics.recordProcessImage(System.nanoTime() - start);
+        commitScan(event, currentCameraImage, cat);
+    }
+
+    private static void commitScan(ImageScanEvent event, BufferedImage image, boolean cat) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = image.getWidth();
+            event.height = image.getHeight();
+            event.catDetected = cat;
+            event.commit();
+        }
+    }
+
+    private boolean classifyGated(BufferedImage image) {
+        return motionGate.classify(image, getArmingStatus(), this::classify);
+    }
+
+    private boolean classify(BufferedImage image) {
+        ImageClassificationEvent event = new ImageClassificationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean cat = imageService.imageContainsCat(image, CAT_CONFIDENCE_THRESHOLD);
+        metrics.recordImageService(System.nanoTime() - start);
+        commitClassification(event, image, 1, cat);
+        return cat;
+    }
+
+    private void commitClassification(ImageClassificationEvent event, BufferedImage image, int frames, boolean cat) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.imageService = imageService.getClass().getName();
+            event.frames = frames;
+            event.width = image.getWidth();
+            event.height = image.getHeight();
+            event.catDetected = cat;
+            event.commit();
+        }
+    }
+
+    /**
+     * Send a burst of camera frames for processing. The frames are classified in parallel and the
+     * alarm status is updated once for the whole burst: a cat in any frame counts as a cat. Bursts
+     * bypass the {@link MotionGate}, which compares frames one after the other.
+     * @param cameraImages Frames in the order they were taken
+     * @return per-frame results, in the order of the frames
+     */
+    public List<Boolean> processImages(List<BufferedImage> cameraImages) {
+        if (cameraImages.isEmpty()) {
+            return List.of();
+        }
+        //the whole burst is one image service call
+        ImageClassificationEvent event = new ImageClassificationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        List<Boolean> results = imageService.imagesContainCat(cameraImages, CAT_CONFIDENCE_THRESHOLD);
+        metrics.recordImageService(System.nanoTime() - start);
+        boolean cat = results.contains(Boolean.TRUE);
+        commitClassification(event, cameraImages.get(0), cameraImages.size(), cat);
+        catDetected(cat);
+        return results;
+    }
+
+    /**
+     * Same as {@link #processImage(BufferedImage)}, but the image is classified on the
+     * {@link ClassificationExecutor} and the caller returns immediately. The alarm status is
+     * updated as soon as the classification completes. The recorded processImage latency runs
+     * from this call until the update, so it includes the time spent waiting for the executor, and
+     * so does the duration of its {@link ImageScanEvent}.
+     * @param currentCameraImage
+     * @return future completed with true if the image contains a cat. It completes exceptionally
+     * if the classification failed, or if it was rejected or dropped because too many images were
+     * waiting; in that case the alarm status is left unchanged.
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage) {
+        return processImageAsync(currentCameraImage, Runnable::run);
+    }
+
+    /**
+     * Same as {@link #processImageAsync(BufferedImage)}, but the verdict is applied to the alarm
+     * status on the given executor rather than on the thread that classified the image.
+     * @param verdictExecutor Runs the alarm status update; if it rejects the update, the returned
+     * future completes exceptionally and the alarm status is left unchanged
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage, Executor verdictExecutor) {
+        ImageScanEvent event = new ImageScanEvent();
+        event.begin();
+        long start = System.nanoTime();
+        return classificationExecutor
+                .submit(() -> classifyGated(currentCameraImage))
+                .thenApplyAsync(cat -> {
+                    catDetected(cat);
+                    metrics.recordProcessImage(System.nanoTime() - start);
+                    commitScan(event, currentCameraImage, cat);
+                    return cat;
+                }, verdictExecutor);
+    }
+
+    public ClassificationExecutor getClassificationExecutor() {
+        return classificationExecutor;
+    }
+
+    public MotionGate getMotionGate() {
+        return motionGate;
+    }
+
+    /**
+     * @return counters and latencies of this service; see {@link SecurityMetrics#register()} to
+     * publish them over JMX
+     */
+    public SecurityMetrics getMetrics() {
+        return metrics;
     }
 
     public AlarmStatus getAlarmStatus() {
-        return securityRepository.getAlarmStatus();
+        return state.get().getAlarmStatus();
     }
 
     /**
@@ -158,15 +533,51 @@ public class SecurityService {
         return Collections.unmodifiableSet(securityRepository.getSensors());
     }
 
+    /**
+     * Get the sensors in display order. The repository keeps this order as a separate index, so
+     * repeated calls do not re-sort.
+     */
+    public List<Sensor> getSortedSensors() {
+        return securityRepository.getSortedSensors();
+    }
+
+    /**
+     * @return the sensor with the given id, or null if there is none
+     */
+    public Sensor getSensor(UUID sensorId) {
+        return securityRepository.getSensor(sensorId);
+    }
+
+    public int getSensorCount() {
+        return securityRepository.getSensorCount();
+    }
+
+    public int getActiveSensorCount() {
+        return securityRepository.getActiveSensorCount();
+    }
+
     public void addSensor(Sensor sensor) {
+        long start = System.nanoTime();
         securityRepository.addSensor(sensor);
+        metrics.recordRepositoryWrite(System.nanoTime() - start);
+        statusEventBus.publishSensorStatusChanged(sensor);
     }
 
     public void removeSensor(Sensor sensor) {
+        long start = System.nanoTime();
         securityRepository.removeSensor(sensor);
+        metrics.recordRepositoryWrite(System.nanoTime() - start);
+        statusEventBus.publishSensorStatusChanged(sensor);
     }
 
     public ArmingStatus getArmingStatus() {
-        return securityRepository.getArmingStatus();
+        return state.get().getArmingStatus();
+    }
+
+    /**
+     * @return the current alarm and arming status as one consistent snapshot
+     */
+    public SecurityState getState() {
+        return state.get();
     }
 }
\ No newline at end of file
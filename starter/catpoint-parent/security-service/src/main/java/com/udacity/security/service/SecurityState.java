@@ -0,0 +1,60 @@
+package com.udacity.security.service;
+
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.ArmingStatus;
+
+/**
+ * Immutable snapshot of the alarm and arming status. {@link SecurityService} holds the current
+ * state in a single atomic reference and moves between states by compare-and-set, so every
+ * transition sees a consistent pair of statuses without taking a lock. The version increases with
+ * every transition and lets the service tell which of two states is newer.
+ */
+public final class SecurityState {
+    private final AlarmStatus alarmStatus;
+    private final ArmingStatus armingStatus;
+    private final long version;
+
+    public SecurityState(AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+        this(alarmStatus, armingStatus, 0);
+    }
+
+    private SecurityState(AlarmStatus alarmStatus, ArmingStatus armingStatus, long version) {
+        this.alarmStatus = alarmStatus;
+        this.armingStatus = armingStatus;
+        this.version = version;
+    }
+
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return a newer state with the given alarm status, or this state if nothing would change
+     */
+    public SecurityState withAlarmStatus(AlarmStatus alarmStatus) {
+        return alarmStatus == this.alarmStatus ? this : new SecurityState(alarmStatus, armingStatus, version + 1);
+    }
+
+    /**
+     * @return a newer state with the given statuses, or this state if nothing would change
+     */
+    public SecurityState with(AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+        if (alarmStatus == this.alarmStatus && armingStatus == this.armingStatus) {
+            return this;
+        }
+        return new SecurityState(alarmStatus, armingStatus, version + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "SecurityState{" + alarmStatus + ", " + armingStatus + ", v" + version + "}";
+    }
+}
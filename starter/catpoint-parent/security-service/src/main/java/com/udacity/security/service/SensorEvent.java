@@ -0,0 +1,25 @@
+package com.udacity.security.service;
+
+import com.udacity.security.data.Sensor;
+
+/**
+ * A requested change to a sensor's activation status, as applied by
+ * {@link SecurityService#changeSensorActivationStatuses(java.util.Collection)}.
+ */
+public class SensorEvent {
+    private final Sensor sensor;
+    private final boolean active;
+
+    public SensorEvent(Sensor sensor, boolean active) {
+        this.sensor = sensor;
+        this.active = active;
+    }
+
+    public Sensor getSensor() {
+        return sensor;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+}
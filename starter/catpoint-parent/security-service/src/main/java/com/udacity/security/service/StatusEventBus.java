@@ -0,0 +1,379 @@
+package com.udacity.security.service;
+
+import com.udacity.security.application.StatusListener;
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.Sensor;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers status events from the {@link SecurityService} to its {@link StatusListener}s without
+ * making the service wait for them. Each listener has its own bounded queue that is drained in
+ * order on a dispatch thread, or on the Swing event dispatch thread if the listener is a Swing
+ * {@link Component}.
+ *
+ * Queued alarm status events for the same listener collapse into the newest one, since a listener
+ * only cares about the latest value. Repeated sensor status events collapse into one that names
+ * every sensor any of them named, so a burst of sensor changes reaches a listener as one call.
+ * Nothing is allocated for sensor changes while nobody listens. Alarm statuses carry the version
+ * of the state they came from, so one that arrives after a newer status was already queued is
+ * discarded rather than overwriting it. When a queue is full the oldest cat detection is dropped.
+ * An alarm status is only dropped when a newer one is on its way, and sensor status events are
+ * never dropped: a listener that missed one could not tell which sensors went stale. Events that
+ * a drop leaves next to each other merge as if they had arrived in a row, which keeps the queue
+ * within its capacity.
+ */
+public class StatusEventBus {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private final Executor dispatchExecutor;
+    private final Executor swingExecutor;
+    private final int queueCapacity;
+    private final Map<StatusListener, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Creates a bus that dispatches on daemon threads and on the Swing event dispatch thread.
+     */
+    public StatusEventBus() {
+        this(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "status-event-dispatch");
+            t.setDaemon(true);
+            return t;
+        }), SwingUtilities::invokeLater, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param dispatchExecutor Runs the queue drains of ordinary listeners
+     * @param swingExecutor Runs the queue drains of listeners that are Swing components
+     * @param queueCapacity Maximum number of undelivered events per listener, at least 3 so that
+     *                      an alarm status and the sensor status events around it always fit
+     */
+    public StatusEventBus(Executor dispatchExecutor, Executor swingExecutor, int queueCapacity) {
+        if (queueCapacity < 3) {
+            throw new IllegalArgumentException("queueCapacity must be at least 3");
+        }
+        this.dispatchExecutor = dispatchExecutor;
+        this.swingExecutor = swingExecutor;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void subscribe(StatusListener listener) {
+        subscriptions.computeIfAbsent(listener, l -> new Subscription(l, l instanceof Component ? swingExecutor : dispatchExecutor));
+    }
+
+    public void unsubscribe(StatusListener listener) {
+        Subscription subscription = subscriptions.remove(listener);
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * @param status The new alarm status
+     * @param version Version of the state the status belongs to; older versions never replace newer ones
+     */
+    public void publishAlarmStatus(AlarmStatus status, long version) {
+        publish(new Event(Event.ALARM_STATUS, status, false, version, null));
+    }
+
+    public void publishCatDetected(boolean catDetected) {
+        publish(new Event(Event.CAT_DETECTED, null, catDetected, 0, null));
+    }
+
+    /**
+     * Tells listeners that sensors changed without saying which, so they have to look at all of them.
+     */
+    public void publishSensorStatusChanged() {
+        publish(new Event(Event.SENSOR_STATUS, null, false, 0, null));
+    }
+
+    /**
+     * Tells listeners that the sensor was added, removed or changed its activation status.
+     */
+    public void publishSensorStatusChanged(Sensor sensor) {
+        if (countIfUnheard()) {
+            return;
+        }
+        publish(new Event(Event.SENSOR_STATUS, null, false, 0, Set.of(sensor)));
+    }
+
+    /**
+     * Tells listeners that the sensors were added, removed or changed their activation status.
+     */
+    public void publishSensorStatusChanged(Collection<Sensor> sensors) {
+        if (countIfUnheard()) {
+            return;
+        }
+        publish(new Event(Event.SENSOR_STATUS, null, false, 0, new LinkedHashSet<>(sensors)));
+    }
+
+    private boolean countIfUnheard() {
+        if (!subscriptions.isEmpty()) {
+            return false;
+        }
+        publishedCount.incrementAndGet();
+        return true;
+    }
+
+    private void publish(Event event) {
+        publishedCount.incrementAndGet();
+        subscriptions.values().forEach(subscription -> subscription.offer(event));
+    }
+
+    /**
+     * @return number of events waiting for the given listener, or 0 if it is not subscribed
+     */
+    public int getQueueDepth(StatusListener listener) {
+        Subscription subscription = subscriptions.get(listener);
+        return subscription == null ? 0 : subscription.depth();
+    }
+
+    /**
+     * @return number of events waiting across all listeners
+     */
+    public int getTotalQueueDepth() {
+        return subscriptions.values().stream().mapToInt(Subscription::depth).sum();
+    }
+
+    /**
+     * @return number of events published, counted once regardless of the number of listeners
+     */
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    /**
+     * @return number of events handed to a listener
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * @return number of queued events replaced by a newer one, or discarded as stale
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return number of events dropped because a listener's queue was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private static final class Event {
+        private static final int ALARM_STATUS = 0;
+        private static final int CAT_DETECTED = 1;
+        private static final int SENSOR_STATUS = 2;
+
+        private final int type;
+        private final AlarmStatus status;
+        private final boolean catDetected;
+        private final long version;
+        //changed sensors, or null if any sensor may have changed
+        private final Set<Sensor> sensors;
+        //set when the sensors belong to this event alone, rather than to an event queued for every listener
+        private final boolean ownsSensors;
+
+        private Event(int type, AlarmStatus status, boolean catDetected, long version, Set<Sensor> sensors) {
+            this(type, status, catDetected, version, sensors, false);
+        }
+
+        private Event(int type, AlarmStatus status, boolean catDetected, long version, Set<Sensor> sensors,
+                      boolean ownsSensors) {
+            this.type = type;
+            this.status = status;
+            this.catDetected = catDetected;
+            this.version = version;
+            this.sensors = sensors;
+            this.ownsSensors = ownsSensors;
+        }
+
+        /**
+         * @return a sensor status event naming the sensors of both events
+         */
+        private Event mergedWith(Event newer) {
+            if (sensors == null) {
+                return this;
+            }
+            if (newer.sensors == null) {
+                return newer;
+            }
+            if (ownsSensors) {
+                sensors.addAll(newer.sensors);
+                return this;
+            }
+            Set<Sensor> union = new LinkedHashSet<>(sensors);
+            union.addAll(newer.sensors);
+            return new Event(SENSOR_STATUS, null, false, 0, union, true);
+        }
+
+        private void deliverTo(StatusListener listener) {
+            switch (type) {
+                case ALARM_STATUS -> listener.notify(status);
+                case CAT_DETECTED -> listener.catDetected(catDetected);
+                default -> {
+                    if (sensors == null) {
+                        listener.sensorStatusChanged();
+                    } else {
+                        listener.sensorStatusChanged(Collections.unmodifiableSet(sensors));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * One listener's queue. At most one drain is scheduled at a time, which keeps delivery to the
+     * listener in order and single-threaded.
+     */
+    private final class Subscription {
+        private final StatusListener listener;
+        private final Executor executor;
+        private final ArrayDeque<Event> queue = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean cancelled;
+        private long latestAlarmVersion = -1;
+
+        private Subscription(StatusListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        private void offer(Event event) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                if (event.type == Event.ALARM_STATUS) {
+                    if (event.version <= latestAlarmVersion) {
+                        coalescedCount.incrementAndGet();
+                        return;
+                    }
+                    latestAlarmVersion = event.version;
+                }
+                Event last = queue.peekLast();
+                if (last != null && last.type == event.type && event.type != Event.CAT_DETECTED) {
+                    queue.pollLast();
+                    coalescedCount.incrementAndGet();
+                    if (event.type == Event.SENSOR_STATUS) {
+                        event = last.mergedWith(event);
+                    }
+                } else if (queue.size() >= queueCapacity) {
+                    makeRoom(event);
+                }
+                queue.addLast(event);
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            executor.execute(this::drain);
+        }
+
+        /**
+         * Drops the oldest cat detection or, failing that, the oldest alarm status that a newer one
+         * replaces. Events of the same kind that the drop leaves next to each other are merged,
+         * so alarm and sensor status events keep alternating. A full queue without cat detections
+         * therefore holds at least two alarm statuses, or one if the incoming event merges with the
+         * last queued one, and the queue never grows past its capacity.
+         */
+        private void makeRoom(Event incoming) {
+            if (dropOldest(Event.CAT_DETECTED, 1)) {
+                return;
+            }
+            //the incoming alarm status is newer than any queued one, or it would have been discarded
+            dropOldest(Event.ALARM_STATUS, incoming.type == Event.ALARM_STATUS ? 1 : 2);
+        }
+
+        /**
+         * Drops the oldest event of the given type if at least {@code queued} of that type are queued,
+         * and merges its neighbours if they are alarm or sensor status events of the same kind.
+         */
+        private boolean dropOldest(int type, int queued) {
+            int count = 0;
+            for (Event event : queue) {
+                if (event.type == type) {
+                    count++;
+                }
+            }
+            if (count < queued) {
+                return false;
+            }
+            //rotate the whole queue once, leaving out the dropped event and joining the seam it leaves
+            int size = queue.size();
+            boolean dropped = false;
+            boolean atSeam = false;
+            Event previous = null;
+            for (int i = 0; i < size; i++) {
+                Event event = queue.pollFirst();
+                if (!dropped && event.type == type) {
+                    dropped = true;
+                    atSeam = true;
+                    droppedCount.incrementAndGet();
+                    continue;
+                }
+                if (atSeam && previous != null && previous.type == event.type && event.type != Event.CAT_DETECTED) {
+                    queue.pollLast();
+                    coalescedCount.incrementAndGet();
+                    if (event.type == Event.SENSOR_STATUS) {
+                        event = previous.mergedWith(event);
+                    }
+                }
+                atSeam = false;
+                queue.addLast(event);
+                previous = event;
+            }
+            return true;
+        }
+
+        private void drain() {
+            while (true) {
+                Event event;
+                synchronized (this) {
+                    event = queue.pollFirst();
+                    if (event == null || cancelled) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                try {
+                    event.deliverTo(listener);
+                } catch (RuntimeException e) {
+                    //a failing listener must not stall its queue
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, e);
+                }
+                deliveredCount.incrementAndGet();
+            }
+        }
+
+        private synchronized int depth() {
+            return queue.size();
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+            queue.clear();
+        }
+    }
+}
@@ -3,8 +3,15 @@ module com.udacity.security {
     requires java.logging;
     requires java.desktop;
     requires java.prefs;
+    requires java.management;
+    requires jdk.jfr;
+    requires jdk.httpserver;
     requires com.google.common;
     requires com.google.gson;
     requires miglayout.swing;
     opens com.udacity.security.data to com.google.gson;
+    //JMX reads the metrics through their MXBean interface
+    exports com.udacity.security.metrics;
+    //protocol constants for sensor hubs and load generators
+    exports com.udacity.security.gateway;
 }
@@ -0,0 +1,131 @@
+package com.udacity.security.application;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.StatusEventBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatpointDaemonTest {
+
+    private CatpointDaemon daemon;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        SecurityService securityService = new SecurityService(new CompactSecurityRepositoryImpl(),
+                (image, confidenceThreshold) -> true, new StatusEventBus(Runnable::run, Runnable::run, 16));
+        daemon = new CatpointDaemon(securityService, null, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        daemon.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        daemon.close();
+    }
+
+    private record Response(int status, JsonElement body) { }
+
+    private Response request(String method, String path, String contentType, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create("http://localhost:" + daemon.getPort() + path)
+                .toURL().openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", contentType);
+            try (OutputStream os = connection.getOutputStream()) {
+                os.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        try (InputStream is = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new Response(status, JsonParser.parseString(new String(is.readAllBytes(), StandardCharsets.UTF_8)));
+        }
+    }
+
+    private Response request(String method, String path, String json) throws IOException {
+        return request(method, path, "application/json", json == null ? null : json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void sensorEventsOnArmedSystem_RaiseAlarm() throws IOException {
+        String sensorId = request("POST", "/sensors", "{\"name\":\"Door\",\"sensorType\":\"DOOR\"}")
+                .body().getAsJsonObject().get("sensorId").getAsString();
+        request("PUT", "/arming", "{\"armingStatus\":\"ARMED_AWAY\"}");
+
+        Response response = request("POST", "/sensor-events", "{\"sensorId\":\"" + sensorId + "\",\"active\":true}");
+
+        assertEquals(200, response.status());
+        assertEquals("PENDING_ALARM", response.body().getAsJsonObject().get("alarmStatus").getAsString());
+        JsonObject status = request("GET", "/status", null).body().getAsJsonObject();
+        assertEquals(1, status.get("activeSensors").getAsInt());
+        JsonArray sensors = request("GET", "/sensors", null).body().getAsJsonArray();
+        assertTrue(sensors.get(0).getAsJsonObject().get("active").getAsBoolean());
+    }
+
+    @Test
+    public void postedImage_IsClassified() throws IOException {
+        request("PUT", "/arming", "{\"armingStatus\":\"ARMED_HOME\"}");
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", png);
+
+        Response response = request("POST", "/images", "image/png", png.toByteArray());
+
+        assertEquals(200, response.status());
+        assertTrue(response.body().getAsJsonObject().get("catDetected").getAsBoolean());
+        assertEquals("ALARM", response.body().getAsJsonObject().get("alarmStatus").getAsString());
+        JsonObject metrics = request("GET", "/metrics", null).body().getAsJsonObject();
+        assertEquals(1, metrics.getAsJsonObject("imageServiceLatency").get("count").getAsInt());
+    }
+
+    @Test
+    public void badRequests_AreRejected() throws IOException {
+        assertEquals(400, request("PUT", "/arming", "{\"armingStatus\":\"ON_HOLIDAY\"}").status());
+        assertEquals(400, request("POST", "/sensors", "{\"name\":\"Door\"}").status());
+        assertEquals(400, request("PUT", "/arming", "[\"ARMED_HOME\"]").status());
+        assertEquals(400, request("POST", "/sensor-events", "{\"sensorId\":\"front-door\",\"active\":true}").status());
+        assertEquals(400, request("POST", "/sensor-events", "[{\"sensorId\":{},\"active\":true}]").status());
+        assertEquals(404, request("POST", "/sensor-events",
+                "{\"sensorId\":\"00000000-0000-0000-0000-000000000000\",\"active\":true}").status());
+        assertEquals(405, request("DELETE", "/status", null).status());
+        assertEquals(404, request("GET", "/status/extra", null).status());
+        assertEquals(415, request("POST", "/images", "image/png", new byte[] {1, 2, 3}).status());
+    }
+
+    @Test
+    public void serviceFailure_IsInternalError() throws IOException {
+        daemon.close();
+        SecurityService securityService = new SecurityService(new CompactSecurityRepositoryImpl() {
+            @Override
+            public void setArmingStatus(ArmingStatus armingStatus) {
+                throw new IllegalStateException("Repository is closed");
+            }
+        }, (image, confidenceThreshold) -> true, new StatusEventBus(Runnable::run, Runnable::run, 16));
+        daemon = new CatpointDaemon(securityService, null, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        daemon.start();
+
+        Response response = request("PUT", "/arming", "{\"armingStatus\":\"ARMED_HOME\"}");
+
+        assertEquals(500, response.status());
+        assertEquals("Internal error", response.body().getAsJsonObject().get("error").getAsString());
+    }
+}
@@ -0,0 +1,106 @@
+package com.udacity.security.application;
+
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.StatusEventBus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorTableModelTest {
+
+    private final SecurityService securityService = new SecurityService(new CompactSecurityRepositoryImpl(),
+            (image, confidenceThreshold) -> false, new StatusEventBus(Runnable::run, Runnable::run, 16));
+    private final List<TableModelEvent> events = new ArrayList<>();
+    private SensorTableModel model;
+
+    private final Sensor bedroom = new Sensor("Bedroom", SensorType.MOTION);
+    private final Sensor frontDoor = new Sensor("Front Door", SensorType.DOOR);
+
+    //pushes sensor changes from the service into the model, as the sensor panel does
+    @BeforeEach
+    void setUp() {
+        securityService.addSensor(bedroom);
+        securityService.addSensor(frontDoor);
+        model = new SensorTableModel(securityService);
+        model.addTableModelListener(events::add);
+        securityService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+                model.reload();
+            }
+
+            @Override
+            public void sensorStatusChanged(Collection<Sensor> sensors) {
+                model.sensorsChanged(sensors);
+            }
+        });
+    }
+
+    private static void assertRowEvent(TableModelEvent event, int type, int row) {
+        assertEquals(type, event.getType());
+        assertEquals(row, event.getFirstRow());
+        assertEquals(row, event.getLastRow());
+    }
+
+    @Test
+    public void toggledSensor_UpdatesOnlyItsRow() {
+        securityService.changeSensorActivationStatus(securityService.getSensor(frontDoor.getSensorId()), true);
+
+        assertEquals(1, events.size());
+        assertRowEvent(events.get(0), TableModelEvent.UPDATE, 1);
+        assertEquals("Active", model.getValueAt(1, SensorTableModel.STATUS_COLUMN));
+        assertEquals("Deactivate", model.getValueAt(1, SensorTableModel.TOGGLE_COLUMN));
+    }
+
+    @Test
+    public void addedSensor_IsInsertedInOrder() {
+        securityService.addSensor(new Sensor("Cellar Window", SensorType.WINDOW));
+
+        assertEquals(1, events.size());
+        assertRowEvent(events.get(0), TableModelEvent.INSERT, 1);
+        assertEquals("Cellar Window", model.getValueAt(1, SensorTableModel.NAME_COLUMN));
+        assertEquals(3, model.getRowCount());
+    }
+
+    @Test
+    public void removedSensor_DeletesItsRow() {
+        securityService.removeSensor(bedroom);
+
+        assertEquals(1, events.size());
+        assertRowEvent(events.get(0), TableModelEvent.DELETE, 0);
+        assertEquals("Front Door", model.getValueAt(0, SensorTableModel.NAME_COLUMN));
+    }
+
+    //arming deactivates every active sensor in one batch
+    @Test
+    public void arming_UpdatesTheDeactivatedRows() {
+        securityService.changeSensorActivationStatus(securityService.getSensor(bedroom.getSensorId()), true);
+        securityService.changeSensorActivationStatus(securityService.getSensor(frontDoor.getSensorId()), true);
+        events.clear();
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        assertEquals(2, events.size());
+        assertEquals("Inactive", model.getValueAt(0, SensorTableModel.STATUS_COLUMN));
+        assertEquals("Inactive", model.getValueAt(1, SensorTableModel.STATUS_COLUMN));
+    }
+}
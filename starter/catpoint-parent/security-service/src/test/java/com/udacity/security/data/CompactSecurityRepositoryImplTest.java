@@ -0,0 +1,112 @@
+package com.udacity.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactSecurityRepositoryImplTest {
+
+    private final CompactSecurityRepositoryImpl repository = new CompactSecurityRepositoryImpl();
+
+    @Test
+    public void views_ReadAndWriteThroughToTheStore() {
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        repository.addSensor(door);
+
+        Sensor view = repository.getSensor(door.getSensorId());
+        assertEquals(door, view);
+        assertEquals("Front Door", view.getName());
+        assertFalse(view.getActive());
+
+        view.setActive(true);
+        assertEquals(1, repository.getActiveSensorCount());
+        assertEquals(1, repository.getActiveSensorCount(SensorType.DOOR));
+        assertTrue(repository.getSensor(door.getSensorId()).getActive());
+    }
+
+    //a view renamed in place moves to its new position in the display order
+    @Test
+    public void renamedView_IsResorted() {
+        Sensor a = new Sensor("A", SensorType.DOOR);
+        Sensor b = new Sensor("B", SensorType.DOOR);
+        repository.addSensor(a);
+        repository.addSensor(b);
+        assertEquals(List.of("A", "B"), names(repository.getSortedSensors()));
+
+        Sensor view = repository.getSensor(a.getSensorId());
+        view.setName("Z");
+        repository.updateSensor(view);
+        assertEquals(List.of("B", "Z"), names(repository.getSortedSensors()));
+
+        //a view writes through even if the repository is never told
+        repository.getSensor(b.getSensorId()).setName("Zz");
+        assertEquals(List.of("Z", "Zz"), names(repository.getSortedSensors()));
+    }
+
+    //activating a sensor removed meanwhile does not store it again
+    @Test
+    public void removedSensor_ActivationIsNotStored() {
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        repository.addSensor(door);
+        Sensor view = repository.getSensor(door.getSensorId());
+        repository.removeSensor(door);
+
+        assertEquals(SensorActivation.UNKNOWN_SENSOR, repository.updateSensorActivation(door, true));
+        assertEquals(SensorActivation.UNKNOWN_SENSOR, repository.updateSensorActivation(view, true));
+        assertNull(repository.getSensor(door.getSensorId()));
+        assertEquals(0, repository.getSensorCount());
+        assertEquals(0, repository.getActiveSensorCount());
+    }
+
+    private static List<String> names(List<Sensor> sensors) {
+        return sensors.stream().map(Sensor::getName).toList();
+    }
+
+    //random adds, removes and toggles leave the store matching a plain map
+    @Test
+    public void randomMutations_MatchReferenceMap() {
+        Random random = new Random(42);
+        Map<UUID, Sensor> expected = new HashMap<>();
+        List<Sensor> added = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            int op = random.nextInt(4);
+            if (op < 2 || added.isEmpty()) {
+                Sensor sensor = new Sensor("Sensor " + random.nextInt(50), SensorType.values()[random.nextInt(3)]);
+                sensor.setActive(random.nextBoolean());
+                repository.addSensor(sensor);
+                expected.put(sensor.getSensorId(), sensor);
+                added.add(sensor);
+            } else if (op == 2) {
+                Sensor sensor = added.remove(random.nextInt(added.size()));
+                repository.removeSensor(sensor);
+                expected.remove(sensor.getSensorId());
+            } else {
+                Sensor sensor = added.get(random.nextInt(added.size()));
+                sensor.setActive(!sensor.getActive());
+                repository.updateSensor(sensor);
+            }
+        }
+
+        assertEquals(expected.size(), repository.getSensors().size());
+        for (Sensor sensor : expected.values()) {
+            Sensor stored = repository.getSensor(sensor.getSensorId());
+            assertNotNull(stored);
+            assertEquals(sensor.getName(), stored.getName());
+            assertEquals(sensor.getSensorType(), stored.getSensorType());
+            assertEquals(sensor.getActive(), stored.getActive());
+        }
+        ActiveSensorCounter counter = new ActiveSensorCounter();
+        counter.reset(expected.values());
+        assertEquals(counter.getActiveCount(), repository.getActiveSensorCount());
+        for (SensorType type : SensorType.values()) {
+            assertEquals(counter.getActiveCount(type), repository.getActiveSensorCount(type));
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.udacity.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventLogSecurityRepositoryImplTest {
+
+    @TempDir
+    Path directory;
+
+    //state written before a crash is rebuilt from the log alone
+    @Test
+    public void unclosedLog_IsReplayedOnStartup() {
+        EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        Sensor window = new Sensor("Back Window", SensorType.WINDOW);
+        repository.addSensor(door);
+        repository.addSensor(window);
+        door.setActive(true);
+        repository.updateSensor(door);
+        repository.removeSensor(window);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        EventLogSecurityRepositoryImpl recovered = new EventLogSecurityRepositoryImpl(directory);
+
+        assertEquals(1, recovered.getSensors().size());
+        Sensor recoveredDoor = recovered.getSensors().iterator().next();
+        assertEquals(door.getSensorId(), recoveredDoor.getSensorId());
+        assertEquals("Front Door", recoveredDoor.getName());
+        assertTrue(recoveredDoor.getActive());
+        assertEquals(ArmingStatus.ARMED_AWAY, recovered.getArmingStatus());
+        assertEquals(AlarmStatus.PENDING_ALARM, recovered.getAlarmStatus());
+    }
+
+    //snapshots plus the segments written after them rebuild the same state
+    @Test
+    public void snapshotAndLogTail_AreCombinedOnStartup() {
+        EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory, 4, null, 3);
+        for (int i = 0; i < 10; i++) {
+            repository.addSensor(new Sensor("Sensor " + i, SensorType.MOTION));
+        }
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+        repository.close();
+
+        EventLogSecurityRepositoryImpl recovered = new EventLogSecurityRepositoryImpl(directory);
+
+        assertEquals(10, recovered.getSensors().size());
+        assertEquals(AlarmStatus.ALARM, recovered.getAlarmStatus());
+        recovered.close();
+    }
+
+    //active counts follow sensor changes and survive a restart
+    @Test
+    public void activeSensorCounts_TrackChanges() {
+        EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        Sensor motion = new Sensor("Hallway", SensorType.MOTION);
+        repository.addSensor(door);
+        repository.addSensor(motion);
+        door.setActive(true);
+        repository.updateSensor(door);
+        motion.setActive(true);
+        repository.updateSensor(motion);
+
+        assertEquals(2, repository.getActiveSensorCount());
+        assertEquals(1, repository.getActiveSensorCount(SensorType.DOOR));
+        assertEquals(0, repository.getActiveSensorCount(SensorType.WINDOW));
+
+        repository.removeSensor(motion);
+        door.setActive(false);
+        repository.updateSensor(door);
+        door.setActive(true);
+        repository.updateSensor(door);
+
+        EventLogSecurityRepositoryImpl recovered = new EventLogSecurityRepositoryImpl(directory);
+        assertEquals(1, recovered.getActiveSensorCount());
+        assertEquals(0, recovered.getActiveSensorCount(SensorType.MOTION));
+    }
+
+    //activating a sensor removed meanwhile appends nothing, so it is not brought back on replay
+    @Test
+    public void removedSensor_ActivationIsNotStored() {
+        EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        repository.addSensor(door);
+        repository.removeSensor(door);
+
+        assertEquals(SensorActivation.UNKNOWN_SENSOR, repository.updateSensorActivation(door, true));
+        assertEquals(0, repository.getActiveSensorCount());
+
+        EventLogSecurityRepositoryImpl recovered = new EventLogSecurityRepositoryImpl(directory);
+        assertTrue(recovered.getSensors().isEmpty());
+        assertEquals(0, recovered.getActiveSensorCount());
+    }
+
+    //after a clean shutdown the statuses and counts come from the snapshot header alone
+    @Test
+    public void reopenedSnapshot_AnswersBeforeSensorsAreLoaded() {
+        EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 5 == 0);
+            repository.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.close();
+
+        EventLogSecurityRepositoryImpl reopened = new EventLogSecurityRepositoryImpl(directory);
+
+        assertEquals(ArmingStatus.ARMED_HOME, reopened.getArmingStatus());
+        assertEquals(50, reopened.getSensorCount());
+        assertEquals(10, reopened.getActiveSensorCount());
+        assertEquals(4, reopened.getActiveSensorCount(SensorType.DOOR));
+        Sensor expected = sensors.get(17);
+        Sensor found = reopened.getSensor(expected.getSensorId());
+        assertEquals(expected.getName(), found.getName());
+        assertEquals(expected.getSensorType(), found.getSensorType());
+        assertSame(found, reopened.getSensor(expected.getSensorId()));
+        assertNull(reopened.getSensor(UUID.randomUUID()));
+
+        //a sensor looked up early stays the one the repository holds once all are loaded
+        found.setActive(true);
+        reopened.updateSensor(found);
+        assertEquals(11, reopened.getActiveSensorCount());
+        assertEquals(50, reopened.getSensors().size());
+        assertTrue(reopened.getSensors().stream().anyMatch(sensor -> sensor == found));
+        reopened.close();
+    }
+
+    private List<String> snapshotFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith("snapshot"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    //a snapshot that is still mapped is never replaced; it is deleted once a newer one exists
+    @Test
+    public void snapshots_GoToNewFiles() throws IOException {
+        EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory);
+        repository.addSensor(new Sensor("Front Door", SensorType.DOOR));
+        repository.close();
+        List<String> first = snapshotFiles();
+        assertEquals(1, first.size());
+
+        EventLogSecurityRepositoryImpl reopened = new EventLogSecurityRepositoryImpl(directory);
+        assertEquals(1, reopened.getSensorCount());
+        reopened.addSensor(new Sensor("Back Door", SensorType.DOOR));
+        reopened.snapshot();
+        List<String> second = snapshotFiles();
+        assertEquals(1, second.size());
+        assertNotEquals(first, second);
+        reopened.close();
+
+        //an older snapshot left behind is removed on startup
+        Files.write(directory.resolve(first.get(0)), new byte[]{1});
+        EventLogSecurityRepositoryImpl restarted = new EventLogSecurityRepositoryImpl(directory);
+        assertEquals(2, restarted.getSensorCount());
+        assertEquals(1, snapshotFiles().size());
+        restarted.close();
+    }
+
+    //appends continue where replay stopped, so a record replay cannot apply does not hide later changes
+    @Test
+    public void unrecognisedRecord_IsOverwrittenByLaterAppends() throws IOException {
+        EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        Sensor window = new Sensor("Back Window", SensorType.WINDOW);
+        repository.addSensor(door);
+        repository.addSensor(window);
+
+        //the process dies without closing the log, and the type byte of the second record is damaged
+        try (FileChannel channel = FileChannel.open(directory.resolve(String.format("events-%016d.log", 0)),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, 8);
+            int second = 8 + 8 + length.flip().getInt();
+            channel.write(ByteBuffer.wrap(new byte[]{99}), second + 8);
+        }
+
+        EventLogSecurityRepositoryImpl reopened = new EventLogSecurityRepositoryImpl(directory);
+        assertEquals(1, reopened.getSensorCount());
+        Sensor motion = new Sensor("Hallway", SensorType.MOTION);
+        reopened.addSensor(motion);
+
+        EventLogSecurityRepositoryImpl restarted = new EventLogSecurityRepositoryImpl(directory);
+        assertEquals(2, restarted.getSensorCount());
+        assertNotNull(restarted.getSensor(door.getSensorId()));
+        assertNotNull(restarted.getSensor(motion.getSensorId()));
+        assertNull(restarted.getSensor(window.getSensorId()));
+    }
+
+    //a record whose length is intact but whose contents never reached the disk is not applied
+    @Test
+    public void corruptedRecord_FailsChecksumAndEndsReplay() throws IOException {
+        EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        repository.addSensor(door);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        //the alarm status record keeps its length and type, but its status byte now reads as another valid status
+        try (FileChannel channel = FileChannel.open(directory.resolve(String.format("events-%016d.log", 0)),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, 8);
+            int second = 8 + 8 + length.flip().getInt();
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) AlarmStatus.ALARM.ordinal()}), second + 9);
+        }
+
+        EventLogSecurityRepositoryImpl reopened = new EventLogSecurityRepositoryImpl(directory);
+        assertEquals(AlarmStatus.NO_ALARM, reopened.getAlarmStatus());
+        assertNotNull(reopened.getSensor(door.getSensorId()));
+        reopened.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        EventLogSecurityRepositoryImpl restarted = new EventLogSecurityRepositoryImpl(directory);
+        assertEquals(AlarmStatus.NO_ALARM, restarted.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_HOME, restarted.getArmingStatus());
+    }
+
+    //a newest snapshot cut short by a crash is skipped, and the state rebuilt from the segments
+    @Test
+    public void truncatedSnapshot_FallsBackToSegments() throws IOException {
+        EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory, 1, null, 3);
+        for (int i = 0; i < 10; i++) {
+            repository.addSensor(new Sensor("Sensor " + i, SensorType.MOTION));
+        }
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+        repository.close();
+        List<String> snapshots = snapshotFiles();
+        assertEquals(1, snapshots.size());
+
+        try (FileChannel channel = FileChannel.open(directory.resolve(snapshots.get(0)), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        EventLogSecurityRepositoryImpl recovered = new EventLogSecurityRepositoryImpl(directory);
+        assertEquals(10, recovered.getSensorCount());
+        assertEquals(AlarmStatus.ALARM, recovered.getAlarmStatus());
+        recovered.addSensor(new Sensor("Sensor 10", SensorType.DOOR));
+        recovered.close();
+
+        EventLogSecurityRepositoryImpl reopened = new EventLogSecurityRepositoryImpl(directory);
+        assertEquals(11, reopened.getSensorCount());
+        reopened.close();
+    }
+}
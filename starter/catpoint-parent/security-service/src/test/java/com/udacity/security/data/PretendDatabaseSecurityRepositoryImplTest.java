@@ -0,0 +1,214 @@
+package com.udacity.security.data;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//runs against the scratch preferences root the surefire configuration sets
+public class PretendDatabaseSecurityRepositoryImplTest {
+
+    private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
+
+    @BeforeEach
+    @AfterEach
+    void clearPreferences() throws BackingStoreException {
+        prefs.clear();
+    }
+
+    //enough sensors to need several chunks
+    private static List<Sensor> addSensors(SecurityRepository repository, int count) {
+        List<Sensor> added = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            repository.addSensor(sensor);
+            added.add(sensor);
+        }
+        return added;
+    }
+
+    private static List<String> chunkKeys() throws BackingStoreException {
+        return Arrays.stream(prefs.keys())
+                .filter(key -> key.startsWith(PretendDatabaseSecurityRepositoryImpl.SENSOR_CHUNK_PREFIX))
+                .toList();
+    }
+
+    @Test
+    public void storedState_IsReloaded() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl();
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        repository.addSensor(door);
+        door.setActive(true);
+        repository.updateSensor(door);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        repository.close();
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = new PretendDatabaseSecurityRepositoryImpl();
+
+        assertEquals(Set.of(door), reloaded.getSensors());
+        assertTrue(reloaded.getSensors().iterator().next().getActive());
+        assertEquals(ArmingStatus.ARMED_AWAY, reloaded.getArmingStatus());
+        assertEquals(AlarmStatus.PENDING_ALARM, reloaded.getAlarmStatus());
+    }
+
+    @Test
+    public void jsonSensors_AreMigrated() throws BackingStoreException {
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        door.setActive(true);
+        prefs.put(PretendDatabaseSecurityRepositoryImpl.LEGACY_SENSORS, new Gson().toJson(Set.of(door)));
+
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl();
+
+        assertEquals(Set.of(door), repository.getSensors());
+        assertNull(prefs.get(PretendDatabaseSecurityRepositoryImpl.LEGACY_SENSORS, null));
+        assertNotNull(prefs.get(PretendDatabaseSecurityRepositoryImpl.SENSOR_MANIFEST, null));
+        assertEquals(Set.of(door), new PretendDatabaseSecurityRepositoryImpl().getSensors());
+        assertEquals(1, new PretendDatabaseSecurityRepositoryImpl().getActiveSensorCount());
+    }
+
+    @Test
+    public void sensors_GrowAndShrinkAcrossChunks() throws BackingStoreException {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl();
+        List<Sensor> added = addSensors(repository, 500);
+        int grownChunks = chunkKeys().size();
+        assertTrue(grownChunks > 1, "expected several chunks, got " + grownChunks);
+        assertEquals(500, new PretendDatabaseSecurityRepositoryImpl().getSensors().size());
+
+        for (Sensor sensor : added.subList(1, added.size())) {
+            repository.removeSensor(sensor);
+        }
+
+        assertEquals(1, chunkKeys().size());
+        assertEquals(Set.of(added.get(0)), new PretendDatabaseSecurityRepositoryImpl().getSensors());
+    }
+
+    //toggling a sensor overwrites the one chunk holding it
+    @Test
+    public void toggledSensor_RewritesOneChunk() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl();
+        List<Sensor> added = addSensors(repository, 500);
+        long writes = repository.getPrefsWriteCount();
+
+        Sensor sensor = added.get(250);
+        sensor.setActive(true);
+        repository.updateSensor(sensor);
+
+        assertEquals(writes + 1, repository.getPrefsWriteCount());
+        assertTrue(new PretendDatabaseSecurityRepositoryImpl().getSensor(sensor.getSensorId()).getActive());
+    }
+
+    //a flush that stopped after writing some chunks of a new generation leaves the old state readable
+    @Test
+    public void interruptedFlush_LoadsPreviousState() throws BackingStoreException {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl();
+        addSensors(repository, 500);
+        String manifest = prefs.get(PretendDatabaseSecurityRepositoryImpl.SENSOR_MANIFEST, null);
+        long generation = Long.parseLong(manifest.substring(0, manifest.indexOf(':')));
+        List<String> stored = chunkKeys();
+        prefs.putByteArray(PretendDatabaseSecurityRepositoryImpl.chunkKey(generation + 1, 0), new byte[]{1, 2, 3});
+        prefs.putByteArray(PretendDatabaseSecurityRepositoryImpl.chunkKey(generation + 1, 1), new byte[]{4, 5, 6});
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = new PretendDatabaseSecurityRepositoryImpl();
+
+        assertEquals(500, reloaded.getSensors().size());
+        assertEquals(Set.copyOf(stored), Set.copyOf(chunkKeys()));
+    }
+
+    //write-behind with a flush interval no test waits for, so only the threshold, flush() and close() write
+    private static PretendDatabaseSecurityRepositoryImpl writeBehind(int dirtyThreshold) {
+        return new PretendDatabaseSecurityRepositoryImpl(Duration.ofHours(1), dirtyThreshold);
+    }
+
+    private static void awaitFlushes(PretendDatabaseSecurityRepositoryImpl repository, int count)
+            throws InterruptedException {
+        for (int i = 0; i < 500 && repository.getFlushCount() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void repeatedMutations_AreMergedIntoOneFlush() {
+        PretendDatabaseSecurityRepositoryImpl repository = writeBehind(1000);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        repository.addSensor(door);
+        for (int i = 0; i < 10; i++) {
+            door.setActive(!door.getActive());
+            repository.updateSensor(door);
+        }
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        assertNull(prefs.get(PretendDatabaseSecurityRepositoryImpl.SENSOR_MANIFEST, null));
+        repository.flush();
+
+        assertEquals(13, repository.getMutationCount());
+        assertEquals(1, repository.getFlushCount());
+        //one chunk and the manifest for the sensors, one value for the arming status
+        assertEquals(3, repository.getPrefsWriteCount());
+        assertTrue(repository.getMaxFlushNanos() > 0);
+        assertTrue(repository.getAverageFlushNanos() > 0);
+        assertEquals(ArmingStatus.ARMED_AWAY, new PretendDatabaseSecurityRepositoryImpl().getArmingStatus());
+
+        //nothing pending, so nothing is written
+        repository.flush();
+        assertEquals(1, repository.getFlushCount());
+        repository.close();
+    }
+
+    @Test
+    public void dirtyThreshold_TriggersFlush() throws InterruptedException {
+        PretendDatabaseSecurityRepositoryImpl repository = writeBehind(3);
+        repository.addSensor(new Sensor("Front Door", SensorType.DOOR));
+        repository.addSensor(new Sensor("Back Door", SensorType.DOOR));
+
+        assertEquals(0, repository.getFlushCount());
+        repository.addSensor(new Sensor("Bedroom", SensorType.MOTION));
+        awaitFlushes(repository, 1);
+
+        assertEquals(1, repository.getFlushCount());
+        assertEquals(3, new PretendDatabaseSecurityRepositoryImpl().getSensors().size());
+        repository.close();
+    }
+
+    //activating a sensor removed meanwhile does not store it again, here or after a reload
+    @Test
+    public void removedSensor_ActivationIsNotStored() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl();
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        repository.addSensor(door);
+        repository.removeSensor(door);
+
+        assertEquals(SensorActivation.UNKNOWN_SENSOR, repository.updateSensorActivation(door, true));
+        assertFalse(door.getActive());
+        assertEquals(0, repository.getActiveSensorCount());
+        assertTrue(repository.getSensors().isEmpty());
+        assertTrue(new PretendDatabaseSecurityRepositoryImpl().getSensors().isEmpty());
+    }
+
+    @Test
+    public void close_WritesPendingChanges() {
+        PretendDatabaseSecurityRepositoryImpl repository = writeBehind(1000);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        repository.addSensor(door);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+
+        assertEquals(0, repository.getFlushCount());
+        repository.close();
+
+        assertEquals(1, repository.getFlushCount());
+        PretendDatabaseSecurityRepositoryImpl reloaded = new PretendDatabaseSecurityRepositoryImpl();
+        assertEquals(Set.of(door), reloaded.getSensors());
+        assertEquals(AlarmStatus.ALARM, reloaded.getAlarmStatus());
+    }
+}
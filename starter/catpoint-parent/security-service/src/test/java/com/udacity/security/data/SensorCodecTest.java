@@ -0,0 +1,96 @@
+package com.udacity.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorCodecTest {
+
+    private static byte[] stateBytes(List<Sensor> sensors) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SensorCodec.writeState(new DataOutputStream(bytes), AlarmStatus.PENDING_ALARM, ArmingStatus.ARMED_AWAY, sensors);
+        return bytes.toByteArray();
+    }
+
+    private static void assertSameSensor(Sensor expected, Sensor actual) {
+        assertEquals(expected.getSensorId(), actual.getSensorId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getSensorType(), actual.getSensorType());
+        assertEquals(expected.getActive(), actual.getActive());
+    }
+
+    //ids, types, activity, UTF-8 names, missing names and both statuses come back unchanged
+    @Test
+    public void state_RoundTrips() throws IOException {
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        door.setActive(true);
+        Sensor window = new Sensor("Fenêtre de la cuisine", SensorType.WINDOW);
+        Sensor unnamed = new Sensor(null, SensorType.MOTION);
+        List<Sensor> sensors = List.of(door, window, unnamed);
+
+        List<Sensor> read = new ArrayList<>();
+        SensorCodec.Header header = SensorCodec.readState(
+                new DataInputStream(new ByteArrayInputStream(stateBytes(sensors))), read::add);
+
+        assertEquals(AlarmStatus.PENDING_ALARM, header.alarmStatus());
+        assertEquals(ArmingStatus.ARMED_AWAY, header.armingStatus());
+        assertEquals(3, header.sensorCount());
+        for (int i = 0; i < sensors.size(); i++) {
+            assertSameSensor(sensors.get(i), read.get(i));
+        }
+    }
+
+    //the buffer encoding matches the stream encoding byte for byte
+    @Test
+    public void bufferAndStreamEncodings_AreIdentical() throws IOException {
+        Sensor sensor = new Sensor("Fenêtre", SensorType.WINDOW);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SensorCodec.writeSensor(new DataOutputStream(bytes), sensor);
+
+        ByteBuffer buffer = ByteBuffer.allocate(SensorCodec.encodedSize(sensor));
+        SensorCodec.writeSensor(buffer, sensor);
+
+        assertFalse(buffer.hasRemaining());
+        assertArrayEquals(bytes.toByteArray(), buffer.array());
+        assertSameSensor(sensor, SensorCodec.readSensor(buffer.flip()));
+    }
+
+    @Test
+    public void sensorStream_IsNotReadAsState() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SensorCodec.writeSensors(new DataOutputStream(bytes), List.of(new Sensor("Door", SensorType.DOOR)));
+
+        assertThrows(IOException.class, () -> SensorCodec.readState(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), sensor -> { }));
+        assertEquals(1, SensorCodec.readSensors(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), sensor -> { }));
+    }
+
+    @Test
+    public void newerVersion_IsRejected() throws IOException {
+        byte[] bytes = stateBytes(List.of());
+        bytes[4] = SensorCodec.FORMAT_VERSION + 1;
+
+        assertThrows(IOException.class, () -> SensorCodec.readState(
+                new DataInputStream(new ByteArrayInputStream(bytes)), sensor -> { }));
+    }
+
+    @Test
+    public void truncatedState_IsRejected() throws IOException {
+        byte[] bytes = stateBytes(List.of(new Sensor("Door", SensorType.DOOR), new Sensor("Window", SensorType.WINDOW)));
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+
+        assertThrows(IOException.class, () -> SensorCodec.readState(
+                new DataInputStream(new ByteArrayInputStream(truncated)), sensor -> { }));
+    }
+}
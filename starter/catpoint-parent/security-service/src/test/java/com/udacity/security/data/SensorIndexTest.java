@@ -0,0 +1,47 @@
+package com.udacity.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorIndexTest {
+
+    private final SensorIndex index = new SensorIndex();
+
+    @Test
+    public void sensorsAreLookedUpById() {
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        index.put(door);
+
+        assertSame(door, index.get(door.getSensorId()));
+        assertTrue(index.asSet().contains(door));
+        assertSame(door, index.remove(door.getSensorId()));
+        assertNull(index.get(door.getSensorId()));
+        assertEquals(0, index.size());
+    }
+
+    //activation changes keep the sorted view, renames rebuild it
+    @Test
+    public void sortedView_IsOnlyRebuiltWhenSortKeyChanges() {
+        Sensor kitchen = new Sensor("Kitchen", SensorType.WINDOW);
+        Sensor attic = new Sensor("Attic", SensorType.MOTION);
+        index.put(kitchen);
+        index.put(attic);
+
+        List<Sensor> sorted = index.sorted();
+        assertEquals(List.of(attic, kitchen), sorted);
+
+        kitchen.setActive(true);
+        index.put(kitchen);
+        assertSame(sorted, index.sorted());
+
+        kitchen.setName("Basement");
+        index.put(kitchen);
+        assertEquals(List.of(attic, kitchen), index.sorted());
+        kitchen.setName("Aardvark");
+        index.put(kitchen);
+        assertEquals(List.of(kitchen, attic), index.sorted());
+    }
+}
@@ -0,0 +1,144 @@
+package com.udacity.security.gateway;
+
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.StatusEventBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorGatewayTest {
+
+    private SecurityService securityService;
+    private SensorGateway gateway;
+    private SocketChannel hub;
+    private Sensor sensor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        securityService = new SecurityService(new CompactSecurityRepositoryImpl(),
+                (image, confidenceThreshold) -> false, new StatusEventBus(Runnable::run, Runnable::run, 16));
+        sensor = new Sensor("Door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        gateway = new SensorGateway(securityService, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        gateway.start();
+        hub = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), gateway.getPort()));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        hub.close();
+        gateway.close();
+    }
+
+    private void send(UUID sensorId, long sequence, boolean active) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(SensorFrames.FRAME_BYTES);
+        SensorFrames.putFrame(frame, sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits(), sequence, active);
+        write(frame.flip());
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            hub.write(buffer);
+        }
+    }
+
+    private byte readAck(long expectedSequence) throws IOException {
+        ByteBuffer ack = ByteBuffer.allocate(SensorFrames.ACK_BYTES);
+        while (ack.hasRemaining()) {
+            assertTrue(hub.read(ack) >= 0, "gateway closed the connection");
+        }
+        ack.flip();
+        assertEquals(expectedSequence, ack.getLong());
+        return ack.get();
+    }
+
+    @Test
+    public void activationFrame_AppliedAndAcknowledged() throws IOException {
+        send(sensor.getSensorId(), 1, true);
+
+        assertEquals(SensorFrames.ACCEPTED, readAck(1));
+        assertTrue(securityService.getSensor(sensor.getSensorId()).getActive());
+        assertEquals(1, gateway.getAcceptedEventCount());
+    }
+
+    @Test
+    public void repeatedSequence_AcknowledgedAsDuplicateAndIgnored() throws IOException {
+        send(sensor.getSensorId(), 5, true);
+        readAck(5);
+
+        send(sensor.getSensorId(), 5, false);
+        send(sensor.getSensorId(), 4, false);
+
+        assertEquals(SensorFrames.DUPLICATE, readAck(5));
+        assertEquals(SensorFrames.DUPLICATE, readAck(4));
+        assertTrue(securityService.getSensor(sensor.getSensorId()).getActive());
+        assertEquals(2, gateway.getDuplicateEventCount());
+    }
+
+    @Test
+    public void unknownSensor_AcknowledgedAsUnknown() throws IOException {
+        send(UUID.randomUUID(), 1, true);
+
+        assertEquals(SensorFrames.UNKNOWN_SENSOR, readAck(1));
+        assertEquals(1, gateway.getUnknownSensorEventCount());
+    }
+
+    //a sensor removed after the connection cached it is not brought back by later frames
+    @Test
+    public void removedSensor_AcknowledgedAsUnknownAndNotRestored() throws IOException {
+        send(sensor.getSensorId(), 1, true);
+        assertEquals(SensorFrames.ACCEPTED, readAck(1));
+
+        securityService.removeSensor(securityService.getSensor(sensor.getSensorId()));
+        send(sensor.getSensorId(), 2, false);
+
+        assertEquals(SensorFrames.UNKNOWN_SENSOR, readAck(2));
+        assertNull(securityService.getSensor(sensor.getSensorId()));
+        assertEquals(0, securityService.getSensorCount());
+        assertEquals(1, gateway.getUnknownSensorEventCount());
+    }
+
+    @Test
+    public void frameSplitAcrossWrites_AppliedOnceComplete() throws IOException, InterruptedException {
+        ByteBuffer frame = ByteBuffer.allocate(SensorFrames.FRAME_BYTES);
+        SensorFrames.putFrame(frame, sensor.getSensorId().getMostSignificantBits(),
+                sensor.getSensorId().getLeastSignificantBits(), 1, true);
+        frame.flip();
+
+        write(frame.slice(0, 10));
+        Thread.sleep(50);
+        write(frame.slice(10, SensorFrames.FRAME_BYTES - 10));
+
+        assertEquals(SensorFrames.ACCEPTED, readAck(1));
+        assertTrue(securityService.getSensor(sensor.getSensorId()).getActive());
+    }
+
+    @Test
+    public void framesInOneWrite_AcknowledgedInOrder() throws IOException {
+        ByteBuffer frames = ByteBuffer.allocate(3 * SensorFrames.FRAME_BYTES);
+        for (int i = 1; i <= 3; i++) {
+            SensorFrames.putFrame(frames, sensor.getSensorId().getMostSignificantBits(),
+                    sensor.getSensorId().getLeastSignificantBits(), i, i % 2 == 1);
+        }
+        write(frames.flip());
+
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(SensorFrames.ACCEPTED, readAck(i));
+        }
+        assertTrue(securityService.getSensor(sensor.getSensorId()).getActive());
+    }
+}
@@ -0,0 +1,112 @@
+package com.udacity.security.metrics;
+
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.StatusEventBus;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightRecorderEventsTest {
+
+    @TempDir
+    Path directory;
+
+    private final SecurityService securityService = new SecurityService(new CompactSecurityRepositoryImpl(),
+            (image, confidenceThreshold) -> true, new StatusEventBus(Runnable::run, Runnable::run, 16));
+
+    //records the given work with the catpoint events enabled and returns what was recorded
+    private List<RecordedEvent> record(Runnable work) throws IOException {
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("SensorStatusChange", "AlarmTransition", "ImageScan", "ImageClassification",
+                    "RepositoryFlush")) {
+                recording.enable("com.udacity.security." + name);
+            }
+            recording.start();
+            work.run();
+            recording.stop();
+            Path file = directory.resolve("recording.jfr");
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        }
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        Predicate<RecordedEvent> named = e -> e.getEventType().getName().equals("com.udacity.security." + name);
+        List<RecordedEvent> matching = events.stream().filter(named).toList();
+        assertEquals(1, matching.size(), name);
+        return matching.get(0);
+    }
+
+    @Test
+    public void sensorActivation_RecordsSensorAndAlarmEvents() throws IOException {
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        List<RecordedEvent> events = record(() -> securityService.changeSensorActivationStatus(sensor, true));
+
+        RecordedEvent change = only(events, "SensorStatusChange");
+        assertEquals(sensor.getSensorId().toString(), change.getString("sensorId"));
+        assertFalse(change.getBoolean("wasActive"));
+        assertTrue(change.getBoolean("active"));
+        RecordedEvent transition = only(events, "AlarmTransition");
+        assertEquals(AlarmStatus.NO_ALARM.name(), transition.getString("from"));
+        assertEquals(AlarmStatus.PENDING_ALARM.name(), transition.getString("to"));
+    }
+
+    @Test
+    public void processImage_RecordsScanAndClassification() throws IOException {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        List<RecordedEvent> events = record(() -> securityService.processImage(new BufferedImage(8, 6, BufferedImage.TYPE_INT_RGB)));
+
+        RecordedEvent scan = only(events, "ImageScan");
+        assertEquals(8, scan.getInt("width"));
+        assertEquals(6, scan.getInt("height"));
+        assertTrue(scan.getBoolean("catDetected"));
+        RecordedEvent classification = only(events, "ImageClassification");
+        assertEquals(1, classification.getInt("frames"));
+        assertFalse(classification.getDuration().isNegative());
+    }
+
+    @Test
+    public void processImageAsync_RecordsScanAndClassification() throws IOException {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        List<RecordedEvent> events = record(() ->
+                securityService.processImageAsync(new BufferedImage(8, 6, BufferedImage.TYPE_INT_RGB)).join());
+
+        RecordedEvent scan = only(events, "ImageScan");
+        assertEquals(8, scan.getInt("width"));
+        assertTrue(scan.getBoolean("catDetected"));
+        RecordedEvent classification = only(events, "ImageClassification");
+        assertFalse(scan.getDuration().compareTo(classification.getDuration()) < 0);
+    }
+
+    @Test
+    public void eventLogSync_RecordsRepositoryFlush() throws IOException {
+        try (EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory.resolve("log"))) {
+            List<RecordedEvent> events = record(() -> repository.addSensor(new Sensor("Window", SensorType.WINDOW)));
+
+            RecordedEvent flush = only(events, "RepositoryFlush");
+            assertEquals("EventLogSecurityRepositoryImpl", flush.getString("repository"));
+            assertEquals(1, flush.getInt("valuesWritten"));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.udacity.security.metrics;
+
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.StatusEventBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecurityMetricsTest {
+
+    private static final String TEST_OBJECT_NAME = "com.udacity.security:type=SecurityMetrics,name=test";
+
+    private final SecurityService securityService = new SecurityService(new CompactSecurityRepositoryImpl(),
+            (image, confidenceThreshold) -> true, new StatusEventBus(Runnable::run, Runnable::run, 16));
+    private final SecurityMetrics metrics = securityService.getMetrics();
+
+    @AfterEach
+    void tearDown() {
+        metrics.unregister();
+    }
+
+    @Test
+    public void securityService_RecordsTransitionsAndSensorChanges() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        securityService.addSensor(door);
+        securityService.addSensor(window);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        securityService.changeSensorActivationStatus(door, true);
+        securityService.changeSensorActivationStatus(door, true);
+        securityService.changeSensorActivationStatus(window, true);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        assertEquals(2, metrics.getArmingTransitionCount());
+        //a sensor that was already active does not count again
+        assertEquals(2, metrics.getSensorActivationCount());
+        //arming reset both sensors
+        assertEquals(2, metrics.getSensorDeactivationCount());
+        //pending alarm, then alarm
+        assertEquals(2, metrics.getAlarmTransitionCount());
+        assertEquals(1, metrics.getAlarmsRaisedCount());
+        assertTrue(metrics.getRepositoryWriteLatency().getCount() > 0);
+    }
+
+    @Test
+    public void processImage_RecordsLatencies() {
+        securityService.processImage(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB));
+
+        assertEquals(1, metrics.getProcessImageLatency().getCount());
+        assertEquals(1, metrics.getImageServiceLatency().getCount());
+
+        metrics.resetLatencies();
+
+        assertEquals(0, metrics.getProcessImageLatency().getCount());
+    }
+
+    @Test
+    public void processImageAsync_RecordsLatencies() {
+        assertTrue(securityService.processImageAsync(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB)).join());
+
+        assertEquals(1, metrics.getProcessImageLatency().getCount());
+        assertEquals(1, metrics.getImageServiceLatency().getCount());
+    }
+
+    @Test
+    public void registeredMetrics_ReadableOverJmx() throws Exception {
+        Sensor sensor = new Sensor("Window", SensorType.WINDOW);
+        securityService.addSensor(sensor);
+        securityService.changeSensorActivationStatus(sensor, true);
+
+        metrics.register(TEST_OBJECT_NAME);
+        ObjectName name = new ObjectName(TEST_OBJECT_NAME);
+
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "SensorActivationCount"));
+        CompositeData latency = (CompositeData) ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(name, "RepositoryWriteLatency");
+        assertEquals(2L, latency.get("count"));
+    }
+
+    @Test
+    public void registeringTwiceUnderOneName_IsRejected() {
+        metrics.register(TEST_OBJECT_NAME);
+
+        SecurityMetrics other = new SecurityMetrics(() -> 0);
+        assertThrows(IllegalStateException.class, () -> other.register(TEST_OBJECT_NAME));
+    }
+}
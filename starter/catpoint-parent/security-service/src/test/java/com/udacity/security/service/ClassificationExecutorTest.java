@@ -0,0 +1,87 @@
+package com.udacity.security.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClassificationExecutorTest {
+
+    //held closed so the single worker stays busy while the test fills the queue
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ClassificationExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.close();
+    }
+
+    private CompletableFuture<Boolean> blockingClassification() {
+        return executor.submit(() -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+    }
+
+    private void awaitRunning() throws InterruptedException {
+        for (int i = 0; i < 500 && executor.getActiveCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void rejectPolicy_FailsNewClassificationWhenQueueIsFull() throws Exception {
+        executor = new ClassificationExecutor(1, 1, ClassificationExecutor.OverflowPolicy.REJECT);
+        CompletableFuture<Boolean> running = blockingClassification();
+        awaitRunning();
+        CompletableFuture<Boolean> queued = executor.submit(() -> false);
+        CompletableFuture<Boolean> rejected = executor.submit(() -> false);
+
+        CompletionException e = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertFalse(queued.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executor.getRejectedCount());
+        assertEquals(2, executor.getCompletedCount());
+    }
+
+    @Test
+    public void dropOldestPolicy_CancelsOldestWaitingClassification() throws Exception {
+        executor = new ClassificationExecutor(1, 1, ClassificationExecutor.OverflowPolicy.DROP_OLDEST);
+        CompletableFuture<Boolean> running = blockingClassification();
+        awaitRunning();
+        CompletableFuture<Boolean> oldest = executor.submit(() -> false);
+        CompletableFuture<Boolean> newest = executor.submit(() -> true);
+
+        assertThrows(CancellationException.class, oldest::join);
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(newest.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executor.getDroppedCount());
+    }
+
+    @Test
+    public void failedClassification_CompletesFutureExceptionally() {
+        executor = new ClassificationExecutor(1, 1, ClassificationExecutor.OverflowPolicy.REJECT);
+        CompletableFuture<Boolean> failed = executor.submit(() -> {
+            throw new IllegalStateException("service unavailable");
+        });
+
+        CompletionException e = assertThrows(CompletionException.class, failed::join);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals(1, executor.getCompletedCount());
+    }
+}
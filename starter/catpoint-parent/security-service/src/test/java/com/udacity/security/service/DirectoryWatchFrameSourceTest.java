@@ -0,0 +1,99 @@
+package com.udacity.security.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DirectoryWatchFrameSourceTest {
+
+    //watch services that poll, such as the one on macOS, report a change only after several seconds
+    private static final Duration DELIVERY_TIMEOUT = Duration.ofSeconds(30);
+
+    @TempDir
+    Path directory;
+
+    private final List<BufferedImage> frames = new CopyOnWriteArrayList<>();
+    private DirectoryWatchFrameSource source;
+
+    @AfterEach
+    void tearDown() {
+        if (source != null) {
+            source.close();
+        }
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", bytes);
+        return bytes.toByteArray();
+    }
+
+    //waits for the expected frames, then one more settle time so that an extra frame would show up too
+    private List<BufferedImage> awaitFrames(int expected, Duration settleTime) throws InterruptedException {
+        long deadline = System.nanoTime() + DELIVERY_TIMEOUT.toNanos();
+        while (frames.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(settleTime.toMillis());
+        return frames;
+    }
+
+    @Test
+    public void fileWrittenInParts_IsDeliveredOnceComplete() throws Exception {
+        Duration settleTime = Duration.ofMillis(300);
+        source = new DirectoryWatchFrameSource(directory, settleTime);
+        source.start(frames::add);
+        byte[] image = png(64, 48);
+
+        try (OutputStream out = Files.newOutputStream(directory.resolve("frame.png"))) {
+            out.write(Arrays.copyOf(image, image.length / 2));
+            out.flush();
+            Thread.sleep(50);
+            out.write(image, image.length / 2, image.length - image.length / 2);
+        }
+
+        List<BufferedImage> delivered = awaitFrames(1, settleTime);
+        assertEquals(1, delivered.size());
+        assertEquals(64, delivered.get(0).getWidth());
+    }
+
+    @Test
+    public void renamedFile_IsDeliveredOnce() throws Exception {
+        source = new DirectoryWatchFrameSource(directory);
+        source.start(frames::add);
+
+        Path temporary = Files.write(directory.resolve("frame.png.tmp"), png(64, 48));
+        Files.move(temporary, directory.resolve("frame.png"), StandardCopyOption.ATOMIC_MOVE);
+
+        assertEquals(1, awaitFrames(1, DirectoryWatchFrameSource.DEFAULT_SETTLE_TIME).size());
+    }
+
+    //a file written again is a new frame
+    @Test
+    public void rewrittenFile_IsDeliveredAgain() throws Exception {
+        source = new DirectoryWatchFrameSource(directory);
+        source.start(frames::add);
+
+        Files.write(directory.resolve("frame.png"), png(64, 48));
+        assertEquals(1, awaitFrames(1, DirectoryWatchFrameSource.DEFAULT_SETTLE_TIME).size());
+        Files.write(directory.resolve("frame.png"), png(32, 24));
+
+        assertEquals(2, awaitFrames(2, DirectoryWatchFrameSource.DEFAULT_SETTLE_TIME).size());
+        assertEquals(32, frames.get(1).getWidth());
+    }
+}
@@ -0,0 +1,134 @@
+package com.udacity.security.service;
+
+import com.udacity.image.service.ImageService;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameIngestorTest {
+
+    private final List<BufferedImage> classifiedFrames = new CopyOnWriteArrayList<>();
+    private final ImageService recordingService = (image, confidenceThreshold) -> classifiedFrames.add(image) && false;
+    private final SecurityService securityService = new SecurityService(new CompactSecurityRepositoryImpl(), recordingService,
+            new StatusEventBus(Runnable::run, Runnable::run, 16));
+    private final ManualFrameSource source = new ManualFrameSource();
+    private FrameIngestor ingestor;
+
+    /**
+     * Frame source that delivers frames when the test pushes them.
+     */
+    private static final class ManualFrameSource implements FrameSource {
+        private Consumer<BufferedImage> sink;
+        private boolean closed;
+
+        @Override
+        public void start(Consumer<BufferedImage> sink) {
+            this.sink = sink;
+        }
+
+        private void push(BufferedImage frame) {
+            sink.accept(frame);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingestor.close();
+    }
+
+    private static BufferedImage frame() {
+        //too small for the motion gate to sample, so every classified frame reaches the image service
+        return new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private void awaitClassified(int count) throws InterruptedException {
+        for (int i = 0; i < 500 && ingestor.getFramesClassified() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void framesArrivingFasterThanTargetRate_DropOldest() throws InterruptedException {
+        //one frame every ten seconds: the first is classified at once, the rest have to wait
+        ingestor = new FrameIngestor(securityService, source, 0.1, 1);
+        ingestor.start();
+        source.push(frame());
+        awaitClassified(1);
+
+        BufferedImage newest = frame();
+        source.push(frame());
+        source.push(frame());
+        source.push(newest);
+
+        assertEquals(4, ingestor.getFramesIn());
+        assertEquals(1, ingestor.getFramesClassified());
+        assertEquals(2, ingestor.getFramesDropped());
+        assertEquals(1, ingestor.getQueueDepth());
+        assertEquals(1, classifiedFrames.size());
+    }
+
+    @Test
+    public void classifiedFrames_ReachFrameListener() throws InterruptedException {
+        List<BufferedImage> shown = new CopyOnWriteArrayList<>();
+        ingestor = new FrameIngestor(securityService, source, 1000, 4);
+        ingestor.setFrameListener(shown::add);
+        ingestor.start();
+        BufferedImage first = frame();
+        BufferedImage second = frame();
+
+        source.push(first);
+        awaitClassified(1);
+        source.push(second);
+        awaitClassified(2);
+
+        assertEquals(List.of(first, second), classifiedFrames);
+        assertEquals(List.of(first, second), shown);
+    }
+
+    //a frame the image service fails on is counted and the next frame is still classified
+    @Test
+    public void failingFrame_IsCountedAndIngestionContinues() throws InterruptedException {
+        BufferedImage failing = frame();
+        ImageService flakyService = (image, confidenceThreshold) -> {
+            if (image == failing) {
+                throw new IllegalStateException("Image service unavailable");
+            }
+            return classifiedFrames.add(image) && false;
+        };
+        SecurityService flaky = new SecurityService(new CompactSecurityRepositoryImpl(), flakyService,
+                new StatusEventBus(Runnable::run, Runnable::run, 16));
+        ingestor = new FrameIngestor(flaky, source, 1000, 4);
+        ingestor.start();
+        BufferedImage next = frame();
+
+        source.push(failing);
+        source.push(next);
+        awaitClassified(1);
+
+        assertEquals(1, ingestor.getFramesFailed());
+        assertEquals(1, ingestor.getFramesClassified());
+        assertEquals(List.of(next), classifiedFrames);
+    }
+
+    @Test
+    public void close_ClosesSource() {
+        ingestor = new FrameIngestor(securityService, source, 10, 1);
+        ingestor.start();
+
+        ingestor.close();
+
+        assertTrue(source.closed);
+    }
+}
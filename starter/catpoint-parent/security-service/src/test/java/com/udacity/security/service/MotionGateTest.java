@@ -0,0 +1,121 @@
+package com.udacity.security.service;
+
+import com.udacity.security.data.ArmingStatus;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MotionGateTest {
+
+    private final AtomicInteger classifications = new AtomicInteger();
+    private final Predicate<BufferedImage> classifier = frame -> classifications.incrementAndGet() % 2 == 1;
+
+    //gray frame with a black square covering the given share of its width and height
+    private static BufferedImage frame(double square) {
+        BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.GRAY);
+        g.fillRect(0, 0, 320, 240);
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, (int) (320 * square), (int) (240 * square));
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    public void unchangedFrame_ReusesPreviousVerdict() {
+        MotionGate gate = new MotionGate();
+
+        assertTrue(gate.classify(frame(0.5), ArmingStatus.ARMED_HOME, classifier));
+        assertTrue(gate.classify(frame(0.5), ArmingStatus.ARMED_HOME, classifier));
+
+        assertEquals(1, classifications.get());
+        assertEquals(1, gate.getSkippedCount());
+        assertEquals(0.5, gate.getSkipRatio());
+    }
+
+    @Test
+    public void changedFrame_IsClassifiedAgain() {
+        MotionGate gate = new MotionGate();
+
+        gate.classify(frame(0.2), ArmingStatus.ARMED_HOME, classifier);
+        assertFalse(gate.classify(frame(0.6), ArmingStatus.ARMED_HOME, classifier));
+
+        assertEquals(2, classifications.get());
+        assertEquals(0, gate.getSkippedCount());
+    }
+
+    @Test
+    public void thresholdDependsOnArmingStatus() {
+        Map<ArmingStatus, Double> thresholds = new EnumMap<>(ArmingStatus.class);
+        thresholds.put(ArmingStatus.DISARMED, 0.5);
+        thresholds.put(ArmingStatus.ARMED_HOME, 0.01);
+        thresholds.put(ArmingStatus.ARMED_AWAY, 0.01);
+        MotionGate gate = new MotionGate(thresholds);
+
+        //the square grows from 4% to about 9% of the frame
+        gate.classify(frame(0.2), ArmingStatus.DISARMED, classifier);
+        gate.classify(frame(0.3), ArmingStatus.DISARMED, classifier);
+        assertEquals(1, classifications.get());
+
+        gate.classify(frame(0.3), ArmingStatus.ARMED_HOME, classifier);
+        gate.classify(frame(0.2), ArmingStatus.ARMED_HOME, classifier);
+        assertEquals(3, classifications.get());
+    }
+
+    @Test
+    public void frameTooSmallToSample_IsAlwaysClassified() {
+        MotionGate gate = new MotionGate();
+        BufferedImage tiny = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+
+        gate.classify(tiny, ArmingStatus.ARMED_AWAY, classifier);
+        gate.classify(tiny, ArmingStatus.ARMED_AWAY, classifier);
+
+        assertEquals(2, classifications.get());
+    }
+
+    @Test
+    public void missingThreshold_IsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new MotionGate(Map.of(ArmingStatus.DISARMED, 0.1)));
+    }
+
+    //a slow classification holds up neither other frames nor the counters
+    @Test
+    public void classification_RunsOutsideTheLock() throws Exception {
+        MotionGate gate = new MotionGate();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> slow = CompletableFuture.supplyAsync(() ->
+                gate.classify(frame(0.2), ArmingStatus.ARMED_HOME, frame -> {
+                    started.countDown();
+                    try {
+                        return release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, gate.getFrameCount());
+        assertTrue(gate.classify(frame(0.6), ArmingStatus.ARMED_HOME, classifier));
+        release.countDown();
+        assertTrue(slow.get(5, TimeUnit.SECONDS));
+
+        //the later frame stays the reference although its classification finished first
+        assertTrue(gate.classify(frame(0.6), ArmingStatus.ARMED_HOME, classifier));
+        assertEquals(1, classifications.get());
+        assertEquals(1, gate.getSkippedCount());
+    }
+}
@@ -0,0 +1,149 @@
+package com.udacity.security.service;
+
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.CompactSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.metrics.ShardMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PremisesHostTest {
+
+    private PremisesHost host;
+
+    @AfterEach
+    void tearDown() {
+        host.close();
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    //two premises on the same shard still have separate sensors and alarms
+    @Test
+    public void premises_HaveIsolatedState() throws Exception {
+        host = new PremisesHost(1, 16, (image, confidenceThreshold) -> false, id -> new CompactSecurityRepositoryImpl());
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        host.addSensor("home", door);
+        host.setArmingStatus("home", ArmingStatus.ARMED_HOME);
+        host.setArmingStatus("office", ArmingStatus.ARMED_HOME);
+
+        assertTrue(await(host.changeSensorActivationStatus("home", door.getSensorId(), true)));
+        assertFalse(await(host.changeSensorActivationStatus("office", door.getSensorId(), true)));
+
+        assertEquals(AlarmStatus.PENDING_ALARM, await(host.getState("home")).getAlarmStatus());
+        assertEquals(AlarmStatus.NO_ALARM, await(host.getState("office")).getAlarmStatus());
+        assertEquals(2, host.getPremisesCount());
+    }
+
+    //every task of a premises runs on the thread of its shard
+    @Test
+    public void premises_AreServedByTheirShardOnly() throws Exception {
+        host = new PremisesHost(4, 16, (image, confidenceThreshold) -> false, id -> new CompactSecurityRepositoryImpl());
+        List<CompletableFuture<String>> threads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String premisesId = "premises-" + (i % 5);
+            threads.add(host.submit(premisesId, service -> premisesId + " " + Thread.currentThread().getName()));
+        }
+        for (CompletableFuture<String> thread : threads) {
+            String[] ran = await(thread).split(" ");
+            assertEquals("premises-shard-" + host.shardOf(ran[0]), ran[1]);
+        }
+        long completed = 0;
+        for (int shard = 0; shard < host.getShardCount(); shard++) {
+            completed += host.getShardMetrics(shard).getCompletedCount();
+        }
+        assertEquals(20, completed);
+    }
+
+    @Test
+    public void fullShard_RejectsTasks() throws Exception {
+        host = new PremisesHost(1, 1, (image, confidenceThreshold) -> false, id -> new CompactSecurityRepositoryImpl());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = host.submit("home", service -> {
+            started.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<SecurityState> queued = host.getState("home");
+        CompletableFuture<SecurityState> rejected = host.getState("office");
+
+        CompletionException e = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        ShardMetrics metrics = host.getShardMetrics(0);
+        assertEquals(1, metrics.getQueueDepth());
+        assertEquals(1, metrics.getRejectedCount());
+
+        release.countDown();
+        assertTrue(await(running));
+        assertEquals(ArmingStatus.DISARMED, await(queued).getArmingStatus());
+        assertEquals(2, metrics.getCompletedCount());
+    }
+
+    //classification runs off the shard, and the verdict still reaches the right premises
+    @Test
+    public void catInImage_RaisesAlarmOfThatPremisesOnly() throws Exception {
+        host = new PremisesHost(2, 16, (image, confidenceThreshold) -> true, id -> new CompactSecurityRepositoryImpl());
+        host.setArmingStatus("home", ArmingStatus.ARMED_HOME);
+        host.setArmingStatus("office", ArmingStatus.ARMED_HOME);
+
+        assertTrue(await(host.processImage("home", new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB))));
+
+        assertEquals(AlarmStatus.ALARM, await(host.getState("home")).getAlarmStatus());
+        assertEquals(AlarmStatus.NO_ALARM, await(host.getState("office")).getAlarmStatus());
+        assertEquals(1, host.getServiceMetrics(host.shardOf("home")).getAlarmsRaisedCount());
+    }
+
+    //the image is classified off the shard, and its verdict is applied back on it
+    @Test
+    public void imageVerdict_IsAppliedOnTheShard() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> classifiedOn = new CompletableFuture<>();
+        host = new PremisesHost(2, 16, (image, confidenceThreshold) -> {
+            classifiedOn.complete(Thread.currentThread().getName());
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }, id -> new CompactSecurityRepositoryImpl());
+        host.setArmingStatus("home", ArmingStatus.ARMED_HOME);
+
+        CompletableFuture<String> appliedOn = host.processImage("home", new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB))
+                .thenApply(cat -> Thread.currentThread().getName());
+        assertTrue(await(classifiedOn).startsWith("image-classification-"));
+        release.countDown();
+
+        assertEquals("premises-shard-" + host.shardOf("home"), await(appliedOn));
+        assertEquals(AlarmStatus.ALARM, await(host.getState("home")).getAlarmStatus());
+    }
+
+    @Test
+    public void unknownSensor_IsReported() throws Exception {
+        host = new PremisesHost(1, 16, (image, confidenceThreshold) -> false, id -> new CompactSecurityRepositoryImpl());
+
+        assertFalse(await(host.changeSensorActivationStatus("home", UUID.randomUUID(), true)));
+    }
+}
@@ -3,6 +3,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import com.udacity.image.service.FakeImageService;
 import com.udacity.image.service.ImageService;
+import com.udacity.security.application.StatusListener;
 import com.udacity.security.data.ArmingStatus;
 import com.udacity.security.data.AlarmStatus;
 import com.udacity.security.data.SensorType;
@@ -17,8 +18,15 @@ import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -42,7 +50,20 @@ public class SecurityServiceTest {
     @BeforeEach
     public void setUp() {
         fakeImageService = new FakeImageService();
-        securityService = new SecurityService(securityRepository, fakeImageService);
+        restartService();
+    }
+
+    // The service reads the alarm and arming status from the repository once, when it is created,
+    // so tests that stub those statuses start a fresh service afterwards. Listeners are notified
+    // synchronously so that tests can verify them straight away.
+    private void restartService() {
+        StatusEventBus synchronousBus = new StatusEventBus(Runnable::run, Runnable::run, 16);
+        securityService = new SecurityService(securityRepository, fakeImageService, synchronousBus);
+    }
+
+    // The mocked repository reports the given previous states of the sensor, one per activation change
+    private void stubPreviousActivation(SensorActivation first, SensorActivation... rest) {
+        when(securityRepository.updateSensorActivation(any(), anyBoolean())).thenReturn(first, rest);
     }
 
     //test 1. If alarm is armed and a sensor becomes activated, put the system into pending alarm status
@@ -53,11 +74,12 @@ public class SecurityServiceTest {
         Sensor sensor = new Sensor(sensorName, SensorType.DOOR);
         when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
         when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        stubPreviousActivation(SensorActivation.WAS_INACTIVE, SensorActivation.WAS_ACTIVE);
+        restartService();
 
         securityService.changeSensorActivationStatus(sensor, true);
         verify(securityRepository).setAlarmStatus(AlarmStatus.PENDING_ALARM);
 
-        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.PENDING_ALARM); // **Crucial line**
         securityService.changeSensorActivationStatus(sensor, false);
         verify(securityRepository).setAlarmStatus(AlarmStatus.NO_ALARM);
     }
@@ -68,6 +90,8 @@ public class SecurityServiceTest {
         Sensor sensor = new Sensor("Window", SensorType.WINDOW);
         when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
         when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.PENDING_ALARM);
+        stubPreviousActivation(SensorActivation.WAS_INACTIVE);
+        restartService();
 
         securityService.changeSensorActivationStatus(sensor, Boolean.TRUE);
 
@@ -82,11 +106,13 @@ public class SecurityServiceTest {
         Sensor inactiveSensor = new Sensor("Living Room", SensorType.MOTION);
         inactiveSensor.setActive(false); // Sensor is already inactive
 
-        // Mock the repository to return the list of sensors
-        when(securityRepository.getSensors()).thenReturn(Set.of(inactiveSensor));
+        // Mock the repository to report that no sensors are active
+        when(securityRepository.getActiveSensorCount()).thenReturn(0);
 
         // Mock the alarm status to be PENDING_ALARM
         when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.PENDING_ALARM);
+        stubPreviousActivation(SensorActivation.WAS_INACTIVE);
+        restartService();
 
         // Deactivate the sensor (which is already inactive)
         securityService.changeSensorActivationStatus(inactiveSensor, false);
@@ -101,6 +127,8 @@ public class SecurityServiceTest {
         Sensor sensor = new Sensor("Kitchen Window", SensorType.WINDOW);
         sensor.setActive(Boolean.TRUE);
         when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.ALARM);
+        stubPreviousActivation(SensorActivation.WAS_ACTIVE);
+        restartService();
         securityService.changeSensorActivationStatus(sensor, Boolean.FALSE);
         verify(securityRepository, never()).setAlarmStatus(AlarmStatus.PENDING_ALARM); // Ensure no state change
     }
@@ -110,6 +138,8 @@ public class SecurityServiceTest {
     public void alarmStateRemainsUnchanged_WhenSensorIsDeactivated_WhileActive() {
         Sensor sensor = new Sensor("Back Door", SensorType.DOOR);
         when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.ALARM);
+        stubPreviousActivation(SensorActivation.WAS_INACTIVE);
+        restartService();
 
         // Deactivate sensor without affecting alarm state
         securityService.changeSensorActivationStatus(sensor, Boolean.FALSE);
@@ -124,6 +154,8 @@ public class SecurityServiceTest {
         Sensor sensor = new Sensor("Bedroom Sensor", SensorType.WINDOW);
         sensor.setActive(Boolean.FALSE);
         when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        stubPreviousActivation(SensorActivation.WAS_INACTIVE);
+        restartService();
 
         securityService.changeSensorActivationStatus(sensor, Boolean.FALSE);
 
@@ -131,6 +163,21 @@ public class SecurityServiceTest {
         verify(securityRepository, never()).setAlarmStatus(any());
     }
 
+    //a sensor the repository no longer holds is reported back and leaves the alarm alone
+    @Test
+    public void activationOfRemovedSensor_IsReportedAndIgnored() {
+        Sensor sensor = new Sensor("Front Door", SensorType.DOOR);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        stubPreviousActivation(SensorActivation.UNKNOWN_SENSOR);
+        restartService();
+
+        assertFalse(securityService.changeSensorActivationStatus(sensor, true));
+
+        verify(securityRepository, never()).setAlarmStatus(any());
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
     //test 7. If the image service identifies an image containing a cat while the system is armed-home, put the system into alarm status.
 
     //test 8. If the image service identifies an image that does not contain a cat, change the status to no alarm as long as the sensors are not active.
@@ -166,6 +213,34 @@ public class SecurityServiceTest {
         assertFalse(sensor2.getActive());
     }
 
+    //a sensor removed while the system is being armed is not stored again by the reset
+    @Test
+    public void sensorRemovedWhileArming_IsNotRestored() {
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        Sensor window = new Sensor("Back Window", SensorType.WINDOW);
+        CompactSecurityRepositoryImpl repository = new CompactSecurityRepositoryImpl() {
+            @Override
+            public List<Sensor> getActiveSensors() {
+                List<Sensor> active = super.getActiveSensors();
+                removeSensor(window);
+                return active;
+            }
+        };
+        SecurityService service = new SecurityService(repository, fakeImageService,
+                new StatusEventBus(Runnable::run, Runnable::run, 16));
+        door.setActive(true);
+        window.setActive(true);
+        service.addSensor(door);
+        service.addSensor(window);
+
+        service.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        assertNull(repository.getSensor(window.getSensorId()));
+        assertEquals(1, repository.getSensorCount());
+        assertEquals(0, repository.getActiveSensorCount());
+        assertEquals(1, service.getMetrics().getSensorDeactivationCount());
+    }
+
     //test 11. If the system is armed-home while the camera shows a cat, set the alarm status to alarm.
     @Test
     public void cameraImageWithCat_WhileArmedHome_SetsAlarmToAlarm() {
@@ -188,4 +263,220 @@ public class SecurityServiceTest {
         verify(securityRepository).setAlarmStatus(AlarmStatus.NO_ALARM);
     }
 
-}
\ No newline at end of file
+    //a batch that activates two sensors on an armed system ends in alarm, with one write and one notification
+    @Test
+    public void sensorBatch_AppliesTransitionsInOrder_AndNotifiesOnlyFinalStatus() {
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        Sensor window = new Sensor("Back Window", SensorType.WINDOW);
+        StatusListener listener = mock(StatusListener.class);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        when(securityRepository.updateSensorActivations(anyList(), any(boolean[].class)))
+                .thenReturn(new SensorActivation[]{SensorActivation.WAS_INACTIVE, SensorActivation.WAS_INACTIVE});
+        restartService();
+        securityService.addStatusListener(listener);
+
+        securityService.changeSensorActivationStatuses(List.of(
+                new SensorEvent(door, true),
+                new SensorEvent(window, true)));
+
+        verify(securityRepository).updateSensorActivations(List.of(door, window), new boolean[]{true, true});
+        verify(securityRepository, never()).updateSensorActivation(any(), anyBoolean());
+        verify(securityRepository).setAlarmStatus(AlarmStatus.ALARM);
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        verify(listener).notify(AlarmStatus.ALARM);
+        verify(listener, never()).notify(AlarmStatus.PENDING_ALARM);
+    }
+
+    //a sensor that flaps within one batch leaves the alarm where it started
+    @Test
+    public void sensorBatch_WithNoNetChange_DoesNotTouchAlarmStatus() {
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        when(securityRepository.updateSensorActivations(anyList(), any(boolean[].class)))
+                .thenReturn(new SensorActivation[]{SensorActivation.WAS_INACTIVE, SensorActivation.WAS_ACTIVE});
+        restartService();
+
+        securityService.changeSensorActivationStatuses(List.of(
+                new SensorEvent(door, true),
+                new SensorEvent(door, false)));
+
+        verify(securityRepository).updateSensorActivations(List.of(door, door), new boolean[]{true, false});
+        verify(securityRepository, never()).setAlarmStatus(any());
+    }
+
+    //a batch naming a sensor removed meanwhile skips it instead of adding it back
+    @Test
+    public void sensorBatch_SkipsRemovedSensors() {
+        CompactSecurityRepositoryImpl repository = new CompactSecurityRepositoryImpl();
+        SecurityService service = new SecurityService(repository, fakeImageService,
+                new StatusEventBus(Runnable::run, Runnable::run, 16));
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        Sensor window = new Sensor("Back Window", SensorType.WINDOW);
+        service.addSensor(door);
+        service.addSensor(window);
+        Sensor removed = repository.getSensor(window.getSensorId());
+        service.removeSensor(window);
+
+        assertEquals(1, service.changeSensorActivationStatuses(List.of(
+                new SensorEvent(removed, true),
+                new SensorEvent(repository.getSensor(door.getSensorId()), true))));
+
+        assertNull(repository.getSensor(window.getSensorId()));
+        assertEquals(1, repository.getSensorCount());
+        assertEquals(1, repository.getActiveSensorCount());
+        assertEquals(AlarmStatus.PENDING_ALARM, service.getAlarmStatus());
+    }
+
+    //many threads toggling sensors at once leave the state machine and the repository consistent
+    @Test
+    public void concurrentSensorEvents_LeaveConsistentState() throws InterruptedException {
+        CompactSecurityRepositoryImpl repository = new CompactSecurityRepositoryImpl();
+        SecurityService service = new SecurityService(repository, fakeImageService);
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.MOTION);
+            service.addSensor(sensor);
+            sensors.add(repository.getSensor(sensor.getSensorId()));
+        }
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            List<Sensor> mine = sensors.subList(t * 8, t * 8 + 8);
+            executor.execute(() -> {
+                for (int round = 0; round < 1_000; round++) {
+                    for (Sensor sensor : mine) {
+                        service.changeSensorActivationStatus(sensor, round % 2 == 0);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(0, repository.getActiveSensorCount());
+        assertEquals(service.getAlarmStatus(), repository.getAlarmStatus());
+        assertEquals(AlarmStatus.ALARM, service.getAlarmStatus());
+    }
+
+    //hubs reporting the same sensor at once escalate the alarm by one step, not one step per hub
+    @Test
+    public void concurrentActivationsOfSameSensor_EscalateOnce() throws Exception {
+        CompactSecurityRepositoryImpl repository = new CompactSecurityRepositoryImpl();
+        SecurityService service = new SecurityService(repository, fakeImageService,
+                new StatusEventBus(Runnable::run, Runnable::run, 16));
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        service.addSensor(door);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int round = 0; round < 200; round++) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> activations = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                //each hub holds its own copy of the sensor, as the gateway's connections do
+                Sensor copy = repository.getSensor(door.getSensorId());
+                activations.add(executor.submit(() -> {
+                    start.await();
+                    service.changeSensorActivationStatus(copy, true);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> activation : activations) {
+                activation.get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(AlarmStatus.PENDING_ALARM, service.getAlarmStatus());
+
+            service.changeSensorActivationStatus(repository.getSensor(door.getSensorId()), false);
+            assertEquals(AlarmStatus.NO_ALARM, service.getAlarmStatus());
+        }
+        executor.shutdown();
+    }
+
+    //batches and single events racing on the same sensor escalate the alarm by one step between them
+    @Test
+    public void concurrentBatchActivationsOfSameSensor_EscalateOnce() throws Exception {
+        CompactSecurityRepositoryImpl repository = new CompactSecurityRepositoryImpl();
+        SecurityService service = new SecurityService(repository, fakeImageService,
+                new StatusEventBus(Runnable::run, Runnable::run, 16));
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        Sensor window = new Sensor("Back Window", SensorType.WINDOW);
+        service.addSensor(door);
+        service.addSensor(window);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int round = 0; round < 200; round++) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> activations = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                //each request holds its own copies of the sensors, as the daemon's handlers do
+                Sensor doorCopy = repository.getSensor(door.getSensorId());
+                Sensor windowCopy = repository.getSensor(window.getSensorId());
+                boolean batch = t % 2 == 0;
+                activations.add(executor.submit(() -> {
+                    start.await();
+                    if (batch) {
+                        service.changeSensorActivationStatuses(List.of(
+                                new SensorEvent(doorCopy, true),
+                                new SensorEvent(windowCopy, false)));
+                    } else {
+                        service.changeSensorActivationStatus(doorCopy, true);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> activation : activations) {
+                activation.get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(AlarmStatus.PENDING_ALARM, service.getAlarmStatus());
+            assertEquals(1, repository.getActiveSensorCount());
+
+            service.changeSensorActivationStatus(repository.getSensor(door.getSensorId()), false);
+            assertEquals(AlarmStatus.NO_ALARM, service.getAlarmStatus());
+        }
+        executor.shutdown();
+    }
+
+    //an asynchronous scan that finds a cat while armed-home raises the alarm once the classification completes
+    @Test
+    public void asyncImageWithCat_WhileArmedHome_SetsAlarmToAlarm() throws Exception {
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        when(imageService.imageContainsCat(any(BufferedImage.class), anyFloat())).thenReturn(true);
+        ClassificationExecutor classifications = new ClassificationExecutor(1, 1, ClassificationExecutor.OverflowPolicy.REJECT);
+        SecurityService service = new SecurityService(securityRepository, imageService,
+                new StatusEventBus(Runnable::run, Runnable::run, 16), classifications);
+
+        assertTrue(service.processImageAsync(bufferedImage).get(5, TimeUnit.SECONDS));
+
+        assertEquals(AlarmStatus.ALARM, service.getAlarmStatus());
+        verify(securityRepository).setAlarmStatus(AlarmStatus.ALARM);
+        classifications.close();
+    }
+
+    //a burst with a cat in one frame raises the alarm once, and results keep the frame order
+    @Test
+    public void imageBurstWithOneCat_WhileArmedHome_SetsAlarmToAlarm() {
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        BufferedImage catFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        ImageService catOnlyInCatFrame = (image, confidenceThreshold) -> image == catFrame;
+        SecurityService service = new SecurityService(securityRepository, catOnlyInCatFrame,
+                new StatusEventBus(Runnable::run, Runnable::run, 16));
+        List<BufferedImage> burst = List.of(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), catFrame,
+                new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+
+        assertEquals(List.of(false, true, false), service.processImages(burst));
+        assertEquals(AlarmStatus.ALARM, service.getAlarmStatus());
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
+    }
+}
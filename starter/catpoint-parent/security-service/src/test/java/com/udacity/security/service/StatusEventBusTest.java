@@ -0,0 +1,222 @@
+package com.udacity.security.service;
+
+import com.udacity.security.application.StatusListener;
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatusEventBusTest {
+
+    //executor that only runs tasks when the test says so, standing in for a busy dispatch thread
+    private final Queue<Runnable> pending = new ArrayDeque<>();
+    private final StatusEventBus bus = new StatusEventBus(pending::add, pending::add, 4);
+
+    private void runPending() {
+        while (!pending.isEmpty()) {
+            pending.poll().run();
+        }
+    }
+
+    //keeps everything it hears, in order
+    private static class RecordingListener implements StatusListener {
+        private final List<AlarmStatus> alarmStatuses = new ArrayList<>();
+        private final Set<Sensor> changedSensors = new HashSet<>();
+        private int reloads;
+
+        @Override
+        public void notify(AlarmStatus status) {
+            alarmStatuses.add(status);
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            reloads++;
+        }
+
+        @Override
+        public void sensorStatusChanged(Collection<Sensor> sensors) {
+            changedSensors.addAll(sensors);
+        }
+    }
+
+    @Test
+    public void queuedAlarmStatuses_CollapseToLatest() {
+        StatusListener listener = mock(StatusListener.class);
+        bus.subscribe(listener);
+
+        bus.publishAlarmStatus(AlarmStatus.PENDING_ALARM, 1);
+        bus.publishAlarmStatus(AlarmStatus.ALARM, 2);
+        bus.publishAlarmStatus(AlarmStatus.NO_ALARM, 3);
+        assertEquals(1, bus.getQueueDepth(listener));
+        runPending();
+
+        verify(listener).notify(AlarmStatus.NO_ALARM);
+        verifyNoMoreInteractions(listener);
+        assertEquals(2, bus.getCoalescedCount());
+        assertEquals(1, bus.getDeliveredCount());
+    }
+
+    @Test
+    public void staleAlarmStatus_DoesNotReplaceNewerOne() {
+        StatusListener listener = mock(StatusListener.class);
+        bus.subscribe(listener);
+
+        bus.publishAlarmStatus(AlarmStatus.ALARM, 5);
+        runPending();
+        bus.publishAlarmStatus(AlarmStatus.PENDING_ALARM, 4);
+        runPending();
+
+        verify(listener).notify(AlarmStatus.ALARM);
+        verify(listener, never()).notify(AlarmStatus.PENDING_ALARM);
+    }
+
+    @Test
+    public void fullQueue_DropsOldestEvent() {
+        StatusListener listener = mock(StatusListener.class);
+        bus.subscribe(listener);
+
+        for (int i = 0; i < 5; i++) {
+            bus.publishCatDetected(i % 2 == 0);
+        }
+        runPending();
+
+        assertEquals(1, bus.getDroppedCount());
+        verify(listener, times(2)).catDetected(true);
+        verify(listener, times(2)).catDetected(false);
+    }
+
+    //queued sensor changes reach the listener as one call naming every changed sensor
+    @Test
+    public void queuedSensorChanges_MergeIntoOne() {
+        StatusListener listener = mock(StatusListener.class);
+        bus.subscribe(listener);
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+
+        bus.publishSensorStatusChanged(door);
+        bus.publishSensorStatusChanged(List.of(window, door));
+        bus.publishSensorStatusChanged(motion);
+        assertEquals(1, bus.getQueueDepth(listener));
+        runPending();
+
+        verify(listener).sensorStatusChanged(Set.of(door, window, motion));
+        verifyNoMoreInteractions(listener);
+        assertEquals(2, bus.getCoalescedCount());
+    }
+
+    //a change that does not name its sensors makes the listener look at all of them
+    @Test
+    public void unnamedSensorChange_WinsOverNamedOnes() {
+        StatusListener listener = mock(StatusListener.class);
+        bus.subscribe(listener);
+
+        bus.publishSensorStatusChanged(new Sensor("Door", SensorType.DOOR));
+        bus.publishSensorStatusChanged();
+        bus.publishSensorStatusChanged(new Sensor("Window", SensorType.WINDOW));
+        runPending();
+
+        verify(listener).sensorStatusChanged();
+        verifyNoMoreInteractions(listener);
+    }
+
+    //cat detections that never merge fill the queue, but no changed sensor goes missing
+    @Test
+    public void fullQueue_KeepsSensorChanges() {
+        RecordingListener listener = new RecordingListener();
+        bus.subscribe(listener);
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+
+        bus.publishSensorStatusChanged(door);
+        for (int i = 0; i < 5; i++) {
+            bus.publishCatDetected(i % 2 == 0);
+        }
+        bus.publishSensorStatusChanged(window);
+        for (int i = 0; i < 5; i++) {
+            bus.publishCatDetected(i % 2 == 0);
+        }
+        runPending();
+
+        assertTrue(bus.getDroppedCount() > 0);
+        assertEquals(Set.of(door, window), listener.changedSensors);
+        assertEquals(0, listener.reloads);
+    }
+
+    //dropping the cat detection between two sensor changes merges them, so the queue never outgrows its capacity
+    @Test
+    public void interleavedCatAndSensorEvents_StayWithinCapacity() {
+        RecordingListener listener = new RecordingListener();
+        bus.subscribe(listener);
+        List<Sensor> sensors = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.DOOR);
+            sensors.add(sensor);
+            bus.publishSensorStatusChanged(sensor);
+            assertTrue(bus.getQueueDepth(listener) <= 4);
+            bus.publishCatDetected(i % 2 == 0);
+            assertTrue(bus.getQueueDepth(listener) <= 4);
+        }
+        runPending();
+
+        assertEquals(new HashSet<>(sensors), listener.changedSensors);
+        assertEquals(0, listener.reloads);
+    }
+
+    //alarm statuses and sensor changes separated by cat detections also merge once the cats are dropped
+    @Test
+    public void interleavedAlarmCatAndSensorEvents_StayWithinCapacity() {
+        RecordingListener listener = new RecordingListener();
+        bus.subscribe(listener);
+
+        for (int i = 0; i < 1000; i++) {
+            bus.publishAlarmStatus(i % 2 == 0 ? AlarmStatus.PENDING_ALARM : AlarmStatus.ALARM, i);
+            bus.publishCatDetected(true);
+            bus.publishSensorStatusChanged(new Sensor("Sensor " + i, SensorType.WINDOW));
+            bus.publishCatDetected(false);
+            assertTrue(bus.getQueueDepth(listener) <= 4);
+        }
+        runPending();
+
+        assertEquals(AlarmStatus.ALARM, listener.alarmStatuses.get(listener.alarmStatuses.size() - 1));
+        assertEquals(1000, listener.changedSensors.size());
+    }
+
+    @Test
+    public void capacityBelowThree_Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new StatusEventBus(pending::add, pending::add, 2));
+    }
+
+    //cat detections arriving after an alarm status push out each other, never the alarm status
+    @Test
+    public void fullQueue_KeepsOnlyPendingAlarmStatus() {
+        RecordingListener listener = new RecordingListener();
+        bus.subscribe(listener);
+
+        bus.publishAlarmStatus(AlarmStatus.ALARM, 1);
+        for (int i = 0; i < 6; i++) {
+            bus.publishCatDetected(i % 2 == 0);
+        }
+        runPending();
+
+        assertEquals(3, bus.getDroppedCount());
+        assertEquals(List.of(AlarmStatus.ALARM), listener.alarmStatuses);
+    }
+}